@@ -24,6 +24,9 @@ import java.util.stream.Collectors;
 public class Amr {
     // the actual AMR graph
     public DirectedGraph dag;
+    // the id given in the # ::id line of the AMR graph or null if none is
+    // given
+    public String id;
     // the reference sentence or null if none is given
     public String[] sentence;
     // the part of speech tags of the reference sentence
@@ -44,6 +47,14 @@ public class Amr {
     // none is given
     public PartialTransitionFunction partialTransitionFunction;
 
+    // the compiled form of the AMR graph or null if it has not been compiled
+    // since the last structural modification
+    private CompiledGraph compiledGraph;
+
+    // for each MERGE and SWAP transition that has been applied to this AMR
+    // graph, an action that reverts it, in the order of application
+    private List<Runnable> appliedTransitions = new ArrayList<>();
+
     public static final String LEFT_BRACKET_INDICATOR = "-lrb-";
     public static final String RIGHT_BRACKET_INDICATOR = "-rrb-";
     public static final String AMR_UNKNOWN_INSTANCE = "amr-unknown";
@@ -185,6 +196,7 @@ public class Amr {
         }
 
         // add POS tags to all vertices
+        tagUntaggedVertices(tagger);
         for (Vertex v : dag) {
             if (!v.isLink()) {
                 if (v.getPos() == null) {
@@ -704,6 +716,7 @@ public class Amr {
 
         // calculate the span
         calculateSpan();
+        invalidateCompiledGraph();
     }
 
     /**
@@ -742,6 +755,7 @@ public class Amr {
             deverbalize(v);
         }
 
+        tagUntaggedVertices(tagger);
         for (Vertex v : dag) {
             if (!v.isLink()) {
                 if (v.getPos() == null) {
@@ -768,6 +782,25 @@ public class Amr {
             // mode management
             annotateModes(v);
         }
+        invalidateCompiledGraph();
+    }
+
+    /**
+     * Computes the POS tags of all vertices of this AMR graph that are assigned
+     * a POS tag by the maximum entropy tagger during preparation using a single
+     * call to the tagger, see {@link PosTagCache#tagAll(MaxentTagger,
+     * Collection)}.
+     * @param tagger a maximum entropy POS tagger
+     */
+    private void tagUntaggedVertices(MaxentTagger tagger) {
+        List<String> instances = new ArrayList<>();
+        for (Vertex v : dag) {
+            if (!v.isLink() && v.getPos() == null && !v.isPropbankEntry()
+                && !bestPosTags.containsKey(v.getInstance())) {
+                instances.add(v.getInstance());
+            }
+        }
+        PosTagCache.tagAll(tagger, instances);
     }
 
     /**
@@ -889,7 +922,11 @@ public class Amr {
      */
     public void merge(
         Vertex master, Vertex slave, String instLabel, String pos) {
+        invalidateCompiledGraph();
         Edge masterInstanceEdge = master.getInstanceEdge();
+        String oldInstance = master.instance;
+        String oldInstanceLabel = masterInstanceEdge.label;
+        String oldPos = master.getPos();
         master.instance = instLabel;
         // master.name = instLabel;
         master.setPos(pos);
@@ -903,12 +940,16 @@ public class Amr {
             }
         }
 
-        relevantEdge.getFrom().getOutgoingEdges().remove(relevantEdge);
+        Vertex relevantFrom = relevantEdge.getFrom();
+        int relevantIndex =
+            relevantFrom.getOutgoingEdges().indexOf(relevantEdge);
+        relevantFrom.getOutgoingEdges().remove(relevantEdge);
 
         List<Edge> newEdges = new ArrayList<>(slave.getOutgoingEdges());
         newEdges.remove(slave.getInstanceEdge());
 
         master.getOutgoingEdges().addAll(newEdges);
+
         Set<Integer> instAlign = alignment.remove(masterInstanceEdge);
 
         masterInstanceEdge.label = master.getInstance();
@@ -938,6 +979,19 @@ public class Amr {
 
         alignment.remove(relevantEdge);
         alignment.remove(slave.getInstanceEdge());
+
+        appliedTransitions.add(() -> {
+            master.instance = oldInstance;
+            master.setPos(oldPos);
+            masterInstanceEdge.label = oldInstanceLabel;
+            master.getOutgoingEdges().removeAll(newEdges);
+            for (Edge e : slave.getOutgoingEdges()) {
+                e.from = slave;
+            }
+            relevantFrom.getOutgoingEdges().add(
+                Math.min(relevantIndex, relevantFrom.getOutgoingEdges().size()),
+                relevantEdge);
+        });
     }
 
     /**
@@ -946,6 +1000,27 @@ public class Amr {
      * @param child the child vertex
      */
     public void swap(Vertex parent, Vertex child) {
+        Edge connection = child.getIncomingEdges().get(0);
+        int index = parent.getOutgoingEdges().indexOf(connection);
+        applySwap(parent, child);
+
+        appliedTransitions.add(() -> {
+            applySwap(child, parent);
+            parent.getOutgoingEdges().remove(connection);
+            parent.getOutgoingEdges().add(
+                Math.min(index, parent.getOutgoingEdges().size()), connection);
+        });
+    }
+
+    /**
+     * Swaps a vertex with its parent as required by {@link Amr#swap(Vertex,
+     * Vertex)}; in contrast to the latter, the swap is not recorded as an
+     * applied transition.
+     * @param parent the parent vertex
+     * @param child the child vertex
+     */
+    private void applySwap(Vertex parent, Vertex child) {
+        invalidateCompiledGraph();
         parent.annotation.nrOfSwapDowns++;
         child.annotation.nrOfSwapDowns--;
 
@@ -981,6 +1056,57 @@ public class Amr {
         getSpan(child);
     }
 
+    /**
+     * Reverts all MERGE and SWAP transitions that have been applied to this AMR
+     * graph and discards all transitions that have been assigned to its
+     * vertices by the first stage, including DELETE transitions. Afterwards,
+     * the graph has the same structure as before the first stage, apart from
+     * changes that have been made to it since. Alignments and spans are not
+     * restored, so this method should only be used for AMR graphs that have
+     * been prepared for testing.
+     */
+    public void revertTransitions() {
+        for (int i = appliedTransitions.size() - 1; i >= 0; i--) {
+            appliedTransitions.get(i).run();
+        }
+        appliedTransitions.clear();
+        invalidateCompiledGraph();
+
+        for (Vertex v : dag) {
+            if (v.annotation.transition != null) {
+                v.annotation.delete = false;
+                v.annotation.transition = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the compiled form of this AMR graph, see {@link CompiledGraph}.
+     * The graph is compiled on first access and recompiled after each
+     * structural modification performed by the methods of this class. Changes
+     * made to the vertices and edges of the graph from outside this class, e.g.
+     * by an annotator before calling {@link main.AmrMain#regenerate}, are not
+     * detected; {@link Amr#invalidateCompiledGraph()} must be called after
+     * them.
+     * @return the compiled graph
+     */
+    public CompiledGraph getCompiledGraph() {
+        CompiledGraph ret = compiledGraph;
+        if (ret == null || !ret.isCompiledFrom(dag)) {
+            ret = CompiledGraph.compile(dag);
+            compiledGraph = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Discards the compiled form of this AMR graph. This method must be called
+     * whenever edges of the graph are added, removed or redirected.
+     */
+    public void invalidateCompiledGraph() {
+        compiledGraph = null;
+    }
+
     /**
      * Checks for verbalized constructions like (person (:ARG1-of develop-02))
      * and deterministically merges them into a single node (developer). The
@@ -1012,6 +1138,7 @@ public class Amr {
             }
 
             if (deverbalize) {
+                invalidateCompiledGraph();
                 v.instance = deverbalization;
                 // v.name = deverbalization;
                 v.setPos("NN");
@@ -1170,6 +1297,67 @@ public class Amr {
         return vSpan;
     }
 
+    /**
+     * Computes a canonical string representation of this AMR graph that does
+     * not depend on the names of its variables. The children of each vertex
+     * are listed in the order of its outgoing edges, as this order is used by
+     * several features of the second stage and to break ties between equally
+     * scored realizations; therefore, two AMR graphs with the same canonical
+     * representation are realized identically. Reentrancies and links are
+     * represented by the index of the vertex they refer to in a pre-order
+     * traversal of the graph.
+     * @return the canonical representation
+     */
+    public String getCanonicalString() {
+        Map<Vertex, Integer> indices = new IdentityHashMap<>();
+        assignCanonicalIndices(dag.getRoot(), indices);
+
+        StringBuilder sb = new StringBuilder();
+        appendCanonicalString(dag.getRoot(), indices,
+            Collections.newSetFromMap(new IdentityHashMap<>()), sb);
+        return sb.toString();
+    }
+
+    /**
+     * Assigns to each vertex its index in a pre-order traversal of the graph.
+     */
+    private static void assignCanonicalIndices(
+        Vertex v, Map<Vertex, Integer> indices) {
+        if (indices.containsKey(v))
+            return;
+        indices.put(v, indices.size());
+        for (Edge e : v.outgoingEdges) {
+            if (!e.isInstanceEdge() && e.to != Vertex.EMPTY_VERTEX) {
+                assignCanonicalIndices(e.to, indices);
+            }
+        }
+    }
+
+    private static void appendCanonicalString(Vertex v,
+        Map<Vertex, Integer> indices, Set<Vertex> visited, StringBuilder sb) {
+        if (!visited.add(v)) {
+            sb.append("#").append(indices.get(v));
+            return;
+        }
+        sb.append("(").append(v.instance).append(" '").append(v.name);
+        sb.append("' ").append(v.mode).append(" ").append(v.getPos());
+        if (v.isLink()) {
+            sb.append(" #").append(
+                indices.getOrDefault(v.annotation.original, -1));
+        }
+        for (Edge e : v.outgoingEdges) {
+            if (e.isInstanceEdge())
+                continue;
+            sb.append(" ").append(e.label).append(" ");
+            if (e.to == Vertex.EMPTY_VERTEX) {
+                sb.append("()");
+            } else {
+                appendCanonicalString(e.to, indices, visited, sb);
+            }
+        }
+        sb.append(")");
+    }
+
     /**
      * Helper function to find the first AMR graph within a collection of graphs
      * whose reference realization starts with the specified beginning.
@@ -1216,6 +1404,7 @@ public class Amr {
                 amr.prepareForTraining(tagger);
             }
         }
+        Debugger.println("POS tag cache: " + PosTagCache.getStatistics());
     }
 
     /**
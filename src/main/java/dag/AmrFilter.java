@@ -0,0 +1,136 @@
+package dag;
+
+import java.util.Set;
+
+/**
+ * This class represents a filter selecting a subset of the AMR graphs
+ * contained within a file. Whether an AMR graph is selected depends only on
+ * its id (as given in the # ::id line) and its reference sentence (as given in
+ * the # ::tok line), so the filter can be applied while reading a file before
+ * the AMR graph itself is built, see {@link AmrParser#fromFile(String, String,
+ * String, String, int, AmrLineFormat, AmrFilter)}. An AMR graph is selected if
+ * all of the following conditions hold:
+ * <ul>
+ * <li>the length (in words) of its reference sentence lies within the given
+ * bounds,</li>
+ * <li>its id is contained within the given set of ids and</li>
+ * <li>it belongs to the sample of the given rate.</li>
+ * </ul>
+ * The sample is obtained by hashing the id of each AMR graph (or, if no id is
+ * given, its reference sentence), so the same AMR graphs are selected in every
+ * run and regardless of the order in which they are read.
+ */
+public class AmrFilter {
+    // the minimum length (in words) of the reference sentence or -1 if the
+    // length is not bounded from below
+    public final int minSentenceLength;
+    // the maximum length (in words) of the reference sentence or -1 if the
+    // length is not bounded from above
+    public final int maxSentenceLength;
+    // the ids of all AMR graphs to select or null if AMR graphs are selected
+    // regardless of their ids
+    public final Set<String> ids;
+    // the fraction of AMR graphs to select
+    public final double samplingRate;
+
+    /**
+     * Creates a new filter.
+     * @param minSentenceLength the minimum length (in words) of the reference
+     * sentence of each selected AMR graph. If this is set to some value &lt;0,
+     * the length is not bounded from below.
+     * @param maxSentenceLength the maximum length (in words) of the reference
+     * sentence of each selected AMR graph. If this is set to some value &lt;0,
+     * the length is not bounded from above.
+     * @param ids the ids of all AMR graphs to select or {@code null} if AMR
+     * graphs should be selected regardless of their ids
+     * @param samplingRate the fraction of AMR graphs to select, must be in
+     * (0,1]
+     */
+    public AmrFilter(int minSentenceLength, int maxSentenceLength,
+        Set<String> ids, double samplingRate) {
+        if (!(samplingRate > 0 && samplingRate <= 1)) {
+            throw new AssertionError("invalid sampling rate " + samplingRate
+                + ", the sampling rate must be in (0,1]");
+        }
+        this.minSentenceLength = Math.max(minSentenceLength, -1);
+        this.maxSentenceLength = Math.max(maxSentenceLength, -1);
+        this.ids = ids;
+        this.samplingRate = samplingRate;
+    }
+
+    /**
+     * Checks whether an AMR graph is selected by this filter. AMR graphs
+     * without a reference sentence are only selected if the length of the
+     * reference sentence is not bounded.
+     * @param id the id of the AMR graph or {@code null} if none is given
+     * @param sentence the reference sentence of the AMR graph or {@code null}
+     * if none is given
+     * @return true iff the AMR graph is selected
+     */
+    public boolean accepts(String id, String[] sentence) {
+        if (minSentenceLength >= 0 || maxSentenceLength >= 0) {
+            if (sentence == null)
+                return false;
+            if (minSentenceLength >= 0 && sentence.length < minSentenceLength)
+                return false;
+            if (maxSentenceLength >= 0 && sentence.length > maxSentenceLength)
+                return false;
+        }
+
+        if (ids != null && (id == null || !ids.contains(id)))
+            return false;
+
+        if (samplingRate < 1) {
+            String key = id != null
+                ? id
+                : sentence != null ? String.join(" ", sentence) : "";
+            return getSamplingValue(key) < samplingRate;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether an AMR graph is selected by this filter, see {@link
+     * AmrFilter#accepts(String, String[])}.
+     * @param amr the AMR graph
+     * @return true iff the AMR graph is selected
+     */
+    public boolean accepts(Amr amr) {
+        return accepts(amr.id, amr.sentence);
+    }
+
+    /**
+     * Maps a string to a value in [0,1) that is roughly uniformly distributed
+     * over all strings. To this end, the hash code of the string is mixed
+     * using the finalization step of MurmurHash3, as the hash codes of similar
+     * ids (which often differ only in their last characters) are not
+     * distributed evenly on their own.
+     * @param key the string
+     * @return the value
+     */
+    private static double getSamplingValue(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (h & 0xffffffffL) / (double) (1L << 32);
+    }
+
+    public String toString() {
+        StringBuilder ret = new StringBuilder();
+        ret.append("sentence length in [")
+            .append(minSentenceLength < 0 ? "0" : minSentenceLength)
+            .append(",")
+            .append(maxSentenceLength < 0 ? "inf" : maxSentenceLength)
+            .append("]");
+        if (ids != null) {
+            ret.append(", ").append(ids.size()).append(" ids");
+        }
+        if (samplingRate < 1) {
+            ret.append(", sampling rate ").append(samplingRate);
+        }
+        return ret.toString();
+    }
+}
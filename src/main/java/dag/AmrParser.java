@@ -1,8 +1,17 @@
 package dag;
 
+import misc.Debugger;
+import misc.ParallelHelper;
+
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -24,6 +33,21 @@ public class AmrParser {
     private static final Pattern ALIGNMENT_PATTERN =
         Pattern.compile("(.*?)~e\\.([0-9,]+)");
 
+    // the minimum and maximum size of the chunks into which files are split
+    // for reading them concurrently, see fromFileInChunks()
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 1 << 28;
+    // the number of chunks per thread, so that chunks containing AMR graphs
+    // that take longer to parse do not leave other threads idle
+    private static final int CHUNKS_PER_THREAD = 4;
+    // the number of bytes mapped at once while splitting a file into chunks
+    private static final long SCAN_WINDOW_SIZE = 1 << 30;
+    // the charsets in which line terminators, whitespace and opening brackets
+    // are encoded as single bytes that are not part of other characters
+    private static final Set<Charset> ASCII_COMPATIBLE_CHARSETS =
+        new HashSet<>(Arrays.asList(StandardCharsets.US_ASCII,
+            StandardCharsets.ISO_8859_1, StandardCharsets.UTF_8));
+
     // non-instantiable class
     private AmrParser() {}
 
@@ -43,7 +67,9 @@ public class AmrParser {
             for (String line; (line = br.readLine()) != null;) {
                 if (amrs.size() <= index)
                     return;
-                amrs.get(index).posFromString(line);
+                if (!isPlaceholder(amrs.get(index))) {
+                    amrs.get(index).posFromString(line);
+                }
                 index++;
             }
         }
@@ -51,14 +77,19 @@ public class AmrParser {
 
     /**
      * Adds the corresponding dependency tree to each reference sentence
-     * contained within a list of AMR graphs.
+     * contained within a list of AMR graphs. The file is read sequentially to
+     * determine the AMR graph each dependency tree belongs to; the dependency
+     * trees are then parsed concurrently (see {@link ParallelHelper}).
      * @param amrs the list of AMR graphs
      * @param dependencyTreeFile the file in which the dependency trees are
      * stored in CoNLL format.
      */
     public static void addDependencyTrees(
         List<Amr> amrs, String dependencyTreeFile) throws IOException {
-        DependencyTreeParser parser = new DependencyTreeParser();
+        // the edge specifications of each dependency tree and the indices of
+        // the corresponding AMR graphs
+        List<List<String>> edgeSpecs = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
 
         try (BufferedReader br =
                  new BufferedReader(new FileReader(dependencyTreeFile))) {
@@ -67,16 +98,18 @@ public class AmrParser {
 
             for (String line; (line = br.readLine()) != null;) {
                 if (amrs.size() <= index)
-                    return;
+                    break;
 
                 if (!line.isEmpty()) {
                     edgeSpec.add(line);
                 } else {
                     if (!edgeSpec.isEmpty()) {
-                        amrs.get(index).dependencyTree = parser.fromString(
-                            edgeSpec, amrs.get(index).sentence);
-                        amrs.get(index).dependencyTree.amr = amrs.get(index);
-                        edgeSpec.clear();
+                        // dependency trees of placeholders are never parsed
+                        if (!isPlaceholder(amrs.get(index))) {
+                            edgeSpecs.add(edgeSpec);
+                            indices.add(index);
+                        }
+                        edgeSpec = new ArrayList<>();
                         do {
                             index++;
                         } while (index < amrs.size()
@@ -86,6 +119,20 @@ public class AmrParser {
                 }
             }
         }
+
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < indices.size(); i++) {
+            positions.add(i);
+        }
+        DependencyTreeParser parser = new DependencyTreeParser();
+        List<DependencyTree> trees = ParallelHelper.map(positions,
+            i -> parser.fromString(
+                edgeSpecs.get(i), amrs.get(indices.get(i)).sentence));
+        for (int i = 0; i < trees.size(); i++) {
+            Amr amr = amrs.get(indices.get(i));
+            amr.dependencyTree = trees.get(i);
+            amr.dependencyTree.amr = amr;
+        }
     }
 
     /**
@@ -107,61 +154,346 @@ public class AmrParser {
      */
     public static List<Amr> fromFile(String file, String dependencyTreeFile,
         String posTagFile, int limit, AmrLineFormat format) throws IOException {
+        return fromFile(
+            file, dependencyTreeFile, posTagFile, null, limit, format, null);
+    }
+
+    /**
+     * Reads a subset of the AMR graphs contained within a file. AMR graphs
+     * rejected by the given filter are never built; instead, they are
+     * represented by placeholders which only retain their ids and reference
+     * sentences, so that the POS tags, dependency trees and alignments of the
+     * selected AMR graphs can still be found by index. No POS tags, dependency
+     * trees or alignments are processed for placeholders, and all placeholders
+     * are removed before the AMR graphs are returned.
+     * @param file the file in which the AMR graphs are stored in LDC2014T12
+     * format, see {@link AmrParser#fromFile(String, String, String, int,
+     * AmrLineFormat)}
+     * @param dependencyTreeFile the file in which the corresponding dependency
+     * trees are stored or {@code null} if no dependency trees should be loaded,
+     * see {@link AmrParser#addDependencyTrees(List, String)}
+     * @param posTagFile the file in which the corresponding POS tags are stored
+     * or {@code null} if no POS tags should be loaded, see {@link
+     * AmrParser#addPosTags(List, String)}
+     * @param alignmentFile the file in which additional alignments are stored
+     * in {@link AmrLineFormat#EXTERNAL} format or {@code null} if no additional
+     * alignments should be loaded, see {@link
+     * AmrParser#addAlignmentsFromFile(List, String, AmrLineFormat)}
+     * @param limit the maximum number of AMR graphs to select. Set this to
+     * some value &lt; 0 to select all AMR graphs accepted by {@code filter}.
+     * @param format the format in which alignments are stored within {@code
+     * file}, see {@link AmrLineFormat}
+     * @param filter the filter selecting the AMR graphs to load or {@code
+     * null} if all AMR graphs should be loaded
+     * @return the list of selected AMR graphs, in the same order as in {@code
+     * file}
+     */
+    public static List<Amr> fromFile(String file, String dependencyTreeFile,
+        String posTagFile, String alignmentFile, int limit,
+        AmrLineFormat format, AmrFilter filter) throws IOException {
+        List<Amr> amrs;
+
+        if (limit < 0) {
+            amrs = fromFileInChunks(file, format, filter);
+        } else {
+            try (BufferedReader br =
+                     new BufferedReader(new FileReader(file))) {
+                amrs = fromReader(br, limit, format, null, filter);
+            }
+        }
+
+        if (posTagFile != null) {
+            addPosTags(amrs, posTagFile);
+        }
+        if (dependencyTreeFile != null) {
+            addDependencyTrees(amrs, dependencyTreeFile);
+        }
+        if (alignmentFile != null) {
+            addAlignmentsFromFile(amrs, alignmentFile, AmrLineFormat.EXTERNAL);
+        }
+        if (filter != null) {
+            amrs.removeIf(AmrParser::isPlaceholder);
+        }
+        return amrs;
+    }
+
+    /**
+     * Reads the AMR graphs belonging to a given shard from a file. As POS tags
+     * and dependency trees are assigned by index, they can not be loaded for a
+     * shard.
+     * @param file the file in which the AMR graphs are stored in LDC2014T12
+     * format, see {@link AmrParser#fromFile(String, String, String, int,
+     * AmrLineFormat)}
+     * @param limit the maximum number of AMR graphs to load. Set this to some
+     * value &lt; 0 to load all AMR graphs belonging to the shard.
+     * @param format the format in which alignments are stored, see {@link
+     * AmrLineFormat}
+     * @param shard the shard to load, see {@link Shard}
+     * @return the list of AMR graphs belonging to {@code shard}, in the same
+     * order as in {@code file}
+     */
+    public static List<Amr> fromFile(String file, int limit,
+        AmrLineFormat format, Shard shard) throws IOException {
+        if (!shard.byByteRange) {
+            try (BufferedReader br =
+                     new BufferedReader(new FileReader(file))) {
+                return fromReader(br, limit, format, shard, null);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(file))) {
+            long start = shard.getStart(channel);
+            long end = shard.getEnd(channel);
+            if (end - start > Integer.MAX_VALUE) {
+                throw new AssertionError("shard " + shard + " of " + file
+                    + " is too large, use a higher number of shards");
+            }
+
+            // the range is decoded with the default charset to be consistent
+            // with the FileReader used for reading entire files
+            MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            String content = Charset.defaultCharset().decode(buffer).toString();
+
+            try (BufferedReader br =
+                     new BufferedReader(new StringReader(content))) {
+                return fromReader(br, limit, format, null, null);
+            }
+        }
+    }
+
+    /**
+     * Reads all AMR graphs from a file by mapping it into memory, splitting it
+     * into chunks and parsing these chunks concurrently (see {@link
+     * ParallelHelper}). Chunks always end right after the empty line
+     * terminating an AMR graph; as {@link AmrParser#fromReader(BufferedReader,
+     * int, AmrLineFormat, Shard, AmrFilter)} discards the id, the reference
+     * sentence and the alignments after each AMR graph, every chunk can be
+     * read independently
+     * and the concatenation of the AMR graphs read from all chunks is
+     * identical to the result of reading the entire file at once. Small
+     * files and files whose encoding does not allow for splitting them
+     * bytewise are read sequentially.
+     * @param file the file in which the AMR graphs are stored in LDC2014T12
+     * format
+     * @param format the format in which alignments are stored, see {@link
+     * AmrLineFormat}
+     * @param filter the filter selecting the AMR graphs to build or {@code
+     * null} if all AMR graphs should be built
+     * @return the list of AMR graphs (including placeholders for all AMR
+     * graphs rejected by {@code filter}), in the same order as in {@code file}
+     */
+    private static List<Amr> fromFileInChunks(String file,
+        AmrLineFormat format, AmrFilter filter) throws IOException {
+        // the file is decoded with the default charset to be consistent with
+        // the FileReader used for reading files sequentially
+        Charset charset = Charset.defaultCharset();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(file))) {
+            int parallelism = ParallelHelper.getParallelism();
+            long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE,
+                channel.size() / (parallelism * CHUNKS_PER_THREAD)));
+
+            if (parallelism <= 1 || channel.size() < 2 * MIN_CHUNK_SIZE
+                || !ASCII_COMPATIBLE_CHARSETS.contains(charset)) {
+                try (BufferedReader br =
+                         new BufferedReader(new FileReader(file))) {
+                    return fromReader(br, -1, format, null, filter);
+                }
+            }
+
+            List<Long> boundaries = getChunkBoundaries(channel, chunkSize);
+            List<Integer> chunks = new ArrayList<>();
+            for (int i = 0; i + 1 < boundaries.size(); i++) {
+                chunks.add(i);
+            }
+
+            List<List<Amr>> amrsPerChunk = ParallelHelper.map(chunks, i -> {
+                long start = boundaries.get(i);
+                long end = boundaries.get(i + 1);
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new AssertionError("the AMR graph starting within "
+                        + "bytes " + start + " to " + end + " of " + file
+                        + " is too large");
+                }
+                MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, start, end - start);
+                String content = charset.decode(buffer).toString();
+                try (BufferedReader br =
+                         new BufferedReader(new StringReader(content))) {
+                    return fromReader(br, -1, format, null, filter);
+                }
+            });
+
+            List<Amr> amrs = new ArrayList<>();
+            amrsPerChunk.forEach(amrs::addAll);
+            return amrs;
+        }
+    }
+
+    /**
+     * Splits a file into chunks of roughly the given size, each of which ends
+     * right after the empty line terminating an AMR graph. To this end, the
+     * file is scanned bytewise, recognizing lines and the start and end of AMR
+     * graphs exactly as {@link AmrParser#fromReader(BufferedReader, int,
+     * AmrLineFormat, Shard, AmrFilter)} does for the decoded lines; this is
+     * possible as all characters relevant for this purpose are encoded as
+     * single bytes which do not occur within the encodings of other
+     * characters.
+     * @param channel the file channel
+     * @param chunkSize the minimum size of each chunk but the last, in bytes
+     * @return the byte offsets at which the chunks start, followed by the size
+     * of the file
+     */
+    private static List<Long> getChunkBoundaries(
+        FileChannel channel, long chunkSize) throws IOException {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        long size = channel.size();
+        long nextBoundary = chunkSize;
+
+        boolean collectingDagData = false;
+        boolean lineStart = true;
+        boolean lineEmpty = true;
+        boolean lineStartsDag = false;
+        // whether the previous line was the empty line terminating an AMR
+        // graph
+        boolean dagEnded = false;
+        // whether the previous byte was a carriage return, in which case an
+        // immediately following line feed belongs to the same line terminator
+        boolean afterCarriageReturn = false;
+
+        for (long windowStart = 0; windowStart < size;
+             windowStart += SCAN_WINDOW_SIZE) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                windowStart, Math.min(SCAN_WINDOW_SIZE, size - windowStart));
+            for (long position = windowStart; buffer.hasRemaining();
+                 position++) {
+                int b = buffer.get() & 0xff;
+                if (afterCarriageReturn) {
+                    afterCarriageReturn = false;
+                    if (b == '\n')
+                        continue;
+                }
+
+                if (lineStart) {
+                    if (dagEnded && position >= nextBoundary) {
+                        boundaries.add(position);
+                        nextBoundary = position + chunkSize;
+                    }
+                    dagEnded = false;
+                    lineStart = false;
+                    lineEmpty = true;
+                    lineStartsDag = b == '(';
+                }
+
+                if (b == '\n' || b == '\r') {
+                    if (!collectingDagData && lineStartsDag) {
+                        collectingDagData = true;
+                    }
+                    if (collectingDagData && lineEmpty) {
+                        collectingDagData = false;
+                        dagEnded = true;
+                    }
+                    lineStart = true;
+                    afterCarriageReturn = b == '\r';
+                } else if (b > ' ') {
+                    lineEmpty = false;
+                }
+            }
+        }
+
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    /**
+     * Reads a list of AMR graphs line by line.
+     * @param br the reader from which the AMR graphs are read
+     * @param limit the maximum number of AMR graphs to load. Set this to some
+     * value &lt; 0 to load all AMR graphs.
+     * @param format the format in which alignments are stored, see {@link
+     * AmrLineFormat}
+     * @param shard if this is not {@code null}, only AMR graphs whose index is
+     * contained within this shard are built; all others are skipped
+     * @param filter if this is not {@code null}, only AMR graphs accepted by
+     * this filter are built; all others are represented by placeholders (see
+     * {@link AmrParser#isPlaceholder(Amr)}) and do not count towards {@code
+     * limit}
+     * @return the list of AMR graphs
+     */
+    private static List<Amr> fromReader(BufferedReader br, int limit,
+        AmrLineFormat format, Shard shard, AmrFilter filter)
+        throws IOException {
         List<Amr> amrs = new ArrayList<>();
 
         boolean collectingDagData = false;
         StringBuilder dagReprBuilder = new StringBuilder("");
 
+        String currentId = null;
         String[] currentSentence = null;
         String alignmentLine = null;
+        int index = 0;
+        int selected = 0;
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            for (String line; (line = br.readLine()) != null;) {
-                if (line.startsWith("# ::tok ")) {
-                    currentSentence = getSentence(line);
-                } else if (line.startsWith("# ::alignments ")) {
-                    alignmentLine = line;
-                }
+        for (String line; (line = br.readLine()) != null;) {
+            if (line.startsWith("# ::id ")) {
+                currentId = getId(line);
+            } else if (line.startsWith("# ::tok ")) {
+                currentSentence = getSentence(line);
+            } else if (line.startsWith("# ::alignments ")) {
+                alignmentLine = line;
+            }
 
-                if (!collectingDagData) {
-                    if (line.startsWith("("))
-                        collectingDagData = true;
-                }
+            if (!collectingDagData) {
+                if (line.startsWith("("))
+                    collectingDagData = true;
+            }
 
-                if (collectingDagData) {
-                    if (!line.trim().isEmpty()) {
-                        dagReprBuilder.append(line);
+            if (collectingDagData) {
+                if (!line.trim().isEmpty()) {
+                    dagReprBuilder.append(line);
+                } else {
+                    if (shard != null && !shard.contains(index)) {
+                        if (format != null) {
+                            alignmentLine = null;
+                        }
+                    } else if (filter != null
+                        && !filter.accepts(currentId, currentSentence)) {
+                        amrs.add(newPlaceholder(currentId, currentSentence));
+                        if (format != null) {
+                            alignmentLine = null;
+                        }
                     } else {
                         Amr amr = fromString(
                             dagReprBuilder.toString(), currentSentence);
+                        amr.id = currentId;
                         if (alignmentLine != null && format != null) {
                             addAlignmentFromLine(amr, alignmentLine, format);
                             alignmentLine = null;
                         }
                         amrs.add(amr);
-                        if (amrs.size() == limit) {
+                        selected++;
+                        if (selected == limit) {
                             break;
                         }
-
-                        collectingDagData = false;
-                        dagReprBuilder.setLength(0);
-                        currentSentence = null;
                     }
+                    index++;
+
+                    collectingDagData = false;
+                    dagReprBuilder.setLength(0);
+                    currentId = null;
+                    currentSentence = null;
                 }
             }
         }
-
-        if (posTagFile != null) {
-            addPosTags(amrs, posTagFile);
-        }
-        if (dependencyTreeFile != null) {
-            addDependencyTrees(amrs, dependencyTreeFile);
-        }
         return amrs;
     }
 
     /**
      * Adds alignments to each AMR graph contained within a list of AMR graphs.
+     * The alignments of different AMR graphs are processed concurrently, see
+     * {@link ParallelHelper}.
      * @param amrs the list of AMR graphs
      * @param filePath the file in which the alignments are stored
      * @param format the format in which the alignments are represented, see
@@ -173,15 +505,26 @@ public class AmrParser {
             amr.backupAlignment = amr.alignment;
             amr.alignment = new HashMap<>();
         }
-        int i = 0;
+        List<String> lines = new ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            for (String line; (line = br.readLine()) != null;) {
-                if (amrs.size() == i)
-                    return;
-                addAlignmentFromLine(amrs.get(i), line, format);
-                i++;
+            for (String line; lines.size() < amrs.size()
+                 && (line = br.readLine()) != null;) {
+                lines.add(line);
+            }
+        }
+
+        // the i-th line belongs to the i-th AMR graph, so all lines can be
+        // processed concurrently
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (!isPlaceholder(amrs.get(i))) {
+                indices.add(i);
             }
         }
+        ParallelHelper.map(indices, i -> {
+            addAlignmentFromLine(amrs.get(i), lines.get(i), format);
+            return null;
+        });
     }
 
     private static void addAlignmentFromLine(
@@ -307,11 +650,178 @@ public class AmrParser {
         }
     }
 
+    /**
+     * Parses all AMR graphs contained within a file using both {@link
+     * SinglePassAmrParser} and {@link AmrParser#fromStringRegex(String,
+     * String[])}, checks that both parsers build identical graphs and compares
+     * the time required by each of them. Each parser is applied several times
+     * to all graphs and only the last round is measured.
+     * @param file the file in which the AMR graphs are stored in LDC2014T12
+     * format
+     * @return the number of AMR graphs for which the parsers disagree
+     */
+    public static int compareParsers(String file) throws IOException {
+        List<String> dagReprs = new ArrayList<>();
+        List<String[]> sentences = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            StringBuilder dagReprBuilder = new StringBuilder();
+            String[] currentSentence = null;
+            for (String line; (line = br.readLine()) != null;) {
+                if (line.startsWith("# ::tok ")) {
+                    currentSentence = getSentence(line);
+                }
+                if (dagReprBuilder.length() == 0 && !line.startsWith("("))
+                    continue;
+                if (!line.trim().isEmpty()) {
+                    dagReprBuilder.append(line);
+                } else {
+                    dagReprs.add(dagReprBuilder.toString());
+                    sentences.add(currentSentence);
+                    dagReprBuilder.setLength(0);
+                    currentSentence = null;
+                }
+            }
+        }
+
+        // the results of both parsers, i.e. AMR graphs or the exceptions
+        // thrown while parsing
+        Object[] singlePassResults = new Object[dagReprs.size()];
+        Object[] regexResults = new Object[dagReprs.size()];
+        final int rounds = 3;
+        long singlePassTime = 0, regexTime = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < dagReprs.size(); i++) {
+                try {
+                    singlePassResults[i] = SinglePassAmrParser.parse(
+                        dagReprs.get(i), sentences.get(i));
+                } catch (RuntimeException | AssertionError e) {
+                    singlePassResults[i] = e;
+                }
+            }
+            singlePassTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < dagReprs.size(); i++) {
+                try {
+                    regexResults[i] =
+                        fromStringRegex(dagReprs.get(i), sentences.get(i));
+                } catch (RuntimeException | AssertionError e) {
+                    regexResults[i] = e;
+                }
+            }
+            regexTime = System.nanoTime() - start;
+        }
+
+        int unsupported = 0, mismatches = 0;
+        for (int i = 0; i < dagReprs.size(); i++) {
+            if (singlePassResults[i] == null) {
+                unsupported++;
+            } else if (!describe(singlePassResults[i])
+                            .equals(describe(regexResults[i]))) {
+                mismatches++;
+                Debugger.printlnErr(
+                    "the AMR parsers disagree on " + dagReprs.get(i));
+            }
+        }
+
+        Debugger.println("parsed " + dagReprs.size() + " AMR graphs from "
+            + file + ": single-pass parser " + singlePassTime / 1000000
+            + " ms (" + unsupported + " graphs left to the regex-based parser)"
+            + ", regex-based parser " + regexTime / 1000000 + " ms, "
+            + mismatches + " mismatches");
+        return mismatches;
+    }
+
+    /**
+     * Describes the result of parsing an AMR graph, i.e. the class of the
+     * thrown exception or the structure of the graph including the order of
+     * all incoming and outgoing edges, the alignment of each edge and the
+     * annotations set during parsing, so that two AMR graphs have the same
+     * description iff they are identical.
+     */
+    private static String describe(Object result) {
+        if (result instanceof Throwable)
+            return result.getClass().getName();
+        Amr amr = (Amr) result;
+        List<Vertex> vertices = new ArrayList<>();
+        Map<Vertex, Integer> indices = new IdentityHashMap<>();
+        collectVertices(amr.dag.getRoot(), vertices, indices);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(Arrays.toString(amr.sentence)).append("\n");
+        for (Vertex v : vertices) {
+            sb.append(indices.get(v)).append(" ").append(v.instance);
+            sb.append(" [").append(v.annotation.initialConcept).append("]\n");
+            for (Edge e : v.outgoingEdges) {
+                sb.append(" -> ").append(e.label).append(" ");
+                sb.append(
+                    e.to == Vertex.EMPTY_VERTEX ? "_" : indices.get(e.to));
+                sb.append(" ").append(e.instanceEdge).append(" ");
+                sb.append(e.debugInfo).append(" ");
+                sb.append(new TreeSet<>(amr.alignment.getOrDefault(
+                    e, Collections.emptySet())));
+                sb.append("\n");
+            }
+            for (Edge e : v.incomingEdges) {
+                sb.append(" <- ").append(indices.get(e.from)).append(".");
+                sb.append(e.from.outgoingEdges.indexOf(e)).append("\n");
+            }
+        }
+        return sb.append(amr.alignment.size()).toString();
+    }
+
+    /**
+     * Collects all vertices reachable from a vertex in pre-order.
+     */
+    private static void collectVertices(
+        Vertex v, List<Vertex> vertices, Map<Vertex, Integer> indices) {
+        if (v == Vertex.EMPTY_VERTEX || indices.containsKey(v))
+            return;
+        indices.put(v, vertices.size());
+        vertices.add(v);
+        for (Edge e : v.outgoingEdges) {
+            collectVertices(e.to, vertices, indices);
+        }
+    }
+
     private static String[] getSentence(String line) {
         line = line.substring(8);
         return line.split(" ");
     }
 
+    private static String getId(String line) {
+        String[] comps = line.substring(7).trim().split("\\s+", 2);
+        return comps[0].isEmpty() ? null : comps[0];
+    }
+
+    /**
+     * Creates a placeholder for an AMR graph that has been rejected by an
+     * {@link AmrFilter}. Placeholders retain the id and the reference sentence
+     * of the AMR graph, which are required to assign POS tags, dependency
+     * trees and alignments to the remaining AMR graphs, but no graph.
+     * @param id the id of the AMR graph
+     * @param sentence the reference sentence of the AMR graph
+     * @return the placeholder
+     */
+    private static Amr newPlaceholder(String id, String[] sentence) {
+        Amr amr = new Amr();
+        amr.dag = null;
+        amr.id = id;
+        amr.sentence = sentence;
+        return amr;
+    }
+
+    /**
+     * @return whether {@code amr} is a placeholder for an AMR graph that has
+     * been rejected by an {@link AmrFilter}, see {@link
+     * AmrParser#fromFile(String, String, String, String, int, AmrLineFormat,
+     * AmrFilter)}
+     */
+    private static boolean isPlaceholder(Amr amr) {
+        return amr.dag == null;
+    }
+
     /**
      * see {@link AmrParser#fromString(String, String[])}
      */
@@ -321,12 +831,34 @@ public class AmrParser {
 
     /**
      * Builds an AMR graph from a string representation of the graph in
-     * LDC2014T12 format and assigns a reference sentence to it.
+     * LDC2014T12 format and assigns a reference sentence to it. The graph is
+     * built in a single pass using {@link SinglePassAmrParser} whenever
+     * possible and using {@link AmrParser#fromStringRegex(String, String[])}
+     * otherwise; both result in identical graphs.
      * @param dagRepr the string representation of the AMR graph
      * @param sentence the reference sentence
      * @return the built AMR graph
      */
     public static Amr fromString(String dagRepr, String[] sentence) {
+        Amr result = SinglePassAmrParser.parse(dagRepr, sentence);
+        if (result == null) {
+            result = fromStringRegex(dagRepr, sentence);
+        }
+        return result;
+    }
+
+    /**
+     * Builds an AMR graph from a string representation of the graph in
+     * LDC2014T12 format and assigns a reference sentence to it by rewriting the
+     * string representation using several regular expressions. This method is
+     * synchronized as it adds instance edges to the shared {@link
+     * Vertex#EMPTY_VERTEX}.
+     * @param dagRepr the string representation of the AMR graph
+     * @param sentence the reference sentence
+     * @return the built AMR graph
+     */
+    public static synchronized Amr fromStringRegex(
+        String dagRepr, String[] sentence) {
         Amr result = new Amr();
         result.sentence = sentence;
 
@@ -345,7 +877,10 @@ public class AmrParser {
             }
             Edge e = new Edge(v, Vertex.EMPTY_VERTEX, v.instance);
             e.instanceEdge = true;
-            v.instance = v.instance.split("~")[0];
+            // intern the concept so that its properties are only computed
+            // once, see Vertex#getSymbol()
+            v.instance =
+                SymbolTable.intern(v.instance.split("~")[0]).getString();
         }
 
         Pattern unbracedInstances = Pattern.compile("(:[^ ]+ )([^(].*?)([) ])");
@@ -366,23 +901,35 @@ public class AmrParser {
 
             // edge-based alignment
             for (Edge e : v.outgoingEdges) {
-                Matcher eMatcher = ALIGNMENT_PATTERN.matcher(e.label);
-                while (eMatcher.find()) {
-                    e.label = eMatcher.group(1);
-
-                    String[] alignStrings = eMatcher.group(2).split(",");
-                    Set<Integer> alignment = new HashSet<>();
-                    for (String alignString : alignStrings) {
-                        alignment.add(Integer.valueOf(alignString));
-                    }
-                    result.alignment.put(e, alignment);
-                }
+                addEdgeAlignment(result, e);
             }
         }
 
         return result;
     }
 
+    /**
+     * Removes the alignment {@code ~e.i,j,...} from the label of an edge and
+     * adds it to the alignment of an AMR graph.
+     * @param amr the AMR graph
+     * @param e the edge
+     */
+    static void addEdgeAlignment(Amr amr, Edge e) {
+        if (e.label.indexOf('~') < 0)
+            return;
+        Matcher eMatcher = ALIGNMENT_PATTERN.matcher(e.label);
+        while (eMatcher.find()) {
+            e.label = eMatcher.group(1);
+
+            String[] alignStrings = eMatcher.group(2).split(",");
+            Set<Integer> alignment = new HashSet<>();
+            for (String alignString : alignStrings) {
+                alignment.add(Integer.valueOf(alignString));
+            }
+            amr.alignment.put(e, alignment);
+        }
+    }
+
     private static void generateEdges(
         String dagRepr, Map<String, Vertex> vertexMap, DirectedGraph dag) {
         String[] split;
@@ -419,7 +966,8 @@ public class AmrParser {
             }
 
             String edgeLabel = split[0];
-            Edge e = new Edge(fromNode, toNode, edgeLabel);
+            Edge e = new Edge(fromNode, toNode,
+                SymbolTable.intern(edgeLabel).getString());
             if (isLink && !toNode.isSpecialNode()) {
                 e.debugInfo = "link";
             }
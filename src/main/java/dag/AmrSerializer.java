@@ -0,0 +1,501 @@
+package dag;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Static class that writes prepared AMR graphs to and reads them from a
+ * compact binary representation, see {@link CorpusCache}. For each AMR graph,
+ * the following information is stored:
+ * <ul>
+ * <li>the id of the AMR graph, the reference sentence and its POS tags,</li>
+ * <li>all vertices and edges of the graph along with their annotations (see
+ * {@link AnnotationFunction}), including vertices and edges that are no
+ * longer reachable from the root but still referred to by links, alignments
+ * or spans,</li>
+ * <li>the order of the incoming and outgoing edges of each vertex and</li>
+ * <li>the alignment, the backup alignment, the type alignment and the spans
+ * of the AMR graph.</li>
+ * </ul>
+ * Sets of alignments and spans that are shared between several keys are
+ * restored as shared objects. Dependency trees, predictions and partial
+ * transition functions are not stored as they are either no longer required
+ * once an AMR graph has been prepared or assigned only during generation.
+ * Within each list of AMR graphs, every distinct string is stored only once.
+ */
+public class AmrSerializer {
+    // the value written instead of a reference to null
+    private static final int NULL = -1;
+    // the value written instead of a reference to Vertex.EMPTY_VERTEX
+    private static final int EMPTY = -2;
+
+    // non-instantiable class
+    private AmrSerializer() {}
+
+    /**
+     * Writes a list of prepared AMR graphs.
+     * @param amrs the AMR graphs
+     * @param out the stream to which the AMR graphs are written
+     */
+    public static void write(List<Amr> amrs, DataOutputStream out)
+        throws IOException {
+        Writer writer = new Writer(out);
+        out.writeInt(amrs.size());
+        for (Amr amr : amrs) {
+            writer.write(amr);
+        }
+    }
+
+    /**
+     * Reads a list of prepared AMR graphs that has been written by {@link
+     * AmrSerializer#write(List, DataOutputStream)}.
+     * @param in the stream from which the AMR graphs are read
+     * @return the AMR graphs
+     */
+    public static List<Amr> read(DataInputStream in) throws IOException {
+        Reader reader = new Reader(in);
+        int count = in.readInt();
+        List<Amr> amrs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            amrs.add(reader.read());
+        }
+        return amrs;
+    }
+
+    /**
+     * Writes AMR graphs to a stream, keeping track of the strings written so
+     * far. Vertices, edges, sets and spans are numbered per AMR graph.
+     */
+    private static class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        private Map<Vertex, Integer> vertexIds;
+        private Map<Edge, Integer> edgeIds;
+        private Map<Set<Integer>, Integer> setIds;
+        private Map<Span, Integer> spanIds;
+
+        Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void write(Amr amr) throws IOException {
+            writeString(amr.id);
+            writeStrings(amr.sentence);
+            writeStrings(amr.pos);
+
+            List<Vertex> vertices = new ArrayList<>();
+            List<Edge> edges = new ArrayList<>();
+            collect(amr, vertices, edges);
+            setIds = new IdentityHashMap<>();
+            spanIds = new IdentityHashMap<>();
+
+            out.writeInt(vertices.size());
+            for (Vertex v : vertices) {
+                writeString(v.instance);
+                writeString(v.mode);
+                writeString(v.name);
+                writeString(v.annotation.pos);
+                writeString(v.annotation.initialConcept);
+                out.writeBoolean(v.annotation.delete);
+                out.writeInt(v.annotation.nrOfSwapDowns);
+            }
+            for (Vertex v : vertices) {
+                writeVertex(v.annotation.original);
+            }
+
+            out.writeInt(edges.size());
+            for (Edge e : edges) {
+                writeVertex(e.from);
+                writeVertex(e.to);
+                writeString(e.label);
+                writeString(e.debugInfo);
+                out.writeBoolean(e.instanceEdge);
+                out.writeBoolean(e.inserted);
+            }
+
+            for (Vertex v : vertices) {
+                writeEdges(v.incomingEdges);
+                writeEdges(v.outgoingEdges);
+            }
+            writeVertex(amr.dag.root);
+
+            writeAlignment(amr.alignment);
+            writeAlignment(amr.backupAlignment);
+            if (amr.typeAlignment == null) {
+                out.writeInt(NULL);
+            } else {
+                out.writeInt(amr.typeAlignment.size());
+                for (Map.Entry<EdgeTypePair, Set<Integer>> entry :
+                    amr.typeAlignment.entrySet()) {
+                    writeEdge(entry.getKey().e);
+                    writeString(entry.getKey().type.name());
+                    writeSet(entry.getValue());
+                }
+            }
+            if (amr.span == null) {
+                out.writeInt(NULL);
+            } else {
+                out.writeInt(amr.span.size());
+                for (Map.Entry<Edge, Span> entry : amr.span.entrySet()) {
+                    writeEdge(entry.getKey());
+                    writeSpan(entry.getValue());
+                }
+            }
+        }
+
+        /**
+         * Collects all vertices and edges that are reachable from the root or
+         * from some edge referred to by the alignments or spans of an AMR
+         * graph, following edges in both directions as well as links to their
+         * original vertices. {@link Vertex#EMPTY_VERTEX} is shared by all AMR
+         * graphs and thus neither collected nor followed.
+         */
+        private void collect(Amr amr, List<Vertex> vertices, List<Edge> edges) {
+            vertexIds = new IdentityHashMap<>();
+            edgeIds = new IdentityHashMap<>();
+
+            Deque<Vertex> agenda = new ArrayDeque<>();
+            visit(amr.dag.root, vertices, agenda);
+            List<Edge> referencedEdges = new ArrayList<>();
+            for (Map<Edge, ?> map : Arrays.asList(
+                     amr.alignment, amr.backupAlignment, amr.span)) {
+                if (map != null) {
+                    referencedEdges.addAll(map.keySet());
+                }
+            }
+            if (amr.typeAlignment != null) {
+                for (EdgeTypePair pair : amr.typeAlignment.keySet()) {
+                    referencedEdges.add(pair.e);
+                }
+            }
+            for (Edge e : referencedEdges) {
+                visit(e, vertices, edges, agenda);
+            }
+
+            while (!agenda.isEmpty()) {
+                Vertex v = agenda.pop();
+                for (Edge e : v.incomingEdges) {
+                    visit(e, vertices, edges, agenda);
+                }
+                for (Edge e : v.outgoingEdges) {
+                    visit(e, vertices, edges, agenda);
+                }
+                visit(v.annotation.original, vertices, agenda);
+            }
+        }
+
+        private void visit(
+            Vertex v, List<Vertex> vertices, Deque<Vertex> agenda) {
+            if (v == null || v == Vertex.EMPTY_VERTEX
+                || vertexIds.containsKey(v))
+                return;
+            vertexIds.put(v, vertices.size());
+            vertices.add(v);
+            agenda.push(v);
+        }
+
+        private void visit(Edge e, List<Vertex> vertices, List<Edge> edges,
+            Deque<Vertex> agenda) {
+            if (e == null || edgeIds.containsKey(e))
+                return;
+            edgeIds.put(e, edges.size());
+            edges.add(e);
+            visit(e.from, vertices, agenda);
+            visit(e.to, vertices, agenda);
+        }
+
+        private void writeVertex(Vertex v) throws IOException {
+            if (v == null) {
+                out.writeInt(NULL);
+            } else if (v == Vertex.EMPTY_VERTEX) {
+                out.writeInt(EMPTY);
+            } else {
+                out.writeInt(vertexIds.get(v));
+            }
+        }
+
+        private void writeEdge(Edge e) throws IOException {
+            out.writeInt(e == null ? NULL : edgeIds.get(e));
+        }
+
+        private void writeEdges(List<Edge> edges) throws IOException {
+            out.writeInt(edges.size());
+            for (Edge e : edges) {
+                writeEdge(e);
+            }
+        }
+
+        private void writeAlignment(Map<Edge, Set<Integer>> alignment)
+            throws IOException {
+            if (alignment == null) {
+                out.writeInt(NULL);
+                return;
+            }
+            out.writeInt(alignment.size());
+            for (Map.Entry<Edge, Set<Integer>> entry : alignment.entrySet()) {
+                writeEdge(entry.getKey());
+                writeSet(entry.getValue());
+            }
+        }
+
+        /**
+         * Writes the id of a set, followed by its elements if the set has not
+         * been written before.
+         */
+        private void writeSet(Set<Integer> set) throws IOException {
+            if (set == null) {
+                out.writeInt(NULL);
+                return;
+            }
+            Integer id = setIds.get(set);
+            if (id != null) {
+                out.writeInt(id);
+                return;
+            }
+            out.writeInt(setIds.size());
+            setIds.put(set, setIds.size());
+            out.writeInt(set.size());
+            for (int i : set) {
+                out.writeInt(i);
+            }
+        }
+
+        /**
+         * Writes the id of a span, followed by its contents if the span has
+         * not been written before.
+         */
+        private void writeSpan(Span span) throws IOException {
+            if (span == null) {
+                out.writeInt(NULL);
+                return;
+            }
+            Integer id = spanIds.get(span);
+            if (id != null) {
+                out.writeInt(id);
+                return;
+            }
+            out.writeInt(spanIds.size());
+            spanIds.put(span, spanIds.size());
+            out.writeInt(span.min);
+            out.writeInt(span.max);
+            out.writeBoolean(span.hasElements);
+            out.writeInt(span.getElements().size());
+            for (int i : span.getElements()) {
+                out.writeInt(i);
+            }
+        }
+
+        private void writeStrings(String[] array) throws IOException {
+            if (array == null) {
+                out.writeInt(NULL);
+                return;
+            }
+            out.writeInt(array.length);
+            for (String s : array) {
+                writeString(s);
+            }
+        }
+
+        /**
+         * Writes the id of a string, followed by the string itself if it has
+         * not been written before.
+         */
+        private void writeString(String s) throws IOException {
+            if (s == null) {
+                out.writeInt(NULL);
+                return;
+            }
+            Integer id = strings.get(s);
+            if (id != null) {
+                out.writeInt(id);
+                return;
+            }
+            out.writeInt(strings.size());
+            strings.put(s, strings.size());
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads AMR graphs from a stream, see {@link Writer}.
+     */
+    private static class Reader {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+
+        private Vertex[] vertices;
+        private Edge[] edges;
+        private List<Set<Integer>> sets;
+        private List<Span> spans;
+
+        Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        Amr read() throws IOException {
+            Amr amr = new Amr();
+            amr.id = readString();
+            amr.sentence = readStrings();
+            amr.pos = readStrings();
+            sets = new ArrayList<>();
+            spans = new ArrayList<>();
+
+            vertices = new Vertex[in.readInt()];
+            for (int i = 0; i < vertices.length; i++) {
+                String instance = readString();
+                Vertex v = new Vertex(
+                    instance == null ? null : intern(instance));
+                v.mode = readString();
+                v.name = readString();
+                v.annotation.pos = readString();
+                v.annotation.initialConcept = readString();
+                v.annotation.delete = in.readBoolean();
+                v.annotation.nrOfSwapDowns = in.readInt();
+                vertices[i] = v;
+            }
+            for (Vertex v : vertices) {
+                v.annotation.original = readVertex();
+            }
+
+            edges = new Edge[in.readInt()];
+            for (int i = 0; i < edges.length; i++) {
+                Vertex from = readVertex();
+                Vertex to = readVertex();
+                String label = readString();
+                Edge e = Edge.newDetachedEdge(
+                    from, to, label == null ? null : intern(label));
+                e.debugInfo = readString();
+                e.instanceEdge = in.readBoolean();
+                e.inserted = in.readBoolean();
+                edges[i] = e;
+            }
+
+            for (Vertex v : vertices) {
+                readEdges(v.incomingEdges);
+                readEdges(v.outgoingEdges);
+            }
+            amr.dag.root = readVertex();
+
+            amr.alignment = readAlignment();
+            amr.backupAlignment = readAlignment();
+            int typeAlignmentSize = in.readInt();
+            amr.typeAlignment =
+                typeAlignmentSize == NULL ? null : new HashMap<>();
+            for (int i = 0; i < typeAlignmentSize; i++) {
+                Edge e = readEdge();
+                AlignmentType type = AlignmentType.valueOf(readString());
+                amr.typeAlignment.put(new EdgeTypePair(e, type), readSet());
+            }
+            int spanSize = in.readInt();
+            amr.span = spanSize == NULL ? null : new HashMap<>();
+            for (int i = 0; i < spanSize; i++) {
+                Edge e = readEdge();
+                amr.span.put(e, readSpan());
+            }
+            return amr;
+        }
+
+        private static String intern(String s) {
+            return SymbolTable.intern(s).getString();
+        }
+
+        private Vertex readVertex() throws IOException {
+            int id = in.readInt();
+            if (id == NULL)
+                return null;
+            if (id == EMPTY)
+                return Vertex.EMPTY_VERTEX;
+            return vertices[id];
+        }
+
+        private Edge readEdge() throws IOException {
+            int id = in.readInt();
+            return id == NULL ? null : edges[id];
+        }
+
+        private void readEdges(List<Edge> list) throws IOException {
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                list.add(readEdge());
+            }
+        }
+
+        private Map<Edge, Set<Integer>> readAlignment() throws IOException {
+            int size = in.readInt();
+            if (size == NULL)
+                return null;
+            Map<Edge, Set<Integer>> alignment = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                Edge e = readEdge();
+                alignment.put(e, readSet());
+            }
+            return alignment;
+        }
+
+        private Set<Integer> readSet() throws IOException {
+            int id = in.readInt();
+            if (id == NULL)
+                return null;
+            if (id < sets.size())
+                return sets.get(id);
+            int size = in.readInt();
+            Set<Integer> set = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                set.add(in.readInt());
+            }
+            sets.add(set);
+            return set;
+        }
+
+        private Span readSpan() throws IOException {
+            int id = in.readInt();
+            if (id == NULL)
+                return null;
+            if (id < spans.size())
+                return spans.get(id);
+            Span span = new Span();
+            int min = in.readInt();
+            int max = in.readInt();
+            boolean hasElements = in.readBoolean();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                span.add(in.readInt());
+            }
+            span.min = min;
+            span.max = max;
+            span.hasElements = hasElements;
+            spans.add(span);
+            return span;
+        }
+
+        private String[] readStrings() throws IOException {
+            int length = in.readInt();
+            if (length == NULL)
+                return null;
+            String[] array = new String[length];
+            for (int i = 0; i < length; i++) {
+                array[i] = readString();
+            }
+            return array;
+        }
+
+        private String readString() throws IOException {
+            int id = in.readInt();
+            if (id == NULL)
+                return null;
+            if (id < strings.size())
+                return strings.get(id);
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            String s = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(s);
+            return s;
+        }
+    }
+}
@@ -6,6 +6,7 @@ package dag;
 public class AnnotationFunction {
     public Vertex original;
     public boolean delete;
+    public String transition;
 
     public String pos;
     public String initialConcept;
@@ -16,6 +17,7 @@ public class AnnotationFunction {
         initialConcept = v.getInstance();
         original = null;
         delete = false;
+        transition = null;
         nrOfSwapDowns = 0;
         pos = null;
     }
@@ -0,0 +1,396 @@
+package dag;
+
+import java.util.*;
+
+/**
+ * An immutable snapshot of the structure of a {@link DirectedGraph} that
+ * answers the structural queries performed during feature extraction and
+ * decoding without traversing the graph again. Each vertex reachable from the
+ * root is assigned an index corresponding to its position in breadth-first
+ * order (see {@link DirectedGraph#iterator()}). The children of all vertices
+ * are stored in compressed sparse row format, i.e. the children of the vertex
+ * with index i are found at positions {@code childOffsets[i]} to {@code
+ * childOffsets[i + 1] - 1} of a single array. Additionally, the following
+ * values are precomputed for each vertex:
+ * <ul>
+ * <li>the index of its parent and the label of its incoming edge, both with
+ * respect to its first incoming edge,</li>
+ * <li>its depth, i.e. the level at which it is reached in breadth-first
+ * order,</li>
+ * <li>its distance to the root when following first incoming edges,</li>
+ * <li>the size of the subgraph induced by it (see {@link
+ * Vertex#subtreeSize()}) and</li>
+ * <li>all links referring to it (see {@link Vertex#isLink()}).</li>
+ * </ul>
+ * A compiled graph reflects the graph at the time of its compilation and must
+ * be discarded as soon as edges are added, removed or redirected; {@link
+ * Amr#getCompiledGraph()} takes care of this for AMR graphs.
+ */
+public class CompiledGraph {
+    // the graph this compiled graph has been obtained from
+    private final DirectedGraph graph;
+    // the root of the graph at the time of compilation
+    private final Vertex root;
+
+    // all vertices reachable from the root in breadth-first order
+    private final Vertex[] vertices;
+    // a map from vertices to their indices
+    private final Map<Vertex, Integer> indices;
+
+    // the children of all vertices in compressed sparse row format, see the
+    // class description
+    private final int[] childOffsets;
+    private final int[] children;
+    private final Edge[] childEdges;
+
+    // the index of the parent of each vertex or -1 if the vertex has no
+    // incoming edge or its parent is not reachable from the root
+    private final int[] parents;
+    // the label of the first incoming edge of each vertex or null
+    private final String[] incomingLabels;
+    private final int[] depths;
+    private final int[] distancesToRoot;
+    private final int[] subtreeSizes;
+
+    private final List<Vertex> verticesBfs;
+    private final List<Vertex> verticesBottomUp;
+    // a map from vertices to the links referring to them
+    private final Map<Vertex, List<Vertex>> links;
+
+    private CompiledGraph(DirectedGraph graph) {
+        this.graph = graph;
+        root = graph.getRoot();
+
+        List<Vertex> bfs = graph.getVertices();
+        vertices = bfs.toArray(new Vertex[bfs.size()]);
+        indices = new IdentityHashMap<>(vertices.length * 2);
+        for (int i = 0; i < vertices.length; i++) {
+            indices.put(vertices[i], i);
+        }
+
+        childOffsets = new int[vertices.length + 1];
+        for (int i = 0; i < vertices.length; i++) {
+            int childCount = 0;
+            for (Edge e : vertices[i].getOutgoingEdges()) {
+                if (e.getTo() != Vertex.EMPTY_VERTEX) {
+                    childCount++;
+                }
+            }
+            childOffsets[i + 1] = childOffsets[i] + childCount;
+        }
+        children = new int[childOffsets[vertices.length]];
+        childEdges = new Edge[children.length];
+        for (int i = 0; i < vertices.length; i++) {
+            int position = childOffsets[i];
+            for (Edge e : vertices[i].getOutgoingEdges()) {
+                if (e.getTo() != Vertex.EMPTY_VERTEX) {
+                    children[position] = indices.get(e.getTo());
+                    childEdges[position] = e;
+                    position++;
+                }
+            }
+        }
+
+        parents = new int[vertices.length];
+        incomingLabels = new String[vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            List<Edge> inEdges = vertices[i].getIncomingEdges();
+            if (inEdges.isEmpty()) {
+                parents[i] = -1;
+            } else {
+                parents[i] = indexOf(inEdges.get(0).getFrom());
+                incomingLabels[i] = inEdges.get(0).getLabel();
+            }
+        }
+
+        depths = new int[vertices.length];
+        for (int i = 1; i < vertices.length; i++) {
+            depths[i] = Integer.MAX_VALUE;
+        }
+        for (int i = 0; i < vertices.length; i++) {
+            for (int c = childOffsets[i]; c < childOffsets[i + 1]; c++) {
+                depths[children[c]] =
+                    Math.min(depths[children[c]], depths[i] + 1);
+            }
+        }
+
+        distancesToRoot = new int[vertices.length];
+        Arrays.fill(distancesToRoot, -1);
+        for (int i = 0; i < vertices.length; i++) {
+            computeDistanceToRoot(i);
+        }
+
+        subtreeSizes = new int[vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            computeSubtreeSize(i);
+        }
+
+        verticesBfs = Collections.unmodifiableList(bfs);
+        verticesBottomUp =
+            Collections.unmodifiableList(root.getVerticesBottomUp());
+
+        links = new IdentityHashMap<>();
+        for (Vertex v : vertices) {
+            if (v.isLink()) {
+                links.computeIfAbsent(v.annotation.original,
+                         original -> new ArrayList<>())
+                    .add(v);
+            }
+        }
+    }
+
+    /**
+     * Compiles the current structure of a graph.
+     * @param graph the graph to compile
+     * @return the compiled graph
+     */
+    public static CompiledGraph compile(DirectedGraph graph) {
+        return new CompiledGraph(graph);
+    }
+
+    /**
+     * Computes the distance of a vertex to the root by following first
+     * incoming edges, which is equivalent to the loops previously found in the
+     * feature extraction of several maximum entropy models.
+     */
+    private int computeDistanceToRoot(int index) {
+        if (distancesToRoot[index] >= 0)
+            return distancesToRoot[index];
+        if (distancesToRoot[index] == -2) {
+            throw new AssertionError("the first incoming edges of vertex "
+                + vertices[index] + " form a cycle");
+        }
+        distancesToRoot[index] = -2;
+
+        int distance;
+        List<Edge> inEdges = vertices[index].getIncomingEdges();
+        if (inEdges.isEmpty()) {
+            distance = 0;
+        } else if (parents[index] >= 0) {
+            distance = computeDistanceToRoot(parents[index]) + 1;
+        } else {
+            distance = liveDistanceToRoot(inEdges.get(0).getFrom()) + 1;
+        }
+        distancesToRoot[index] = distance;
+        return distance;
+    }
+
+    /**
+     * Computes the size of the subgraph induced by a vertex; just like {@link
+     * Vertex#subtreeSize()}, vertices reachable via several paths are counted
+     * once per path.
+     */
+    private int computeSubtreeSize(int index) {
+        if (subtreeSizes[index] > 0)
+            return subtreeSizes[index];
+        if (subtreeSizes[index] < 0) {
+            throw new AssertionError(
+                "vertex " + vertices[index] + " is part of a cycle");
+        }
+        subtreeSizes[index] = -1;
+
+        int size = 1;
+        for (int c = childOffsets[index]; c < childOffsets[index + 1]; c++) {
+            size += computeSubtreeSize(children[c]);
+        }
+        subtreeSizes[index] = size;
+        return size;
+    }
+
+    private static int liveDistanceToRoot(Vertex vertex) {
+        int distanceToRoot = 0;
+        Vertex currentVertex = vertex;
+        while (!currentVertex.getIncomingEdges().isEmpty()) {
+            distanceToRoot++;
+            currentVertex = currentVertex.getIncomingEdges().get(0).getFrom();
+        }
+        return distanceToRoot;
+    }
+
+    /**
+     * @param graph a graph
+     * @return true iff this compiled graph has been obtained from the given
+     * graph and the root of the graph has not changed since
+     */
+    public boolean isCompiledFrom(DirectedGraph graph) {
+        return this.graph == graph && root == graph.getRoot();
+    }
+
+    public Vertex getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the number of vertices reachable from the root
+     */
+    public int size() {
+        return vertices.length;
+    }
+
+    /**
+     * @param vertex a vertex
+     * @return the index of the vertex or -1 if it is not reachable from the
+     * root
+     */
+    public int indexOf(Vertex vertex) {
+        Integer index = indices.get(vertex);
+        return index == null ? -1 : index;
+    }
+
+    public Vertex getVertex(int index) {
+        return vertices[index];
+    }
+
+    /**
+     * @return all vertices reachable from the root in the same order as
+     * returned by {@link DirectedGraph#iterator()}
+     */
+    public List<Vertex> getVerticesBfs() {
+        return verticesBfs;
+    }
+
+    /**
+     * @return all vertices reachable from the root in the same order as
+     * returned by {@link DirectedGraph#getVerticesBottomUp()}
+     */
+    public List<Vertex> getVerticesBottomUp() {
+        return verticesBottomUp;
+    }
+
+    /**
+     * @param index the index of a vertex
+     * @return the number of outgoing edges of the vertex that do not lead to
+     * {@link Vertex#EMPTY_VERTEX}
+     */
+    public int getChildCount(int index) {
+        return childOffsets[index + 1] - childOffsets[index];
+    }
+
+    /**
+     * @param index the index of a vertex
+     * @param k the position of the child among all children of the vertex
+     * @return the index of the k-th child of the vertex
+     */
+    public int getChild(int index, int k) {
+        return children[childOffsets[index] + k];
+    }
+
+    /**
+     * @param index the index of a vertex
+     * @param k the position of the child among all children of the vertex
+     * @return the edge leading to the k-th child of the vertex
+     */
+    public Edge getChildEdge(int index, int k) {
+        return childEdges[childOffsets[index] + k];
+    }
+
+    /**
+     * @param index the index of a vertex
+     * @return the index of the source of the first incoming edge of the vertex
+     * or -1 if there is no such edge or its source is not reachable from the
+     * root
+     */
+    public int getParent(int index) {
+        return parents[index];
+    }
+
+    /**
+     * @param index the index of a vertex
+     * @return the label of the first incoming edge of the vertex or {@code
+     * null} if there is no such edge
+     */
+    public String getIncomingLabel(int index) {
+        return incomingLabels[index];
+    }
+
+    /**
+     * @param index the index of a vertex
+     * @return the length of the shortest path from the root to the vertex
+     */
+    public int getDepth(int index) {
+        return depths[index];
+    }
+
+    /**
+     * @param index the index of a vertex
+     * @return the number of steps required to reach a vertex without incoming
+     * edges by following first incoming edges
+     */
+    public int getDistanceToRoot(int index) {
+        return distancesToRoot[index];
+    }
+
+    /**
+     * @param index the index of a vertex
+     * @return the number of vertices in the subgraph induced by the vertex,
+     * see {@link Vertex#subtreeSize()}
+     */
+    public int getSubtreeSize(int index) {
+        return subtreeSizes[index];
+    }
+
+    /**
+     * Returns the source of the first incoming edge of a vertex. Vertices not
+     * reachable from the root are handled by following their edges directly.
+     * @param vertex the vertex
+     * @return the parent of the vertex or {@code null} if it has no incoming
+     * edge
+     */
+    public Vertex getParent(Vertex vertex) {
+        int index = indexOf(vertex);
+        if (index >= 0 && parents[index] >= 0)
+            return vertices[parents[index]];
+        if (index >= 0 && incomingLabels[index] == null)
+            return null;
+        List<Edge> inEdges = vertex.getIncomingEdges();
+        return inEdges.isEmpty() ? null : inEdges.get(0).getFrom();
+    }
+
+    /**
+     * Returns the label of the first incoming edge of a vertex. Vertices not
+     * reachable from the root are handled by following their edges directly.
+     * @param vertex the vertex
+     * @return the label or {@code null} if the vertex has no incoming edge
+     */
+    public String getIncomingLabel(Vertex vertex) {
+        int index = indexOf(vertex);
+        if (index >= 0)
+            return incomingLabels[index];
+        List<Edge> inEdges = vertex.getIncomingEdges();
+        return inEdges.isEmpty() ? null : inEdges.get(0).getLabel();
+    }
+
+    /**
+     * Returns the number of steps required to reach a vertex without incoming
+     * edges by following first incoming edges. Vertices not reachable from the
+     * root are handled by following their edges directly.
+     * @param vertex the vertex
+     * @return the distance to the root
+     */
+    public int getDistanceToRoot(Vertex vertex) {
+        int index = indexOf(vertex);
+        return index >= 0 ? distancesToRoot[index]
+                          : liveDistanceToRoot(vertex);
+    }
+
+    /**
+     * Returns the number of vertices in the subgraph induced by a vertex, see
+     * {@link Vertex#subtreeSize()}. Vertices not reachable from the root are
+     * handled by calling this method directly.
+     * @param vertex the vertex
+     * @return the size of the subgraph
+     */
+    public int getSubtreeSize(Vertex vertex) {
+        int index = indexOf(vertex);
+        return index >= 0 ? subtreeSizes[index] : vertex.subtreeSize();
+    }
+
+    /**
+     * @param original a vertex
+     * @return all links reachable from the root that refer to the given
+     * vertex, in breadth-first order
+     */
+    public List<Vertex> getLinks(Vertex original) {
+        return links.getOrDefault(original, Collections.emptyList());
+    }
+}
@@ -0,0 +1,150 @@
+package dag;
+
+import main.PathList;
+import misc.Debugger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Static class that stores lists of prepared AMR graphs in {@link
+ * PathList#CORPUS_CACHE_DIR} using {@link AmrSerializer} so that the costly
+ * steps of loading and preparing a corpus for training (parsing AMR graphs,
+ * POS tags and dependency trees, loading alignments, preparing the AMR graphs
+ * and building type alignments) are carried out only once. Each list is
+ * stored under a key computed from the SHA-1 hash of all files it has been
+ * obtained from, so the cache is automatically bypassed whenever one of these
+ * files changes. Changes to the preparation process itself are not detected;
+ * whenever the prepared AMR graphs change, {@link CorpusCache#VERSION} must be
+ * incremented.
+ */
+public class CorpusCache {
+    // the version of the preparation process and of the format written by
+    // AmrSerializer, which is part of each key
+    private static final int VERSION = 2;
+    // the first four bytes of each cache file
+    private static final int MAGIC_NUMBER = 0x414d5243;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // non-instantiable class
+    private CorpusCache() {}
+
+    /**
+     * Computes the key of a list of prepared AMR graphs.
+     * @param files the files from which the AMR graphs are obtained, in some
+     * fixed order. Files that do not exist are allowed and taken into account
+     * as such.
+     * @param stamps further strings identifying the input of the preparation
+     * process, e.g. the size and modification time of large files whose
+     * contents are not worth hashing
+     * @return the key, consisting of 40 hexadecimal digits
+     */
+    public static String getKey(List<String> files, List<String> stamps)
+        throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+
+        DataOutputStream out = new DataOutputStream(
+            new OutputStream() {
+                @Override
+                public void write(int b) {
+                    digest.update((byte) b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    digest.update(b, off, len);
+                }
+            });
+        out.writeInt(VERSION);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (String file : files) {
+            Path path = Paths.get(file);
+            if (!Files.exists(path)) {
+                out.writeLong(-1);
+                continue;
+            }
+            out.writeLong(Files.size(path));
+            try (InputStream in = Files.newInputStream(path)) {
+                for (int n; (n = in.read(buffer)) > 0;) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        }
+        for (String stamp : stamps) {
+            out.writeUTF(stamp);
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Loads the prepared AMR graphs stored under a key.
+     * @param key the key, see {@link CorpusCache#getKey(List, List)}
+     * @return the AMR graphs or {@code null} if no AMR graphs are stored
+     * under this key or the cache file is unreadable
+     */
+    public static List<Amr> load(String key) {
+        Path path = getPath(key);
+        if (!Files.exists(path))
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                 Files.newInputStream(path), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC_NUMBER || in.readInt() != VERSION) {
+                Debugger.printlnErr(
+                    "ignoring corpus cache file " + path + " of wrong format");
+                return null;
+            }
+            return AmrSerializer.read(in);
+        } catch (IOException | RuntimeException e) {
+            Debugger.printlnErr(
+                "ignoring unreadable corpus cache file " + path + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores prepared AMR graphs under a key. The cache file is written to a
+     * temporary file first and then moved to its final location, so that
+     * concurrent processes never read incomplete cache files.
+     * @param key the key, see {@link CorpusCache#getKey(List, List)}
+     * @param amrs the AMR graphs
+     */
+    public static void store(String key, List<Amr> amrs) throws IOException {
+        Path path = getPath(key);
+        Files.createDirectories(path.getParent());
+        Path tempPath = Files.createTempFile(path.getParent(), key, ".tmp");
+
+        try (DataOutputStream out =
+                 new DataOutputStream(new BufferedOutputStream(
+                     Files.newOutputStream(tempPath), BUFFER_SIZE))) {
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(VERSION);
+            AmrSerializer.write(amrs, out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path getPath(String key) {
+        return Paths.get(PathList.CORPUS_CACHE_DIR, key + ".bin");
+    }
+}
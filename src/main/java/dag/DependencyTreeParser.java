@@ -7,18 +7,15 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * This class can be used to parse dependency trees stored in CoNLL format.
+ * This class can be used to parse dependency trees stored in CoNLL format. As
+ * all state required for parsing a dependency tree is local to {@link
+ * DependencyTreeParser#fromString(List, String[])}, a single parser may be
+ * used by several threads concurrently.
  */
 public class DependencyTreeParser {
     private static final String ROOT_ID = "ROOT-0";
     private static final Pattern edgePattern =
         Pattern.compile("([^(]+)\\(([^,]+), ([^)]+)\\)");
-    private static Matcher edgeMatcher = edgePattern.matcher("");
-
-    private Map<String, Vertex> nodeMap;
-    private Map<Vertex, Integer> alignment;
-    private String[] sentence;
-    private Vertex root;
 
     /**
      * Turns a list of edge specifications in CoNLL format and a sentence into a
@@ -29,10 +26,26 @@ public class DependencyTreeParser {
      */
     public DependencyTree fromString(
         List<String> edgeSpecs, String[] sentence) {
-        setUp(sentence);
+        Map<String, Vertex> nodeMap = new HashMap<>();
+        Map<Vertex, Integer> alignment = new HashMap<>();
+        Vertex root = null;
 
         for (String edgeSpec : edgeSpecs) {
-            addEdge(edgeSpec, nodeMap);
+            Matcher edgeMatcher = edgePattern.matcher(edgeSpec);
+            if (edgeMatcher.find()) {
+                String edgeLabel = edgeMatcher.group(1);
+                String from = edgeMatcher.group(2);
+                String to = edgeMatcher.group(3);
+
+                registerNode(from, sentence, nodeMap, alignment);
+                registerNode(to, sentence, nodeMap, alignment);
+
+                if (!from.equals(ROOT_ID)) {
+                    new Edge(nodeMap.get(from), nodeMap.get(to), edgeLabel);
+                } else {
+                    root = nodeMap.get(to);
+                }
+            }
         }
 
         DirectedGraph directedGraph = new DirectedGraph();
@@ -51,32 +64,8 @@ public class DependencyTreeParser {
         return ret;
     }
 
-    private void setUp(String[] sentence) {
-        this.sentence = sentence;
-        nodeMap = new HashMap<>();
-        alignment = new HashMap<>();
-        root = null;
-    }
-
-    private void addEdge(String edgeSpec, Map<String, Vertex> nodeMap) {
-        edgeMatcher.reset(edgeSpec);
-        if (edgeMatcher.find()) {
-            String edgeLabel = edgeMatcher.group(1);
-            String from = edgeMatcher.group(2);
-            String to = edgeMatcher.group(3);
-
-            registerNode(from);
-            registerNode(to);
-
-            if (!from.equals(ROOT_ID)) {
-                new Edge(nodeMap.get(from), nodeMap.get(to), edgeLabel);
-            } else {
-                root = nodeMap.get(to);
-            }
-        }
-    }
-
-    private void registerNode(String nodeSpec) {
+    private static void registerNode(String nodeSpec, String[] sentence,
+        Map<String, Vertex> nodeMap, Map<Vertex, Integer> alignment) {
         if (nodeSpec.equals(ROOT_ID))
             return;
 
@@ -12,6 +12,10 @@ public class Edge {
 
     String debugInfo = "";
 
+    // the symbol representing the label when it was last looked up, see
+    // getLabelSymbol()
+    private Symbol labelSymbol;
+
     /**
      * Creates a new edge (from, label, to).
      * @param from the node from which the edge starts
@@ -40,6 +44,46 @@ public class Edge {
         this.label = label;
     }
 
+    private Edge() {}
+
+    /**
+     * Creates a new instance edge (from, label, {@link Vertex#EMPTY_VERTEX})
+     * and adds it to the outgoing edges of {@code from}. Unlike the public
+     * constructors, this does not add the edge to the incoming edges of
+     * {@link Vertex#EMPTY_VERTEX}, which is shared by all AMR graphs and whose
+     * incoming edges are never used.
+     * @param from the vertex whose instance is represented by the edge
+     * @param label the label of the edge
+     * @return the new edge
+     */
+    static Edge newInstanceEdge(Vertex from, String label) {
+        Edge e = new Edge();
+        e.from = from;
+        from.addOutgoingEdge(e);
+        e.to = Vertex.EMPTY_VERTEX;
+        e.label = label;
+        e.instanceEdge = true;
+        return e;
+    }
+
+    /**
+     * Creates a new edge (from, label, to) without adding it to the outgoing
+     * edges of {@code from} or the incoming edges of {@code to}. This is
+     * required to restore graphs whose lists of incoming and outgoing edges
+     * are stored separately, see {@link AmrSerializer}.
+     * @param from the node from which the edge starts
+     * @param to the node at which the edge ends
+     * @param label the label of the edge
+     * @return the new edge
+     */
+    static Edge newDetachedEdge(Vertex from, Vertex to, String label) {
+        Edge e = new Edge();
+        e.from = from;
+        e.to = to;
+        e.label = label;
+        return e;
+    }
+
     /**
      * This function uncouples the edge from its to-node, creates a link to the
      * latter and reattaches the edge to the newly created link. It is required
@@ -60,6 +104,40 @@ public class Edge {
         return label;
     }
 
+    /**
+     * @return the symbol representing the label of this edge; it is looked up
+     * again whenever the label has been changed
+     */
+    public Symbol getLabelSymbol() {
+        Symbol s = labelSymbol;
+        if (s == null || !s.getString().equals(label)) {
+            s = SymbolTable.intern(label);
+            labelSymbol = s;
+        }
+        return s;
+    }
+
+    /**
+     * @return whether the label of this edge matches {@code :ARG[0-9]}
+     */
+    public boolean isArgEdge() {
+        return getLabelSymbol().getArgIndex() >= 0;
+    }
+
+    /**
+     * @return whether the label of this edge matches {@code :op[1-9]}
+     */
+    public boolean isOpEdge() {
+        return getLabelSymbol().getOpIndex() >= 0;
+    }
+
+    /**
+     * @return whether the label of this edge ends with {@code -of}
+     */
+    public boolean isInverse() {
+        return getLabelSymbol().isInverse();
+    }
+
     public Vertex getTo() {
         return to;
     }
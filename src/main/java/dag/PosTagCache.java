@@ -0,0 +1,145 @@
+package dag;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.process.TokenizerFactory;
+import edu.stanford.nlp.tagger.maxent.MaxentTagger;
+import misc.BoundedCache;
+
+import java.io.StringReader;
+import java.util.*;
+
+/**
+ * This class stores the POS tags assigned by a maximum entropy tagger to
+ * sentences consisting only of a cleaned up version of a concept, as required
+ * by {@link Vertex#getPos(MaxentTagger)}. As the same concepts occur in many
+ * AMR graphs, each concept is tagged only once per process. Additionally, all
+ * concepts of an AMR graph that are not cached yet can be tagged in a single
+ * call to the tagger using {@link PosTagCache#tagAll(MaxentTagger,
+ * Collection)}.
+ */
+public class PosTagCache {
+    // the maximum number of cleaned up concepts whose POS tags are stored
+    private static final int CAPACITY = 100000;
+
+    // a map from cleaned up concepts to their POS tags
+    private static final BoundedCache<String, String> CACHE =
+        new BoundedCache<>(CAPACITY);
+
+    // the tagger that has been used to compute the cached POS tags
+    private static MaxentTagger cachedTagger;
+
+    private PosTagCache() {}
+
+    /**
+     * Returns the POS tag assigned by a tagger to a sentence consisting only of
+     * a cleaned up version of a concept.
+     * @param tagger the maximum entropy tagger
+     * @param instance the concept
+     * @return the POS tag
+     */
+    public static String getTag(MaxentTagger tagger, String instance) {
+        checkTagger(tagger);
+        String clearedInstance = clearInstance(instance);
+        String tag = CACHE.get(clearedInstance);
+        if (tag == null) {
+            String taggedInstance = tagger.tagString(clearedInstance).trim();
+            tag = taggedInstance.substring(taggedInstance.lastIndexOf("_") + 1);
+            CACHE.put(clearedInstance, tag);
+        }
+        return tag;
+    }
+
+    /**
+     * Computes the POS tags of all given concepts that are not cached yet
+     * using a single call to the tagger. Each concept is tokenized using the
+     * tokenizer factory of the tagger and tagged as a separate sentence, so
+     * the results are identical to those of {@link
+     * PosTagCache#getTag(MaxentTagger, String)}. As only a {@link PosTagger}
+     * provides its tokenizer factory, the concepts are tagged one at a time
+     * for all other taggers.
+     * @param tagger the maximum entropy tagger
+     * @param instances the concepts
+     */
+    public static void tagAll(
+        MaxentTagger tagger, Collection<String> instances) {
+        if (!(tagger instanceof PosTagger)) {
+            for (String instance : instances) {
+                getTag(tagger, instance);
+            }
+            return;
+        }
+        checkTagger(tagger);
+        TokenizerFactory<? extends HasWord> tokenizerFactory =
+            ((PosTagger) tagger).getTokenizerFactory();
+
+        // the index of the last sentence of each cleaned up concept within the
+        // batch, or -1 if tokenization results in no sentence at all
+        Map<String, Integer> lastSentences = new LinkedHashMap<>();
+        List<List<HasWord>> sentences = new ArrayList<>();
+        for (String instance : instances) {
+            String clearedInstance = clearInstance(instance);
+            if (lastSentences.containsKey(clearedInstance)
+                || CACHE.get(clearedInstance) != null)
+                continue;
+            List<List<HasWord>> tokenized = MaxentTagger.tokenizeText(
+                new StringReader(clearedInstance), tokenizerFactory);
+            sentences.addAll(tokenized);
+            lastSentences.put(clearedInstance,
+                tokenized.isEmpty() ? -1 : sentences.size() - 1);
+        }
+        if (lastSentences.isEmpty())
+            return;
+
+        List<List<TaggedWord>> taggedSentences = tagger.process(sentences);
+        for (Map.Entry<String, Integer> entry : lastSentences.entrySet()) {
+            String tag = "";
+            if (entry.getValue() >= 0) {
+                List<TaggedWord> taggedSentence =
+                    taggedSentences.get(entry.getValue());
+                if (!taggedSentence.isEmpty()) {
+                    tag = taggedSentence.get(taggedSentence.size() - 1).tag();
+                }
+            }
+            CACHE.put(entry.getKey(), tag);
+        }
+    }
+
+    /**
+     * Clears the cache if it has been filled using a different tagger.
+     */
+    private static synchronized void checkTagger(MaxentTagger tagger) {
+        if (tagger != cachedTagger) {
+            CACHE.clear();
+            cachedTagger = tagger;
+        }
+    }
+
+    /**
+     * Removes all quotation marks and the sense number from a concept. This is
+     * equivalent to applying the regular expressions {@code ["']} and {@code
+     * .*-[0-9]+}, but considerably faster.
+     * @param instance the concept
+     * @return the cleaned up concept
+     */
+    static String clearInstance(String instance) {
+        StringBuilder clearedInstance = new StringBuilder(instance.length());
+        for (int i = 0; i < instance.length(); i++) {
+            char c = instance.charAt(i);
+            if (c != '"' && c != '\'') {
+                clearedInstance.append(c);
+            }
+        }
+        if (Symbol.endsWithSenseNumber(clearedInstance.toString())) {
+            return instance.substring(0, instance.lastIndexOf("-"));
+        }
+        return clearedInstance.toString();
+    }
+
+    /**
+     * @return a description of the number of hits and misses of the cache
+     */
+    public static String getStatistics() {
+        return CACHE.toString();
+    }
+}
@@ -0,0 +1,34 @@
+package dag;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.process.TokenizerFactory;
+import edu.stanford.nlp.tagger.maxent.MaxentTagger;
+
+/**
+ * A maximum entropy POS tagger that additionally provides the tokenizer
+ * factory described by its configuration, which is the one used by {@link
+ * MaxentTagger#tagString(String)}. This allows {@link
+ * PosTagCache#tagAll(MaxentTagger, java.util.Collection)} to tokenize concepts
+ * exactly as the tagger itself would.
+ */
+public class PosTagger extends MaxentTagger {
+    // the tokenizer factory described by the configuration of this tagger
+    private final TokenizerFactory<? extends HasWord> tokenizerFactory;
+
+    /**
+     * Loads a POS tagger from a model file.
+     * @param modelFile the path of the model file
+     */
+    public PosTagger(String modelFile) {
+        super(modelFile);
+        tokenizerFactory = chooseTokenizerFactory();
+    }
+
+    /**
+     * @return the tokenizer factory used by {@link
+     * MaxentTagger#tagString(String)}
+     */
+    public TokenizerFactory<? extends HasWord> getTokenizerFactory() {
+        return tokenizerFactory;
+    }
+}
@@ -0,0 +1,141 @@
+package dag;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class represents a shard of an input file containing AMR graphs, i.e. a
+ * subset of the AMR graphs contained within the file. It is used to distribute
+ * the generation process among several worker processes, each of which
+ * processes only a single shard. A shard is specified by its index {@code i}
+ * and the total number of shards {@code N}. There are two ways of splitting a
+ * file into shards: <ul> <li>by index, in which case the shard contains every
+ * AMR graph whose index (within the file) is congruent to {@code i} modulo
+ * {@code N};</li> <li>by byte range, in which case the file is split into
+ * {@code N} ranges of roughly equal size, each of which is aligned on the empty
+ * lines separating two AMR graphs.</li> </ul>
+ */
+public class Shard {
+    // the index of this shard, starting at 0
+    public final int index;
+    // the total number of shards
+    public final int count;
+    // whether the file is split by byte range instead of by index
+    public final boolean byByteRange;
+
+    /**
+     * Creates a new shard.
+     * @param index the index of the shard, starting at 0
+     * @param count the total number of shards
+     * @param byByteRange whether the file should be split by byte range
+     * instead of by index
+     */
+    public Shard(int index, int count, boolean byByteRange) {
+        if (count <= 0 || index < 0 || index >= count) {
+            throw new AssertionError("invalid shard " + index + "/" + count
+                + ", the index must be in [0," + count + ")");
+        }
+        this.index = index;
+        this.count = count;
+        this.byByteRange = byByteRange;
+    }
+
+    /**
+     * Creates a new shard from a string representation of the form {@code
+     * i/N}.
+     * @param spec the string representation of the shard
+     * @param byByteRange whether the file should be split by byte range
+     * instead of by index
+     * @return the shard
+     */
+    public static Shard fromString(String spec, boolean byByteRange) {
+        String[] comps = spec.trim().split("/");
+        if (comps.length != 2) {
+            throw new AssertionError(
+                "invalid shard specification '" + spec + "', expected i/N");
+        }
+        return new Shard(
+            Integer.valueOf(comps[0]), Integer.valueOf(comps[1]), byByteRange);
+    }
+
+    /**
+     * Checks whether an AMR graph belongs to this shard if the file is split by
+     * index.
+     * @param amrIndex the index of the AMR graph within the file
+     * @return true iff the AMR graph belongs to this shard
+     */
+    public boolean contains(int amrIndex) {
+        return byByteRange || amrIndex % count == index;
+    }
+
+    /**
+     * Computes the byte offset at which this shard starts within a file if the
+     * file is split by byte range.
+     * @param channel the file channel
+     * @return the byte offset of the first line belonging to this shard
+     */
+    long getStart(FileChannel channel) throws IOException {
+        return getAlignedOffset(channel, channel.size() * index / count);
+    }
+
+    /**
+     * Computes the byte offset at which this shard ends within a file if the
+     * file is split by byte range.
+     * @param channel the file channel
+     * @return the byte offset of the first line not belonging to this shard
+     */
+    long getEnd(FileChannel channel) throws IOException {
+        return getAlignedOffset(channel, channel.size() * (index + 1) / count);
+    }
+
+    /**
+     * Aligns a byte offset on the empty lines separating two AMR graphs. To
+     * this end, the line containing the offset and all subsequent lines are
+     * skipped until an empty line is found; the returned offset is that of the
+     * first nonempty line following this empty line. As this procedure is
+     * deterministic, the ranges obtained for consecutive shards never overlap
+     * and together cover the entire file.
+     * @param channel the file channel
+     * @param offset the offset to align
+     * @return the aligned offset
+     */
+    private static long getAlignedOffset(FileChannel channel, long offset)
+        throws IOException {
+        long size = channel.size();
+        if (offset <= 0)
+            return 0;
+        if (offset >= size)
+            return size;
+
+        channel.position(offset - 1);
+        InputStream in =
+            new BufferedInputStream(Channels.newInputStream(channel));
+
+        long position = offset - 1;
+        long lineStartPosition = offset;
+        // the line containing offset - 1 is never considered to be empty, so a
+        // line starting exactly at offset is treated like any other line
+        boolean lineEmpty = false;
+        boolean previousLineEmpty = false;
+
+        for (int b; (b = in.read()) != -1; position++) {
+            if (b == '\n') {
+                previousLineEmpty = lineEmpty;
+                lineEmpty = true;
+                lineStartPosition = position + 1;
+            } else if (b > ' ' && lineEmpty) {
+                if (previousLineEmpty)
+                    return lineStartPosition;
+                lineEmpty = false;
+            }
+        }
+        return size;
+    }
+
+    public String toString() {
+        return index + "/" + count;
+    }
+}
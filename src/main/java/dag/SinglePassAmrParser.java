@@ -0,0 +1,374 @@
+package dag;
+
+import java.util.*;
+
+/**
+ * A recursive descent parser that builds an AMR graph from its string
+ * representation in LDC2014T12 format in a single pass over the characters of
+ * the string. The resulting graphs are identical to those built by {@link
+ * AmrParser#fromStringRegex(String, String[])}, including all of its
+ * peculiarities:
+ * <ul>
+ * <li>the instance edge of each vertex is its first outgoing edge and the
+ * label of the instance edge as well as the initial concept of the vertex
+ * still contain the alignment of the concept,</li>
+ * <li>all occurrences of a constant (i.e. numbers, quoted strings and words of
+ * at least four letters) refer to a single vertex whose instance carries the
+ * alignment of the first occurrence,</li>
+ * <li>the alignments of references to variables and of all but the first
+ * occurrence of a constant are dropped and</li>
+ * <li>references to vertices that are not special nodes are marked as links.
+ * </li>
+ * </ul>
+ * Some inputs are treated in ways by the regex-based parser that depend on
+ * their entire string representation, e.g. quoted strings containing spaces
+ * or brackets (which are rewritten globally) and variables whose definitions
+ * overlap textually. For all such inputs as well as for malformed ones, {@link
+ * SinglePassAmrParser#parse(String, String[])} returns {@code null} so that
+ * the regex-based parser can be used instead.
+ */
+final class SinglePassAmrParser {
+    // the characters that constitute numeric constants
+    private static final String NUMBER_CHARS = "0123456789,.-+";
+
+    private final String dagRepr;
+    private int position;
+    private final Amr amr;
+
+    // a map from variables to vertices, including vertices for variables that
+    // have only been referred to so far
+    private final Map<String, Vertex> variables = new HashMap<>();
+    // the instances of all defined variables, including their alignments
+    private final Map<String, String> definitions = new HashMap<>();
+    // a map from constants without alignments to vertices
+    private final Map<String, Vertex> constants = new HashMap<>();
+    // the references to variables that had not been defined at the time they
+    // were parsed; whether they are links is determined after parsing
+    private final List<Edge> forwardReferences = new ArrayList<>();
+    // all edges whose labels may contain an alignment
+    private final List<Edge> alignedEdges = new ArrayList<>();
+
+    /**
+     * Thrown if the input can not be parsed in a single pass.
+     */
+    private static class UnsupportedInputException extends Exception {
+        private static final UnsupportedInputException INSTANCE =
+            new UnsupportedInputException();
+
+        private UnsupportedInputException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private SinglePassAmrParser(String dagRepr, String[] sentence) {
+        this.dagRepr = dagRepr;
+        amr = new Amr();
+        amr.sentence = sentence;
+    }
+
+    /**
+     * Builds an AMR graph from a string representation of the graph in
+     * LDC2014T12 format and assigns a reference sentence to it.
+     * @param dagRepr the string representation of the AMR graph
+     * @param sentence the reference sentence
+     * @return the built AMR graph or {@code null} if the graph must be built
+     * using {@link AmrParser#fromStringRegex(String, String[])}
+     */
+    static Amr parse(String dagRepr, String[] sentence) {
+        try {
+            return new SinglePassAmrParser(dagRepr, sentence).parse();
+        } catch (UnsupportedInputException e) {
+            return null;
+        }
+    }
+
+    private Amr parse() throws UnsupportedInputException {
+        if (dagRepr.isEmpty() || dagRepr.charAt(0) != '(')
+            throw UnsupportedInputException.INSTANCE;
+        amr.dag.root = parseVertex(null, null);
+        skipWhitespace();
+        if (position != dagRepr.length())
+            throw UnsupportedInputException.INSTANCE;
+
+        // the regex-based parser fails for undefined variables
+        if (variables.size() != definitions.size())
+            throw UnsupportedInputException.INSTANCE;
+        checkDefinitionsDoNotOverlap();
+
+        for (Edge e : forwardReferences) {
+            if (!e.to.isSpecialNode()) {
+                e.debugInfo = "link";
+            }
+        }
+        for (Edge e : alignedEdges) {
+            AmrParser.addEdgeAlignment(amr, e);
+        }
+        return amr;
+    }
+
+    /**
+     * Parses a vertex of the form {@code (variable / instance relations)}
+     * starting at the current position.
+     * @param parent the vertex from which the edge to the parsed vertex starts
+     * or {@code null} for the root
+     * @param label the label of the edge to the parsed vertex
+     * @return the parsed vertex
+     */
+    private Vertex parseVertex(Vertex parent, String label)
+        throws UnsupportedInputException {
+        position++;
+        String variable = readToken(false);
+        if (variable.isEmpty() || containsAny(variable, "()\"@~:/"))
+            throw UnsupportedInputException.INSTANCE;
+        if (skipWhitespace() == 0 || !consume('/') || skipWhitespace() == 0)
+            throw UnsupportedInputException.INSTANCE;
+
+        int start = position;
+        while (position < dagRepr.length()
+            && !isWhitespace(dagRepr.charAt(position))
+            && dagRepr.charAt(position) != ')') {
+            char c = dagRepr.charAt(position);
+            if (c == ':' || c == '(' || c == '"')
+                throw UnsupportedInputException.INSTANCE;
+            position++;
+        }
+        String instance = dagRepr.substring(start, position);
+        if (instance.isEmpty() || instance.charAt(0) == '~')
+            throw UnsupportedInputException.INSTANCE;
+
+        Vertex v = define(variable, instance);
+        if (parent != null) {
+            alignedEdges.add(new Edge(parent, v, label));
+        }
+
+        while (true) {
+            // the regex-based parser requires whitespace between all relations
+            int whitespace = skipWhitespace();
+            if (position >= dagRepr.length())
+                throw UnsupportedInputException.INSTANCE;
+            if (consume(')'))
+                return v;
+            if (whitespace == 0)
+                throw UnsupportedInputException.INSTANCE;
+            parseRelation(v);
+        }
+    }
+
+    /**
+     * Parses a relation of the form {@code :label value} starting at the
+     * current position, where the value is either a vertex, a constant or a
+     * reference to a variable.
+     * @param from the vertex from which the relation starts
+     */
+    private void parseRelation(Vertex from) throws UnsupportedInputException {
+        if (dagRepr.charAt(position) != ':')
+            throw UnsupportedInputException.INSTANCE;
+        String label = readToken(false);
+        if (containsAny(label, "()\"") || skipWhitespace() == 0)
+            throw UnsupportedInputException.INSTANCE;
+        label = SymbolTable.intern(label).getString();
+
+        if (position >= dagRepr.length())
+            throw UnsupportedInputException.INSTANCE;
+        if (dagRepr.charAt(position) == '(') {
+            parseVertex(from, label);
+            return;
+        }
+
+        String value = readToken(true);
+        int alignmentStart = value.indexOf('~');
+        String key =
+            alignmentStart < 0 ? value : value.substring(0, alignmentStart);
+        if (key.isEmpty() || value.indexOf('(') >= 0
+            || value.contains("@L@") || key.equals(Vertex.EMPTY_VERTEX_ID)
+            || (alignmentStart >= 0
+                   && !isAlignment(value.substring(alignmentStart))))
+            throw UnsupportedInputException.INSTANCE;
+        boolean quoted = key.charAt(0) == '"';
+        if (quoted ? !isQuoted(key) : key.indexOf('"') >= 0)
+            throw UnsupportedInputException.INSTANCE;
+
+        Vertex to;
+        boolean forwardReference = false;
+        if (definitions.containsKey(key)) {
+            to = variables.get(key);
+        } else if (quoted || isNumber(key) || isWord(key)) {
+            to = constants.get(key);
+            if (to == null) {
+                to = new Vertex(value);
+                createInstanceEdge(to);
+                constants.put(key, to);
+            }
+        } else {
+            to = variables.get(key);
+            if (to == null) {
+                to = new Vertex(null);
+                variables.put(key, to);
+            }
+            forwardReference = true;
+        }
+
+        Edge e = new Edge(from, to, label);
+        alignedEdges.add(e);
+        if (forwardReference) {
+            forwardReferences.add(e);
+        } else if (!to.isSpecialNode()) {
+            e.debugInfo = "link";
+        }
+    }
+
+    /**
+     * Defines a variable, reusing the vertex created for earlier references to
+     * it.
+     * @param variable the variable
+     * @param instance the instance of the variable including its alignment
+     * @return the vertex representing the variable
+     */
+    private Vertex define(String variable, String instance)
+        throws UnsupportedInputException {
+        if (definitions.containsKey(variable)
+            || constants.containsKey(variable)
+            || variable.equals(Vertex.EMPTY_VERTEX_ID))
+            throw UnsupportedInputException.INSTANCE;
+        definitions.put(variable, instance);
+
+        Vertex v = variables.get(variable);
+        if (v == null) {
+            v = new Vertex(instance);
+            variables.put(variable, v);
+        } else {
+            v.instance = instance;
+            v.annotation.initialConcept = instance;
+        }
+        createInstanceEdge(v);
+        return v;
+    }
+
+    /**
+     * Adds the instance edge to a vertex whose instance still contains its
+     * alignment and removes the alignment from the instance.
+     */
+    private void createInstanceEdge(Vertex v) {
+        alignedEdges.add(Edge.newInstanceEdge(v, v.instance));
+        // intern the concept so that its properties are only computed once,
+        // see Vertex#getSymbol()
+        v.instance = SymbolTable.intern(v.instance.split("~")[0]).getString();
+    }
+
+    /**
+     * The regex-based parser replaces each definition {@code variable /
+     * instance} within the entire string representation, so definitions whose
+     * variable ends with another variable and whose instance starts with the
+     * other variable's instance are not handled consistently by it.
+     */
+    private void checkDefinitionsDoNotOverlap()
+        throws UnsupportedInputException {
+        for (Map.Entry<String, String> definition : definitions.entrySet()) {
+            String variable = definition.getKey();
+            for (int i = 1; i < variable.length(); i++) {
+                String instance = definitions.get(variable.substring(i));
+                if (instance != null
+                    && definition.getValue().startsWith(instance))
+                    throw UnsupportedInputException.INSTANCE;
+            }
+        }
+    }
+
+    /**
+     * Reads all characters up to the next whitespace character and, if {@code
+     * stopAtBracket} is set, the next closing bracket.
+     */
+    private String readToken(boolean stopAtBracket) {
+        int start = position;
+        while (position < dagRepr.length()) {
+            char c = dagRepr.charAt(position);
+            if (isWhitespace(c) || (stopAtBracket && c == ')'))
+                break;
+            position++;
+        }
+        return dagRepr.substring(start, position);
+    }
+
+    /**
+     * @return the number of skipped whitespace characters
+     */
+    private int skipWhitespace() {
+        int start = position;
+        while (position < dagRepr.length()
+            && isWhitespace(dagRepr.charAt(position))) {
+            position++;
+        }
+        return position - start;
+    }
+
+    private boolean consume(char c) {
+        if (position < dagRepr.length() && dagRepr.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean containsAny(String s, String chars) {
+        for (int i = 0; i < s.length(); i++) {
+            if (chars.indexOf(s.charAt(i)) >= 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return whether {@code c} is matched by {@code \s}
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B'
+            || c == '\f' || c == '\r';
+    }
+
+    /**
+     * @return whether {@code s} matches {@code ~e\.[0-9,]+}
+     */
+    private static boolean isAlignment(String s) {
+        if (s.length() < 4 || !s.startsWith("~e."))
+            return false;
+        for (int i = 3; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c < '0' || c > '9') && c != ',')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return whether {@code s} matches {@code [0-9,\.\-\+]+}
+     */
+    private static boolean isNumber(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (NUMBER_CHARS.indexOf(s.charAt(i)) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return whether {@code s} matches {@code "[^"]+"}
+     */
+    private static boolean isQuoted(String s) {
+        return s.length() >= 3 && s.charAt(s.length() - 1) == '"'
+            && s.indexOf('"', 1) == s.length() - 1;
+    }
+
+    /**
+     * @return whether {@code s} matches {@code [A-z][A-z][A-z][A-z]+}
+     */
+    private static boolean isWord(String s) {
+        if (s.length() < 4)
+            return false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 'A' || c > 'z')
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,226 @@
+package dag;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An interned concept or edge label along with several properties derived from
+ * it, which are computed only once per distinct string instead of on every
+ * call to the corresponding predicates of {@link Vertex} and {@link Edge}.
+ * Symbols are obtained using {@link SymbolTable#intern(String)}.
+ */
+public final class Symbol {
+    // the concepts that are not translated into words, see
+    // Vertex#isSpecialNode()
+    private static final List<String> SPECIAL_CONCEPTS = Arrays.asList(
+        "-", "+", "interrogative", "imperative", "expressive");
+
+    private final String string;
+    private final int id;
+
+    private final boolean propbankEntry;
+    private final boolean quoted;
+    private final boolean numeric;
+    private final boolean special;
+    private final boolean inverse;
+    private final String clearedInstance;
+    private final int argIndex;
+    private final int opIndex;
+    private final int sntIndex;
+
+    /**
+     * Creates a new symbol.
+     * @param string the represented string
+     * @param id the id assigned to this symbol by the {@link SymbolTable} or
+     * -1 if the symbol is not stored in the table
+     */
+    Symbol(String string, int id) {
+        this.string = string;
+        this.id = id;
+
+        propbankEntry = endsWithSenseNumber(string);
+        quoted = string.length() >= 2 && string.charAt(0) == '"'
+            && string.charAt(string.length() - 1) == '"'
+            && !containsLineTerminator(string);
+        numeric = !string.isEmpty() && consistsOf(string, "0123456789.,");
+        special = quoted || numeric || SPECIAL_CONCEPTS.contains(string);
+        inverse = string.endsWith("-of");
+        clearedInstance = removeSenseNumbers(string);
+        argIndex = getIndex(string, ":ARG", '0');
+        opIndex = getIndex(string, ":op", '1');
+        sntIndex = getIndex(string, ":snt", '1');
+    }
+
+    /**
+     * @return the represented string
+     */
+    public String getString() {
+        return string;
+    }
+
+    /**
+     * @return the id of this symbol, which is unique among all symbols stored
+     * in the {@link SymbolTable}, or -1 if this symbol is not stored in the
+     * table
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return whether the string matches {@code .*-[0-9]+}, i.e. whether it
+     * denotes a PropBank frameset
+     */
+    public boolean isPropbankEntry() {
+        return propbankEntry;
+    }
+
+    /**
+     * @return whether the string matches {@code "(.*)"}
+     */
+    public boolean isQuoted() {
+        return quoted;
+    }
+
+    /**
+     * @return whether the string matches {@code [0-9.,]+}
+     */
+    public boolean isNumeric() {
+        return numeric;
+    }
+
+    /**
+     * @return whether the string is neither quoted nor numeric, see {@link
+     * Vertex#isTranslatable()}
+     */
+    public boolean isTranslatable() {
+        return !quoted && !numeric;
+    }
+
+    /**
+     * @return whether the string denotes a special concept, see {@link
+     * Vertex#isSpecialNode()}
+     */
+    public boolean isSpecial() {
+        return special;
+    }
+
+    /**
+     * @return whether the string ends with {@code -of}, i.e. whether it
+     * denotes an inverse edge label
+     */
+    public boolean isInverse() {
+        return inverse;
+    }
+
+    /**
+     * @return the string with all occurrences of {@code -[0-9]+} removed, see
+     * {@link Vertex#getClearedInstance()}
+     */
+    public String getClearedInstance() {
+        return clearedInstance;
+    }
+
+    /**
+     * @return i if the string is {@code :ARGi} for some digit i or -1
+     * otherwise
+     */
+    public int getArgIndex() {
+        return argIndex;
+    }
+
+    /**
+     * @return i if the string is {@code :opi} for some digit i between 1 and 9
+     * or -1 otherwise
+     */
+    public int getOpIndex() {
+        return opIndex;
+    }
+
+    /**
+     * @return i if the string is {@code :snti} for some digit i between 1 and
+     * 9 or -1 otherwise
+     */
+    public int getSntIndex() {
+        return sntIndex;
+    }
+
+    public String toString() {
+        return string;
+    }
+
+    /**
+     * @return whether {@code s} matches {@code .*-[0-9]+}
+     */
+    static boolean endsWithSenseNumber(String s) {
+        int digitsStart = s.length();
+        while (digitsStart > 0 && isDigit(s.charAt(digitsStart - 1))) {
+            digitsStart--;
+        }
+        return digitsStart < s.length() && digitsStart > 0
+            && s.charAt(digitsStart - 1) == '-'
+            && !containsLineTerminator(s.substring(0, digitsStart - 1));
+    }
+
+    /**
+     * @return {@code s.replaceAll("-[0-9]+", "")}
+     */
+    private static String removeSenseNumbers(String s) {
+        StringBuilder ret = null;
+        int i = 0;
+        while (i < s.length()) {
+            int j = i + 1;
+            if (s.charAt(i) == '-') {
+                while (j < s.length() && isDigit(s.charAt(j))) {
+                    j++;
+                }
+            }
+            if (j > i + 1) {
+                if (ret == null) {
+                    ret = new StringBuilder(s.substring(0, i));
+                }
+            } else if (ret != null) {
+                ret.append(s.charAt(i));
+            }
+            i = j;
+        }
+        return ret == null ? s : ret.toString();
+    }
+
+    /**
+     * @return the digit d if {@code s} consists of {@code prefix} followed by
+     * a single digit d with {@code d >= minDigit} or -1 otherwise
+     */
+    private static int getIndex(String s, String prefix, char minDigit) {
+        if (s.length() != prefix.length() + 1 || !s.startsWith(prefix))
+            return -1;
+        char c = s.charAt(prefix.length());
+        return c >= minDigit && c <= '9' ? c - '0' : -1;
+    }
+
+    private static boolean consistsOf(String s, String chars) {
+        for (int i = 0; i < s.length(); i++) {
+            if (chars.indexOf(s.charAt(i)) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return whether {@code s} contains a character that is not matched by
+     * the {@code .} of a regular expression
+     */
+    private static boolean containsLineTerminator(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028'
+                || c == '\u2029')
+                return true;
+        }
+        return false;
+    }
+}
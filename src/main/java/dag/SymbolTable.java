@@ -0,0 +1,46 @@
+package dag;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A process-wide table of interned concepts and edge labels. Each distinct
+ * string is represented by a single {@link Symbol} whose properties are
+ * computed when the string is interned for the first time. To prevent
+ * unbounded growth when processing large amounts of unseen names and numbers,
+ * the table stores at most {@link SymbolTable#CAPACITY} symbols; further
+ * strings are represented by symbols that are not stored.
+ */
+public class SymbolTable {
+    // the maximum number of symbols stored in the table
+    public static final int CAPACITY = 1000000;
+
+    private static final ConcurrentHashMap<String, Symbol> SYMBOLS =
+        new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private SymbolTable() {}
+
+    /**
+     * Returns the symbol representing a string.
+     * @param string the string
+     * @return the symbol, which is shared by all equal strings unless the
+     * table is full
+     */
+    public static Symbol intern(String string) {
+        Symbol symbol = SYMBOLS.get(string);
+        if (symbol != null)
+            return symbol;
+        if (SYMBOLS.size() >= CAPACITY)
+            return new Symbol(string, -1);
+        return SYMBOLS.computeIfAbsent(
+            string, s -> new Symbol(s, NEXT_ID.getAndIncrement()));
+    }
+
+    /**
+     * @return the number of symbols stored in the table
+     */
+    public static int size() {
+        return SYMBOLS.size();
+    }
+}
@@ -25,6 +25,10 @@ public class Vertex {
     // stores annotations actually assigned to this vertex
     public AnnotationFunction annotation;
 
+    // the symbol representing the instance when it was last looked up, see
+    // getSymbol()
+    private Symbol symbol;
+
     static final String EMPTY_VERTEX_ID = "__empty__";
     static final String EMPTY_VERTEX_INSTANCE = "UNKNOWN";
     public static final Vertex EMPTY_VERTEX = new Vertex(EMPTY_VERTEX_INSTANCE);
@@ -64,17 +68,12 @@ public class Vertex {
     /**
      * determines the POS tag of this vertex using a maximum entropy tagger on
      * a sentence that consists only of a cleaned up version of the label of
-     * this vertex
+     * this vertex. The results are cached by {@link PosTagCache}.
      * @param tagger a maximum entropy tagger
      * @return the determined POS tag
      */
     public String getPos(MaxentTagger tagger) {
-        String clearedInstance = instance.replaceAll("[\"\']", "");
-        if (clearedInstance.matches(".*-[0-9]+")) {
-            clearedInstance = instance.substring(0, instance.lastIndexOf("-"));
-        }
-        String taggedInstance = tagger.tagString(clearedInstance).trim();
-        return taggedInstance.substring(taggedInstance.lastIndexOf("_") + 1);
+        return PosTagCache.getTag(tagger, instance);
     }
 
     /**
@@ -169,7 +168,7 @@ public class Vertex {
         }
 
         Set<Edge> invEdges = minDistEdges.stream()
-                                 .filter(e -> e.label.endsWith("-of"))
+                                 .filter(Edge::isInverse)
                                  .collect(Collectors.toSet());
         if (invEdges.size() != minDistEdges.size()) {
             minDistEdges.removeAll(invEdges);
@@ -242,20 +241,29 @@ public class Vertex {
         return incomingEdges;
     }
 
+    /**
+     * @return the symbol representing the instance of this vertex; it is
+     * looked up again whenever the instance has been changed
+     */
+    public Symbol getSymbol() {
+        Symbol s = symbol;
+        if (s == null || !s.getString().equals(instance)) {
+            s = SymbolTable.intern(instance);
+            symbol = s;
+        }
+        return s;
+    }
+
     public boolean isPropbankEntry() {
-        return instance.matches(".*-[0-9]+");
+        return getSymbol().isPropbankEntry();
     }
 
     public boolean isTranslatable() {
-        return !(instance.matches("\"(.*)\"") || instance.matches("[0-9.,]+"));
+        return getSymbol().isTranslatable();
     }
 
     public boolean isSpecialNode() {
-        return !isTranslatable()
-            || Arrays
-                   .asList(
-                       "-", "+", "interrogative", "imperative", "expressive")
-                   .contains(instance);
+        return getSymbol().isSpecial();
     }
 
     public boolean isLink() {
@@ -271,7 +279,7 @@ public class Vertex {
     }
 
     public String getClearedInstance() {
-        return instance.replaceAll("-[0-9]+", "");
+        return getSymbol().getClearedInstance();
     }
 
     public void setMode(String mode) {
@@ -3,11 +3,14 @@ package gen;
 import dag.Amr;
 import dag.Edge;
 import dag.Vertex;
+import misc.BoundedCache;
+import misc.Debugger;
 import misc.PosHelper;
 import misc.WordLists;
 import misc.WordNetHelper;
 import ml.Prediction;
 import net.sf.extjwnl.data.POS;
+import simplenlg.features.Feature;
 import simplenlg.features.Form;
 import simplenlg.features.NumberAgreement;
 import simplenlg.features.Person;
@@ -16,10 +19,13 @@ import simplenlg.framework.NLGFactory;
 import simplenlg.lexicon.Lexicon;
 import simplenlg.phrasespec.NPPhraseSpec;
 import simplenlg.phrasespec.SPhraseSpec;
-import simplenlg.phrasespec.VPPhraseSpec;
 import simplenlg.realiser.english.Realiser;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This helper class provides, for each vertex, the default realizations
@@ -52,11 +58,42 @@ public class DefaultRealizer {
             "resemble-01", Collections.singletonList("like"));
     }
 
+    // the maximum number of entries of the caches for default realizations of
+    // PropBank framesets and for WordNet POS counts
+    private static final int CACHE_CAPACITY = 100000;
+
+    /**
+     * The inflections of words computed using SimpleNLG, see {@link
+     * DefaultRealizer#inflect(String, Inflection)}.
+     */
+    private enum Inflection {
+        GERUND,
+        PAST_PARTICIPLE,
+        SINGULAR,
+        PLURAL,
+        PAST_SINGULAR,
+        PAST_PLURAL,
+        PRESENT_SINGULAR,
+        PRESENT_PLURAL
+    }
+
     private final WordNetHelper wordNetHelper;
     private final Lexicon lexicon;
     private final Realiser realizer;
     private final NLGFactory phraseFactory;
 
+    // memoized results of getPropbankRealizations, where an empty optional
+    // indicates that no result was determined
+    private final BoundedCache<String, Optional<List<String>>>
+        realizationCache = new BoundedCache<>(CACHE_CAPACITY);
+    // memoized results of WordNetHelper.getAllPOSTagsWithCount
+    private final BoundedCache<String, Map<POS, Integer>> posCountCache =
+        new BoundedCache<>(CACHE_CAPACITY);
+    // a map from inflections and words (separated by a tab) to the inflected
+    // words; as there is only a small number of inflections per concept, this
+    // map is not bounded
+    private final Map<String, String> inflections = new ConcurrentHashMap<>();
+
     public DefaultRealizer(WordNetHelper wordNetHelper) {
         this.wordNetHelper = wordNetHelper;
         this.lexicon = Lexicon.getDefaultLexicon();
@@ -152,12 +189,133 @@ public class DefaultRealizer {
         inst = inst.replaceAll("\"", "");
         inst = inst.replace("-", " ");
 
-        List<POS> instPosTags;
+        if (v.isPropbankEntry()) {
+            // only pass those parts of the syntactic annotation on which the
+            // realizations actually depend to make memoization more effective
+            String number = "";
+            String tense = "";
+            boolean imperative = false;
+            boolean thirdPerson = false;
+            if (mappedPos.equals("NN")
+                && syntacticAnnotation.containsKey("number")) {
+                number = syntacticAnnotation.get("number").getValue();
+            } else if (mappedPos.equals("VB")) {
+                imperative = !v.mode.isEmpty();
+                if (!imperative) {
+                    if (syntacticAnnotation.containsKey("tense")) {
+                        tense = syntacticAnnotation.get("tense").getValue();
+                    }
+                    thirdPerson = guessThirdPerson(null, v, true);
+                }
+            }
 
-        instPosTags = new ArrayList<>();
+            List<String> ret = getPropbankRealizations(
+                inst, mappedPos, number, tense, imperative, thirdPerson);
+            if (ret != null)
+                return ret;
+        }
 
-        Map<POS, Integer> instPosCounts =
-            wordNetHelper.getAllPOSTagsWithCount(inst, true);
+        // check dates
+        if (!v.getIncomingEdges().isEmpty()) {
+            Edge inEdge = v.getIncomingEdges().get(0);
+            String lab = inEdge.getLabel();
+            if (lab.equals(":month")) {
+                int month = Integer.valueOf(inst);
+                inst = WordLists.months.get(month);
+            } else if (lab.equals(":day")) {
+            } else {
+                boolean isNumeric = true;
+                long val = 0;
+                try {
+                    val = Long.valueOf(inst);
+                } catch (NumberFormatException e) {
+                    isNumeric = false;
+                }
+                if (isNumeric) {
+                    if (val >= 1000 && val <= 999999) {
+                    } else if (val >= 1000000000) {
+                        double decVal = val / 1000000000d;
+                        String decValString = (decVal + "").replace(".0", "");
+                        inst = decValString + " billion";
+                    } else if (val >= 1000000) {
+                        double decVal = val / 1000000d;
+                        String decValString = (decVal + "").replace(".0", "");
+                        inst = decValString + " million";
+                    }
+                }
+            }
+            if (lab.equals(":value")) {
+                if (inEdge.getFrom().getInstance().equals("ordinal-entity")) {
+                    int val = Integer.valueOf(inst);
+                    if (val == 1)
+                        inst = "first";
+                    if (val == 2)
+                        inst = "second";
+                    if (val == 3)
+                        inst = "third";
+                    if (val == 4)
+                        inst = "fourth";
+                    if (val == 5)
+                        inst = "fifth";
+                    if (val == 6)
+                        inst = "sixth";
+                }
+            }
+        }
+
+        if (inst.equals("1")) {
+            return Arrays.asList("one", "1");
+        }
+        if (inst.equals("2")) {
+            return Arrays.asList("two", "2");
+        }
+
+        return Collections.singletonList(inst);
+    }
+
+    /**
+     * Returns the default realizations of a vertex representing a PropBank
+     * frameset. The results are memoized as they only depend on the given
+     * arguments.
+     * @param inst the concept of the vertex without its sense number
+     * @param mappedPos the simplified POS tag assigned to the vertex
+     * @param number the number assigned to the vertex if {@code mappedPos} is
+     * NN or an empty string otherwise
+     * @param tense the tense assigned to the vertex if {@code mappedPos} is VB
+     * and the vertex is not imperative or an empty string otherwise
+     * @param imperative whether {@code mappedPos} is VB and the vertex has a
+     * mode
+     * @param thirdPerson the result of {@link
+     * DefaultRealizer#guessThirdPerson(Amr, Vertex, boolean)} if {@code
+     * mappedPos} is VB and the vertex is not imperative or false otherwise
+     * @return the default realizations or {@code null} if they are to be
+     * determined as for vertices that do not represent PropBank framesets
+     */
+    private List<String> getPropbankRealizations(String inst, String mappedPos,
+        String number, String tense, boolean imperative, boolean thirdPerson) {
+        String key = inst + "\t" + mappedPos + "\t" + number + "\t" + tense
+            + "\t" + imperative + "\t" + thirdPerson;
+        Optional<List<String>> cached = realizationCache.get(key);
+        if (cached == null) {
+            List<String> ret = computePropbankRealizations(
+                inst, mappedPos, number, tense, imperative, thirdPerson);
+            cached = Optional.ofNullable(
+                ret == null ? null : Collections.unmodifiableList(ret));
+            realizationCache.put(key, cached);
+        }
+        return cached.orElse(null);
+    }
+
+    /**
+     * Computes the result of {@link DefaultRealizer#getPropbankRealizations(
+     * String, String, String, String, boolean, boolean)}.
+     */
+    private List<String> computePropbankRealizations(String inst,
+        String mappedPos, String number, String tense, boolean imperative,
+        boolean thirdPerson) {
+        List<POS> instPosTags = new ArrayList<>();
+
+        Map<POS, Integer> instPosCounts = getPosCounts(inst);
         int maxCount = 0;
         for (POS p : instPosCounts.keySet()) {
             maxCount = Math.max(maxCount, instPosCounts.get(p));
@@ -169,34 +327,15 @@ public class DefaultRealizer {
             }
         }
 
-        if (mappedPos.equals("VBG") && v.isPropbankEntry()) {
-            if (!instPosTags.contains(POS.VERB))
-                return Collections.emptyList();
-            VPPhraseSpec instSpec = phraseFactory.createVerbPhrase(inst);
-            SPhraseSpec clause = phraseFactory.createClause();
-            clause.setVerbPhrase(instSpec);
-            clause.setFeature(simplenlg.features.Feature.FORM, Form.GERUND);
-            inst = realizer.realise(clause).getRealisation();
+        if (mappedPos.equals("VBG") || mappedPos.equals("VBN")) {
+            // the gerund and the past participle are not used as default
+            // realizations, they are left to the REALIZE model
             return Collections.emptyList();
-        } else if (mappedPos.equals("VBN") && v.isPropbankEntry()) {
-            if (!instPosTags.contains(POS.VERB))
-                return Collections.emptyList();
-            VPPhraseSpec instSpec = phraseFactory.createVerbPhrase(inst);
-            SPhraseSpec clause = phraseFactory.createClause();
-            clause.setVerbPhrase(instSpec);
-            clause.setFeature(
-                simplenlg.features.Feature.FORM, Form.PAST_PARTICIPLE);
-            inst = realizer.realise(clause).getRealisation();
-            return Collections.emptyList();
-        } else if (mappedPos.equals("NN") && v.isPropbankEntry()) {
-            NumberAgreement numberAgreement = NumberAgreement.SINGULAR;
-
-            if (syntacticAnnotation.containsKey("number")) {
-                if (syntacticAnnotation.get("number").getValue().equals(
-                        GoldSyntacticAnnotations.PLURAL)) {
-                    numberAgreement = NumberAgreement.PLURAL;
-                }
-            }
+        } else if (mappedPos.equals("NN")) {
+            Inflection inflection =
+                number.equals(GoldSyntacticAnnotations.PLURAL)
+                ? Inflection.PLURAL
+                : Inflection.SINGULAR;
 
             List<String> candidates = new ArrayList<>();
             List<String> ret = new ArrayList<>();
@@ -208,82 +347,49 @@ public class DefaultRealizer {
                 candidates.addAll(WordLists.morphVerbalization.get(inst));
             }
             for (String candidate : candidates) {
-                NPPhraseSpec instSpec =
-                    phraseFactory.createNounPhrase(candidate);
-                SPhraseSpec clause = phraseFactory.createClause();
-                clause.setSubject(instSpec);
-                instSpec.setFeature(
-                    simplenlg.features.Feature.NUMBER, numberAgreement);
-                String realization = realizer.realise(clause).getRealisation();
+                String realization = inflect(candidate, inflection);
 
-                if (wordNetHelper.getAllPOSTagsWithCount(realization, true)
-                        .getOrDefault(POS.NOUN, 0)
-                    > 1) {
+                if (getPosCounts(realization).getOrDefault(POS.NOUN, 0) > 1) {
                     ret.add(realization);
                 }
             }
             return ret;
         }
 
-        else if (mappedPos.equals("VB") && v.isPropbankEntry()) {
+        else if (mappedPos.equals("VB")) {
             if (!instPosTags.contains(POS.VERB))
                 return Collections.emptyList();
 
-            VPPhraseSpec instSpec = phraseFactory.createVerbPhrase(inst);
-            SPhraseSpec clause = phraseFactory.createClause();
-            clause.setVerbPhrase(instSpec);
-
-            if (!v.mode.isEmpty()) {
-                clause.setFeature(
-                    simplenlg.features.Feature.FORM, Form.IMPERATIVE);
+            if (imperative) {
                 return Collections.singletonList(inst);
             }
 
-            else {
-                Tense tense = Tense.PAST;
-
-                if (syntacticAnnotation.containsKey("tense")) {
-                    switch (syntacticAnnotation.get("tense").getValue()) {
-                        case GoldSyntacticAnnotations.PAST:
-                            tense = Tense.PAST;
-                            break;
-                        case GoldSyntacticAnnotations.PRESENT:
-                            tense = Tense.PRESENT;
-                            break;
-                        case GoldSyntacticAnnotations.NONE:
-                            return Collections.singletonList(inst);
-                        case GoldSyntacticAnnotations.FUTURE:
-                            return Collections.singletonList(inst);
-                    }
-                }
-
-                clause.setFeature(simplenlg.features.Feature.FORM, Form.NORMAL);
-                clause.setFeature(simplenlg.features.Feature.TENSE, tense);
-                clause.setFeature(simplenlg.features.Feature.NUMBER,
-                    NumberAgreement.SINGULAR);
-                clause.setFeature(
-                    simplenlg.features.Feature.PERSON, Person.THIRD);
-
-                String realization1 = realizer.realise(clause).getRealisation();
-
-                clause.setFeature(
-                    simplenlg.features.Feature.NUMBER, NumberAgreement.PLURAL);
-                // clause.setFeature(simplenlg.features.Feature.TENSE,
-                // Tense.PRESENT);
-
-                String realization2 = realizer.realise(clause).getRealisation();
+            boolean present = false;
+            switch (tense) {
+                case GoldSyntacticAnnotations.PRESENT:
+                    present = true;
+                    break;
+                case GoldSyntacticAnnotations.NONE:
+                    return Collections.singletonList(inst);
+                case GoldSyntacticAnnotations.FUTURE:
+                    return Collections.singletonList(inst);
+            }
 
-                if (realization1.equals(realization2))
-                    return Collections.singletonList(realization1);
+            String realization1 = inflect(inst,
+                present ? Inflection.PRESENT_SINGULAR
+                        : Inflection.PAST_SINGULAR);
+            String realization2 = inflect(inst,
+                present ? Inflection.PRESENT_PLURAL : Inflection.PAST_PLURAL);
 
-                boolean thirdPerson = guessThirdPerson(null, v, true);
-                if (thirdPerson) {
-                    return Arrays.asList(realization1, realization2);
-                }
+            if (realization1.equals(realization2))
+                return Collections.singletonList(realization1);
 
-                return Collections.singletonList(realization2);
+            if (thirdPerson) {
+                return Arrays.asList(realization1, realization2);
             }
-        } else if (mappedPos.equals("JJ") && v.isPropbankEntry()) {
+
+            return Collections.singletonList(realization2);
+        } else if (mappedPos.equals("JJ")) {
             if (!instPosTags.contains(POS.ADJECTIVE)
                 && !instPosTags.contains(POS.ADVERB))
                 return Collections.emptyList();
@@ -312,66 +418,141 @@ public class DefaultRealizer {
                     return Arrays.asList(inst, adverb);
                 }
             }
-        } else if (v.isPropbankEntry()) {
-            return Collections.emptyList();
+            return null;
         }
+        return Collections.emptyList();
+    }
 
-        // check dates
-        if (!v.getIncomingEdges().isEmpty()) {
-            Edge inEdge = v.getIncomingEdges().get(0);
-            String lab = inEdge.getLabel();
-            if (lab.equals(":month")) {
-                int month = Integer.valueOf(inst);
-                inst = WordLists.months.get(month);
-            } else if (lab.equals(":day")) {
-            } else {
-                boolean isNumeric = true;
-                long val = 0;
-                try {
-                    val = Long.valueOf(inst);
-                } catch (NumberFormatException e) {
-                    isNumeric = false;
-                }
-                if (isNumeric) {
-                    if (val >= 1000 && val <= 999999) {
-                    } else if (val >= 1000000000) {
-                        double decVal = val / 1000000000d;
-                        String decValString = (decVal + "").replace(".0", "");
-                        inst = decValString + " billion";
-                    } else if (val >= 1000000) {
-                        double decVal = val / 1000000d;
-                        String decValString = (decVal + "").replace(".0", "");
-                        inst = decValString + " million";
-                    }
-                }
-            }
-            if (lab.equals(":value")) {
-                if (inEdge.getFrom().getInstance().equals("ordinal-entity")) {
-                    int val = Integer.valueOf(inst);
-                    if (val == 1)
-                        inst = "first";
-                    if (val == 2)
-                        inst = "second";
-                    if (val == 3)
-                        inst = "third";
-                    if (val == 4)
-                        inst = "fourth";
-                    if (val == 5)
-                        inst = "fifth";
-                    if (val == 6)
-                        inst = "sixth";
-                }
+    /**
+     * Returns the WordNet POS tags of a word along with their counts, see
+     * {@link WordNetHelper#getAllPOSTagsWithCount(String, boolean)}. As
+     * computing these counts requires iterating over all synsets of the word,
+     * the results are memoized.
+     * @param word the word
+     * @return a map from POS tags to their counts
+     */
+    private Map<POS, Integer> getPosCounts(String word) {
+        Map<POS, Integer> counts = posCountCache.get(word);
+        if (counts == null) {
+            counts = Collections.unmodifiableMap(
+                wordNetHelper.getAllPOSTagsWithCount(word, true));
+            posCountCache.put(word, counts);
+        }
+        return counts;
+    }
+
+    /**
+     * Inflects a word using SimpleNLG. Inflections are taken from the
+     * inflection table if they have been computed before or loaded using
+     * {@link DefaultRealizer#loadInflectionTable(String)}.
+     * @param word the word in its base form
+     * @param inflection the inflection to apply
+     * @return the inflected word
+     */
+    private String inflect(String word, Inflection inflection) {
+        return inflections.computeIfAbsent(
+            inflection + "\t" + word, key -> realise(word, inflection));
+    }
+
+    /**
+     * Inflects a word by realizing a clause consisting only of this word.
+     */
+    private synchronized String realise(String word, Inflection inflection) {
+        SPhraseSpec clause = phraseFactory.createClause();
+        switch (inflection) {
+            case GERUND:
+            case PAST_PARTICIPLE:
+                clause.setVerbPhrase(phraseFactory.createVerbPhrase(word));
+                clause.setFeature(Feature.FORM,
+                    inflection == Inflection.GERUND ? Form.GERUND
+                                                    : Form.PAST_PARTICIPLE);
+                break;
+            case SINGULAR:
+            case PLURAL:
+                NPPhraseSpec instSpec = phraseFactory.createNounPhrase(word);
+                clause.setSubject(instSpec);
+                instSpec.setFeature(Feature.NUMBER,
+                    inflection == Inflection.PLURAL ? NumberAgreement.PLURAL
+                                                    : NumberAgreement.SINGULAR);
+                break;
+            default:
+                clause.setVerbPhrase(phraseFactory.createVerbPhrase(word));
+                clause.setFeature(Feature.FORM, Form.NORMAL);
+                clause.setFeature(Feature.TENSE,
+                    inflection == Inflection.PRESENT_SINGULAR
+                            || inflection == Inflection.PRESENT_PLURAL
+                        ? Tense.PRESENT
+                        : Tense.PAST);
+                clause.setFeature(Feature.NUMBER,
+                    inflection == Inflection.PAST_SINGULAR
+                            || inflection == Inflection.PRESENT_SINGULAR
+                        ? NumberAgreement.SINGULAR
+                        : NumberAgreement.PLURAL);
+                clause.setFeature(Feature.PERSON, Person.THIRD);
+        }
+        return realizer.realise(clause).getRealisation();
+    }
+
+    /**
+     * Loads a table of precomputed inflections created by {@link
+     * DefaultRealizer#writeInflectionTable(Collection, String)}.
+     * @param filename the file in which the table is stored
+     * @throws IOException if the file cannot be read
+     */
+    public void loadInflectionTable(String filename) throws IOException {
+        for (String line : Files.readAllLines(Paths.get(filename))) {
+            String[] comps = line.split("\t", -1);
+            if (comps.length == 3) {
+                inflections.put(comps[0] + "\t" + comps[1], comps[2]);
             }
         }
+        Debugger.println("loaded " + inflections.size()
+            + " inflections from " + filename);
+    }
 
-        if (inst.equals("1")) {
-            return Arrays.asList("one", "1");
+    /**
+     * Computes all inflections that may be required for the default
+     * realizations of the given concepts and writes them to a file. This only
+     * needs to be done once; each line of the file contains an inflection, a
+     * word in its base form and the inflected word, separated by tabs.
+     * @param concepts the concepts, e.g. all concepts stored at {@link
+     * main.PathList#CONCEPT_LIST}
+     * @param filename the file to which the table should be written
+     */
+    public void writeInflectionTable(
+        Collection<String> concepts, String filename) throws IOException {
+        Set<String> words = new TreeSet<>();
+        for (String concept : concepts) {
+            if (!concept.matches(".*-[0-9]+"))
+                continue;
+            String word = concept.replaceFirst("-[0-9]+", "")
+                              .replaceAll("\"", "")
+                              .replace("-", " ");
+            words.add(word);
+            if (WordLists.morphVerbalization.containsKey(word)) {
+                words.addAll(WordLists.morphVerbalization.get(word));
+            }
         }
-        if (inst.equals("2")) {
-            return Arrays.asList("two", "2");
+
+        List<String> lines = new ArrayList<>();
+        for (String word : words) {
+            for (Inflection inflection : Inflection.values()) {
+                lines.add(inflection + "\t" + word + "\t"
+                    + inflect(word, inflection));
+            }
         }
+        Files.write(Paths.get(filename), lines);
+        Debugger.println("wrote " + lines.size() + " inflections of "
+            + words.size() + " words to " + filename);
+    }
 
-        return Collections.singletonList(inst);
+    /**
+     * @return a description of the number of hits and misses of the caches
+     * used by this class
+     */
+    public String getCacheStatistics() {
+        return "realizations: " + realizationCache + "; POS counts: "
+            + posCountCache + "; " + inflections.size() + " inflections";
     }
 
     /**
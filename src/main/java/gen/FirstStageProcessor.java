@@ -1,6 +1,7 @@
 package gen;
 
 import dag.Amr;
+import dag.CompiledGraph;
 import dag.Vertex;
 import edu.stanford.nlp.ling.BasicDatum;
 import edu.stanford.nlp.ling.Datum;
@@ -114,7 +115,8 @@ public class FirstStageProcessor {
         List<Datum<String, String>> trainingData = new ArrayList<>();
 
         this.amr = amr;
-        buffer = amr.dag.getVerticesBottomUp();
+        buffer =
+            new ArrayList<>(amr.getCompiledGraph().getVerticesBottomUp());
         swapMemory = new HashSet<>();
 
         while (!buffer.isEmpty()) {
@@ -175,40 +177,122 @@ public class FirstStageProcessor {
      */
     public void processFirstStage(Amr amr) {
         this.amr = amr;
-        buffer = amr.dag.getVerticesBottomUp();
+        buffer =
+            new ArrayList<>(amr.getCompiledGraph().getVerticesBottomUp());
         swapMemory = new HashSet<>();
 
         while (!buffer.isEmpty()) {
             Vertex current = buffer.remove(0);
+            String bestTransition = getBestTransition(current);
 
-            String bestTransition = "";
-            double bestScore = -Double.MAX_VALUE;
+            // apply the best found action and store it for later calls to
+            // processChangedVertices
+            if (!bestTransition.isEmpty()
+                && applyTransition(current, bestTransition)) {
+                current.annotation.transition = bestTransition;
+            } else {
+                current.annotation.transition = GoldTransitions.KEEP;
+            }
+        }
+    }
 
-            List<Datum<String, String>> datumList =
-                maxentModel.toDatumList(amr, current, "", true);
-            if (datumList.isEmpty())
+    /**
+     * Updates an already processed AMR graph after some of its vertices have
+     * been changed. To this end, the best transition is determined for each
+     * given vertex and compared to the transition that has been applied to it
+     * by {@link FirstStageProcessor#processFirstStage(Amr)}; vertices without
+     * such a transition are treated as if they had been kept. If the two
+     * transitions differ only in whether the vertex is deleted, the new
+     * transition is applied. If a MERGE or SWAP transition is predicted that
+     * has not been applied, the structure of the graph would change and the
+     * graph is left as is. Vertices to which a MERGE or SWAP transition has
+     * been applied are skipped: transitions are predicted on the graph
+     * obtained after applying these transitions, which differs from the one
+     * the applied transition was predicted for, so the two cannot be
+     * compared.
+     * @param amr the AMR graph to update
+     * @param vertices the vertices for which transitions should be predicted;
+     * this should include all changed vertices as well as their parents and
+     * children
+     * @return true if the graph has been updated, false if a MERGE or SWAP
+     * transition is predicted that has not been applied, in which case the graph must
+     * be processed from scratch using {@link
+     * FirstStageProcessor#processFirstStage(Amr)} after reverting the applied
+     * transitions using {@link Amr#revertTransitions()}
+     */
+    public boolean processChangedVertices(
+        Amr amr, Collection<Vertex> vertices) {
+        this.amr = amr;
+        buffer = new ArrayList<>();
+        swapMemory = new HashSet<>();
+
+        Map<Vertex, String> bestTransitions = new HashMap<>();
+        for (Vertex v : vertices) {
+            String appliedTransition = v.annotation.transition != null
+                ? v.annotation.transition
+                : GoldTransitions.KEEP;
+            if (changesStructure(appliedTransition))
                 continue;
+            String bestTransition = getBestTransition(v);
+            if (bestTransition.isEmpty())
+                bestTransition = GoldTransitions.KEEP;
+            if (changesStructure(bestTransition))
+                return false;
+            bestTransitions.put(v, bestTransition);
+        }
+
+        for (Vertex v : bestTransitions.keySet()) {
+            String bestTransition = bestTransitions.get(v);
+            if (!changesStructure(bestTransition)) {
+                v.annotation.delete =
+                    bestTransition.equals(GoldTransitions.DELETE);
+            }
+            v.annotation.transition = bestTransition;
+        }
+        return true;
+    }
 
-            Counter<String> probs =
-                maxentModel.classifier.logProbabilityOf(datumList.get(0));
+    /**
+     * Checks whether a transition changes the structure of an AMR graph.
+     * @param transition the transition to check
+     * @return true iff the transition is a MERGE or SWAP transition
+     */
+    private static boolean changesStructure(String transition) {
+        return transition.equals(GoldTransitions.MERGE)
+            || transition.equals(GoldTransitions.SWAP);
+    }
 
-            for (String transition : maxentModel.classifier.labels()) {
-                if (!isApplicable(current, transition))
-                    continue;
+    /**
+     * Determines the best applicable transition for a vertex on top of the
+     * node buffer.
+     * @param current the top element of the node buffer
+     * @return the best transition or an empty string if the maximum entropy
+     * model does not predict any transition for this vertex
+     */
+    private String getBestTransition(Vertex current) {
+        String bestTransition = "";
+        double bestScore = -Double.MAX_VALUE;
 
-                double prob = probs.getCount(transition);
+        List<Datum<String, String>> datumList =
+            maxentModel.toDatumList(amr, current, "", true);
+        if (datumList.isEmpty())
+            return bestTransition;
 
-                if (prob > bestScore) {
-                    bestScore = prob;
-                    bestTransition = transition;
-                }
-            }
+        Counter<String> probs =
+            maxentModel.classifier.logProbabilityOf(datumList.get(0));
 
-            // apply the best found action
-            if (!bestTransition.isEmpty()) {
-                applyTransition(current, bestTransition);
+        for (String transition : maxentModel.classifier.labels()) {
+            if (!isApplicable(current, transition))
+                continue;
+
+            double prob = probs.getCount(transition);
+
+            if (prob > bestScore) {
+                bestScore = prob;
+                bestTransition = transition;
             }
         }
+        return bestTransition;
     }
 
     /**
@@ -242,10 +326,11 @@ public class FirstStageProcessor {
         if (transition.equals(GoldTransitions.DELETE))
             return !WordLists.NEVER_DELETE.contains(current.getInstance());
 
+        Vertex parent = amr.getCompiledGraph().getParent(current);
+
         if (transition.equals(GoldTransitions.SWAP)) {
-            if (current.getIncomingEdges().isEmpty())
+            if (parent == null)
                 return false;
-            Vertex parent = current.getIncomingEdges().get(0).getFrom();
             if (!parent.name.isEmpty())
                 return false;
             if (swapMemory.contains(new Pair<>(current, parent)))
@@ -254,9 +339,8 @@ public class FirstStageProcessor {
         }
 
         if (transition.equals(GoldTransitions.MERGE)) {
-            if (current.getIncomingEdges().isEmpty())
+            if (parent == null)
                 return false;
-            Vertex parent = current.getIncomingEdges().get(0).getFrom();
             String instance = current.getInstance();
             String parentInstance = parent.getInstance();
             String pair = parentInstance + "\t" + instance;
@@ -284,11 +368,12 @@ public class FirstStageProcessor {
 
         // if some ARG-parent of the vertex is a verb in imperative form, all
         // instances of "you" and "we" are removed
-        if (!v.getIncomingEdges().isEmpty()) {
-            Vertex parent = v.getIncomingEdges().get(0).getFrom();
+        CompiledGraph graph = amr.getCompiledGraph();
+        Vertex parent = graph.getParent(v);
+        if (parent != null) {
             if ((v.getInstance().equals("you") || v.getInstance().equals("we"))
                 && parent.mode.equals("imperative")
-                && v.getIncomingEdges().get(0).getLabel().startsWith(":ARG")) {
+                && graph.getIncomingLabel(v).startsWith(":ARG")) {
                 return true;
             }
         }
@@ -302,9 +387,7 @@ public class FirstStageProcessor {
      * @return true if the application was successful, false otherwise
      */
     private boolean applyTransition(Vertex current, String transition) {
-        Vertex parent = current.getIncomingEdges().isEmpty()
-            ? null
-            : current.getIncomingEdges().get(0).getFrom();
+        Vertex parent = amr.getCompiledGraph().getParent(current);
 
         switch (transition) {
             case GoldTransitions.KEEP:
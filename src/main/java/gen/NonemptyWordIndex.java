@@ -0,0 +1,178 @@
+package gen;
+
+import dag.AlignedWord;
+import dag.AlignmentType;
+
+import java.util.*;
+
+/**
+ * An index over the nonempty words of a sentence, represented by a list of
+ * {@link AlignedWord}s, that is used by the {@link PostProcessor} to compute
+ * local contexts of words. All nonempty words (optionally excluding
+ * punctuation) are linked by pointers to their nonempty predecessor and
+ * successor, so the context of a word can be computed without iterating over
+ * the entire sentence. Whenever the string of an aligned word is changed, the
+ * index must be updated using {@link NonemptyWordIndex#update(AlignedWord)}.
+ */
+class NonemptyWordIndex {
+    private final List<AlignedWord> sentence;
+    private final boolean withPunctuation;
+    private final String startSymbol;
+    private final String endSymbol;
+
+    // maps each aligned word to its position within the sentence
+    private final Map<AlignedWord, Integer> positions = new IdentityHashMap<>();
+
+    // for each nonempty word, active stores true and prev and next store the
+    // positions of the previous and next nonempty word, respectively, or -1
+    // and sentence.size() if there is no such word
+    private final boolean[] active;
+    private final int[] prev;
+    private final int[] next;
+
+    /**
+     * Creates a new index for a sentence.
+     * @param sentence the sentence, represented by a list of {@link
+     * AlignedWord}s
+     * @param withPunctuation whether punctuation should be included
+     * @param startSymbol the symbol used to pad contexts at the start of the
+     * sentence
+     * @param endSymbol the symbol used to pad contexts at the end of the
+     * sentence
+     */
+    NonemptyWordIndex(List<AlignedWord> sentence, boolean withPunctuation,
+        String startSymbol, String endSymbol) {
+        this.sentence = sentence;
+        this.withPunctuation = withPunctuation;
+        this.startSymbol = startSymbol;
+        this.endSymbol = endSymbol;
+
+        int size = sentence.size();
+        active = new boolean[size];
+        prev = new int[size];
+        next = new int[size];
+
+        int last = -1;
+        for (int i = 0; i < size; i++) {
+            positions.put(sentence.get(i), i);
+            if (isNonempty(sentence.get(i))) {
+                active[i] = true;
+                prev[i] = last;
+                if (last >= 0)
+                    next[last] = i;
+                last = i;
+            }
+        }
+        if (last >= 0)
+            next[last] = size;
+    }
+
+    /**
+     * Updates the index after the string of an aligned word has been changed.
+     * @param word the changed word
+     */
+    void update(AlignedWord word) {
+        int position = positions.get(word);
+        boolean nonempty = isNonempty(word);
+        if (nonempty == active[position])
+            return;
+
+        if (nonempty) {
+            int before = getPrevious(position);
+            int after = getNext(position);
+            prev[position] = before;
+            next[position] = after;
+            if (before >= 0)
+                next[before] = position;
+            if (after < sentence.size())
+                prev[after] = position;
+        } else {
+            if (prev[position] >= 0)
+                next[prev[position]] = next[position];
+            if (next[position] < sentence.size())
+                prev[next[position]] = prev[position];
+        }
+        active[position] = nonempty;
+    }
+
+    /**
+     * Returns a local context of nonempty words around a given word where said
+     * word is replaced by another word. The local context is represented by a
+     * list of strings.
+     * @param word the word for which the context should be computed
+     * @param insertionForAw the word by which {@code word} shall be replaced
+     * @param contextSize the context size. Let {@code i} denote the position of
+     * {@code word}; then the words at positions {@code i - contextSize, i -
+     * contextSize + 1, ..., i, i + 1, ..., i + contextSize} are considered.
+     * @return the context
+     */
+    List<String> getContext(
+        AlignedWord word, String insertionForAw, int contextSize) {
+        int position = positions.get(word);
+
+        String[] leftSide = new String[contextSize];
+        int left = getPrevious(position);
+        for (int i = contextSize - 1; i >= 0; i--) {
+            leftSide[i] = left >= 0 ? sentence.get(left).word : startSymbol;
+            if (left >= 0)
+                left = prev[left];
+        }
+
+        String[] rightSide = new String[contextSize];
+        int right = getNext(position);
+        for (int i = 0; i < contextSize; i++) {
+            rightSide[i] =
+                right < sentence.size() ? sentence.get(right).word : endSymbol;
+            if (right < sentence.size())
+                right = next[right];
+        }
+
+        // nonempty words may consist of several space-separated tokens, so
+        // only the closest contextSize tokens on each side are kept
+        List<String> ls = Arrays.asList(String.join(" ", leftSide).split(" "));
+        List<String> rs =
+            Arrays.asList(String.join(" ", rightSide).split(" "));
+
+        List<String> context = new ArrayList<>();
+        context.addAll(ls.subList(ls.size() - contextSize, ls.size()));
+        if (!insertionForAw.isEmpty())
+            context.add(insertionForAw);
+        context.addAll(rs.subList(0, contextSize));
+        return context;
+    }
+
+    /**
+     * @param position a position within the sentence
+     * @return the position of the closest nonempty word before {@code
+     * position} or -1 if there is no such word
+     */
+    private int getPrevious(int position) {
+        if (active[position])
+            return prev[position];
+        int i = position - 1;
+        while (i >= 0 && !active[i]) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * @param position a position within the sentence
+     * @return the position of the closest nonempty word after {@code position}
+     * or the size of the sentence if there is no such word
+     */
+    private int getNext(int position) {
+        if (active[position])
+            return next[position];
+        int i = position + 1;
+        while (i < sentence.size() && !active[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private boolean isNonempty(AlignedWord word) {
+        return !word.word.isEmpty()
+            && (withPunctuation || word.type != AlignmentType.PUNCTUATION);
+    }
+}
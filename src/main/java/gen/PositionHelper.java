@@ -2,6 +2,7 @@ package gen;
 
 import dag.Amr;
 import dag.Edge;
+import dag.SymbolTable;
 import dag.Vertex;
 import edu.stanford.nlp.ling.Datum;
 import edu.stanford.nlp.stats.Counter;
@@ -216,9 +217,10 @@ public class PositionHelper {
         }
 
         // make sure that multi-sentences are ordered
-        List<String> sntList = labels.stream()
-                                   .filter(e -> e.matches(":snt[1-9]"))
-                                   .collect(Collectors.toList());
+        List<String> sntList =
+            labels.stream()
+                .filter(e -> SymbolTable.intern(e).getSntIndex() > 0)
+                .collect(Collectors.toList());
         List<String> sntClone = new ArrayList<>(sntList);
         Collections.sort(sntClone);
         if (!sntClone.equals(sntList)) {
@@ -231,7 +233,7 @@ public class PositionHelper {
         List<Edge> opRelList =
             reordering.stream()
                 .filter(
-                    e -> e == instanceEdge || e.getLabel().matches(":op[1-9]"))
+                    e -> e == instanceEdge || e.isOpEdge())
                 .collect(Collectors.toList());
         if (opRelList.contains(instanceEdge) && opRelList.size() > 2) {
             if (opRelList.indexOf(instanceEdge) != opRelList.size() - 2)
@@ -255,11 +257,11 @@ public class PositionHelper {
                 if (e.getLabel().equals(":op1")) {
                     foundFirstOp = true;
                 } else if (foundFirstOp && !foundLastOp) {
-                    if (!e.getLabel().matches(":op[1-9]")) {
+                    if (!e.isOpEdge()) {
                         foundLastOp = true;
                     }
                 } else if (foundLastOp) {
-                    if (e.getLabel().matches(":op[1-9]")) {
+                    if (e.isOpEdge()) {
                         return 0;
                     }
                 }
@@ -4,22 +4,20 @@ import dag.AlignedWord;
 import dag.AlignmentType;
 import dag.Amr;
 import dag.Vertex;
-import edu.berkeley.nlp.lm.ArrayEncodedNgramLanguageModel;
-import edu.berkeley.nlp.lm.collections.BoundedList;
 import edu.stanford.nlp.ling.Datum;
+import lm.LanguageModel;
 import misc.StaticHelper;
 import misc.WordLists;
 import ml.DenomMaxentModel;
 import ml.Prediction;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * This class performs post-processing as described in the thesis.
  */
 public class PostProcessor {
-    private final ArrayEncodedNgramLanguageModel<String> lm;
+    private final LanguageModel lm;
     private final DenomMaxentModel denomMaxentModel;
 
     // hyperparameters used by the post processor
@@ -35,8 +33,8 @@ public class PostProcessor {
      * @param denomMaxentModel the maximum entropy model to be used for
      * denominator probabilities
      */
-    public PostProcessor(ArrayEncodedNgramLanguageModel<String> lm,
-        DenomMaxentModel denomMaxentModel) {
+    public PostProcessor(
+        LanguageModel lm, DenomMaxentModel denomMaxentModel) {
         this.lm = lm;
         this.denomMaxentModel = denomMaxentModel;
     }
@@ -93,6 +91,9 @@ public class PostProcessor {
      * represented by a list of {@link AlignedWord}s.
      */
     private void postProcess(Amr amr, List<AlignedWord> result) {
+        NonemptyWordIndex index = new NonemptyWordIndex(
+            result, false, lm.getStartSymbol(), lm.getEndSymbol());
+
         for (Vertex v : amr.dag) {
             if (amr.partialTransitionFunction.pos.containsKey(v)
                 && v.isPropbankEntry()) {
@@ -105,14 +106,14 @@ public class PostProcessor {
             // according to the language model
             if (aw.type == AlignmentType.TRANSLATION && aw.alignment.isLink()
                 && !aw.word.isEmpty()) {
-                double scoreWithArticle =
-                    scoreNonemptyContext(aw, result, 2, false);
+                double scoreWithArticle = scoreNonemptyContext(aw, index, 2);
                 double scoreWithoutArticle =
-                    scoreNonemptyContext(aw, "", result, 2, false);
+                    scoreNonemptyContext(aw, "", index, 2);
 
                 if (scoreWithoutArticle
                     > scoreWithArticle * linkRemovalHandicap) {
                     aw.word = "";
+                    index.update(aw);
                     amr.partialTransitionFunction.realization.put(
                         aw.alignment, aw.word);
                 }
@@ -149,8 +150,9 @@ public class PostProcessor {
                     }
                 }
 
-                if (!canHaveArticle(amr, result, aw)) {
+                if (!canHaveArticle(amr, index, aw)) {
                     aw.word = "";
+                    index.update(aw);
                     amr.partialTransitionFunction.denominator.put(
                         aw.alignment, aw.word);
                     continue;
@@ -180,16 +182,16 @@ public class PostProcessor {
                 noArticlePredScore = Math.log(noArticlePredScore);
 
                 double scoreWithThe = articleLmWeight
-                        * scoreNonemptyContext(aw, "the", result, 2, false)
+                        * scoreNonemptyContext(aw, "the", index, 2)
                     + (1 - articleLmWeight) * thePredScore;
                 double scoreWithA = articleLmWeight
-                        * scoreNonemptyContext(aw, "a", result, 2, false)
+                        * scoreNonemptyContext(aw, "a", index, 2)
                     + (1 - articleLmWeight) * aPredScore;
                 double scoreWithAn = articleLmWeight
-                        * scoreNonemptyContext(aw, "an", result, 2, false)
+                        * scoreNonemptyContext(aw, "an", index, 2)
                     + (1 - articleLmWeight) * aPredScore;
                 double scoreWithoutArticle =
-                    articleLmWeight * scoreNonemptyContext(aw, result, 2, false)
+                    articleLmWeight * scoreNonemptyContext(aw, index, 2)
                     + (1 - articleLmWeight) * noArticlePredScore;
 
                 String bestArticle = "the";
@@ -206,6 +208,7 @@ public class PostProcessor {
                         > scoreWithoutArticle * articleAdditionHandicap
                     && !SecondStageProcessor.articleDisallowed(aw.alignment)) {
                     aw.word = bestArticle;
+                    index.update(aw);
                     amr.partialTransitionFunction.denominator.put(
                         aw.alignment, aw.word);
                 }
@@ -217,17 +220,16 @@ public class PostProcessor {
      * Computes the language model score of a local context of nonempty words
      * around a given word.
      * @param word the word for which the context should be scored
-     * @param sentence the sentence in which the word is embedded
+     * @param index the index of the nonempty words of the sentence in which
+     * the word is embedded
      * @param contextSize the context size. Let {@code i} denote the position of
      * {@code word}; then the words at positions {@code i - contextSize, i -
      * contextSize + 1, ..., i, i + 1, ..., i + contextSize} are considered.
-     * @param withPunctuation whether punctuation should be included
      * @return the language model score of the context
      */
-    private double scoreNonemptyContext(AlignedWord word,
-        List<AlignedWord> sentence, int contextSize, boolean withPunctuation) {
-        return scoreNonemptyContext(
-            word, word.word, sentence, contextSize, withPunctuation);
+    private double scoreNonemptyContext(
+        AlignedWord word, NonemptyWordIndex index, int contextSize) {
+        return scoreNonemptyContext(word, word.word, index, contextSize);
     }
 
     /**
@@ -235,73 +237,21 @@ public class PostProcessor {
      * around a given word if said word is replaced by another word.
      * @param word the word for which the context should be scored
      * @param insertionForAw the word by which {@code word} shall be replaced
-     * @param sentence the sentence in which the word is embedded
+     * @param index the index of the nonempty words of the sentence in which
+     * the word is embedded
      * @param contextSize the context size. Let {@code i} denote the position of
      * {@code word}; then the words at positions {@code i - contextSize, i -
      * contextSize + 1, ..., i, i + 1, ..., i + contextSize} are considered.
-     * @param withPunctuation whether punctuation should be included
      * @return the language model score of the context
      */
     private double scoreNonemptyContext(AlignedWord word, String insertionForAw,
-        List<AlignedWord> sentence, int contextSize, boolean withPunctuation) {
-        List<String> nonemptyContext = getNonemptyContext(
-            word, insertionForAw, sentence, contextSize, withPunctuation);
+        NonemptyWordIndex index, int contextSize) {
+        List<String> nonemptyContext =
+            index.getContext(word, insertionForAw, contextSize);
         return SecondStageProcessor.scoreSentence(
             nonemptyContext, lm, false, false);
     }
 
-    /**
-     * Returns a local context of nonempty words around a given word where said
-     * word is replaced by another word. The local context is represented by a
-     * list of strings.
-     * @param word the word for which the context should be computed
-     * @param insertionForAw the word by which {@code word} shall be replaced
-     * @param sentence the sentence in which the word is embedded
-     * @param contextSize the context size. Let {@code i} denote the position of
-     * {@code word}; then the words at positions {@code i - contextSize, i -
-     * contextSize + 1, ..., i, i + 1, ..., i + contextSize} are considered.
-     * @param withPunctuation whether punctuation should be included
-     * @return the context
-     */
-    private List<String> getNonemptyContext(AlignedWord word,
-        String insertionForAw, List<AlignedWord> sentence, int contextSize,
-        boolean withPunctuation) {
-        List<AlignedWord> ret =
-            sentence.stream()
-                .filter(e
-                    -> (!e.word.isEmpty()
-                           && (e.type != AlignmentType.PUNCTUATION
-                                  || withPunctuation))
-                        || (e == word))
-                .collect(Collectors.toList());
-        int wordIndex = ret.indexOf(word);
-
-        List<String> retString =
-            ret.stream().map(e -> e.word).collect(Collectors.toList());
-
-        BoundedList<String> retBounded =
-            new BoundedList<>(retString, lm.getWordIndexer().getStartSymbol(),
-                lm.getWordIndexer().getEndSymbol());
-
-        List<String> leftSide =
-            retBounded.subList(wordIndex - contextSize, wordIndex);
-        List<String> rightSide =
-            retBounded.subList(wordIndex + 1, wordIndex + contextSize + 1);
-
-        String lsString = String.join(" ", leftSide);
-        String rsString = String.join(" ", rightSide);
-        List<String> ls = Arrays.asList(lsString.split(" "));
-        List<String> rs = Arrays.asList(rsString.split(" "));
-
-        List<String> finalRet = new ArrayList<>();
-        finalRet.addAll(ls.subList(ls.size() - contextSize, ls.size()));
-        if (!insertionForAw.isEmpty())
-            finalRet.add(insertionForAw);
-        finalRet.addAll(rs.subList(0, contextSize));
-
-        return finalRet;
-    }
-
     /**
      * This function checks whether a word of a sentence generated from some AMR
      * graph is allowed to have an article. A word is not allowed to have an
@@ -311,13 +261,13 @@ public class PostProcessor {
      * empty.</li>
      * </ul>
      * @param amr the AMR graph from which the sentence was created
-     * @param aws the sentence, represented as a list of {@code AlignedWord}s
+     * @param index the index of the nonempty words of the sentence
      * @param aw the word to check
      * @return true iff the word is allowed to have an article
      */
     private boolean canHaveArticle(
-        Amr amr, List<AlignedWord> aws, AlignedWord aw) {
-        List<String> context = getNonemptyContext(aw, "", aws, 1, false);
+        Amr amr, NonemptyWordIndex index, AlignedWord aw) {
+        List<String> context = index.getContext(aw, "", 1);
 
         if (!Collections.disjoint(context, WordLists.articles))
             return false;
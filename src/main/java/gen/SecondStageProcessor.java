@@ -1,12 +1,13 @@
 package gen;
 
 import dag.Amr;
+import dag.CompiledGraph;
 import dag.Edge;
 import dag.Vertex;
-import edu.berkeley.nlp.lm.ArrayEncodedNgramLanguageModel;
 import edu.berkeley.nlp.lm.collections.BoundedList;
 import edu.stanford.nlp.ling.Datum;
 import edu.stanford.nlp.util.Pair;
+import lm.LanguageModel;
 import main.PathList;
 import misc.PosHelper;
 import misc.PrunedList;
@@ -17,7 +18,6 @@ import opennlp.tools.ml.model.Event;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * This class implements the transition system for the second stage defined in
@@ -37,7 +37,7 @@ public class SecondStageProcessor {
     private final ChildInsertionMaxentModel childInsertionMaxEnt;
     private final DenomMaxentModel denomMaxentModel;
 
-    private final ArrayEncodedNgramLanguageModel languageModel;
+    private final LanguageModel languageModel;
     private final PositionHelper positionHelper;
     private final DefaultRealizer defaultRealizer;
 
@@ -60,6 +60,22 @@ public class SecondStageProcessor {
     public int maxNrOfComposedPredictions;
     public int maxNrOfRealizationPredictions;
     public int maxNrOfPosRealizationPredictions;
+    // the maximum number of pairs of partial transition functions to combine
+    // per vertex using cube pruning; if this is not positive, all pairs are
+    // combined
+    public int cubePruningPopLimit;
+
+    // a cache storing the n-best partial transition functions of subtrees for
+    // reuse in other AMR graphs or null if no such cache should be used, see
+    // SubtreeCache
+    private SubtreeCache subtreeCache;
+    // the set of all vertices of the AMR graph currently processed to which a
+    // link refers; subtrees containing such vertices are not cached
+    private Set<Vertex> currentLinkedVertices = Collections.emptySet();
+    // if only parts of the AMR graph currently processed need to be
+    // regenerated, this set contains all vertices whose previously computed
+    // realizations are no longer valid; otherwise, it is null
+    private Set<Vertex> currentInvalidatedVertices;
 
     // a map counting the observation of named entity realizations observed in a
     // training corpus, required for the default realizations of named entities
@@ -88,8 +104,7 @@ public class SecondStageProcessor {
         OtherInsertionMaxentModel othersInsertionMaxEnt,
         ChildInsertionMaxentModel childInsertionMaxEnt,
         DenomMaxentModel denomMaxentModel, DefaultRealizer defaultRealizer,
-        PositionHelper positionHelper,
-        ArrayEncodedNgramLanguageModel<String> languageModel)
+        PositionHelper positionHelper, LanguageModel languageModel)
         throws IOException {
         this.realizationMaxentModel = realizationMaxentModel;
         this.argInsertionMaxEnt = argInsertionMaxEnt;
@@ -128,6 +143,30 @@ public class SecondStageProcessor {
         return amr.yield(pred.partialTransitionFunction);
     }
 
+    /**
+     * Recomputes the best realization of an AMR graph for which {@link
+     * SecondStageProcessor#getBestRealizationAsString(Amr)} has already been
+     * called, after some of its vertices have been changed. The n-best partial
+     * transition functions stored for each vertex are reused, except for the
+     * invalidated vertices and for vertices without stored partial transition
+     * functions; the latter typically have been added to the graph. If the
+     * invalidated vertices are closed under the ancestor relation, only the
+     * paths from these vertices to the root are processed again.
+     * @param amr the AMR graph
+     * @param invalidatedVertices the vertices whose partial transition
+     * functions must be recomputed
+     * @return the generated sentence
+     */
+    public String regenerateBestRealizationAsString(
+        Amr amr, Set<Vertex> invalidatedVertices) {
+        currentInvalidatedVertices = invalidatedVertices;
+        try {
+            return getBestRealizationAsString(amr);
+        } finally {
+            currentInvalidatedVertices = null;
+        }
+    }
+
     /**
      * Performs a bottom-up generation from an AMR graph; this implements the
      * second part of the final generation algorithm defined in the thesis.
@@ -136,6 +175,16 @@ public class SecondStageProcessor {
      * represented by an instance of {@link Prediction}
      */
     private Prediction generateBottomUp(Amr amr) {
+        if (subtreeCache != null) {
+            currentLinkedVertices =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Vertex v : amr.getCompiledGraph().getVerticesBfs()) {
+                if (v.isLink()) {
+                    currentLinkedVertices.add(v.annotation.original);
+                }
+            }
+        }
+
         // special handling for multi-sentence AMR graphs
         if (amr.dag.getRoot().getInstance().equals("multi-sentence")) {
             List<Edge> sortedOut =
@@ -147,7 +196,7 @@ public class SecondStageProcessor {
             for (Edge e : sortedOut) {
                 if (e.isInstanceEdge())
                     continue;
-                PrunedList pl = getBest(amr, e.getTo());
+                List<Prediction> pl = getBestIfInvalidated(amr, e.getTo());
                 if (!pl.isEmpty()) {
                     bestPred.partialTransitionFunction.addCopy(
                         pl.get(0).partialTransitionFunction);
@@ -158,7 +207,8 @@ public class SecondStageProcessor {
             return bestPred;
         }
 
-        PrunedList bestRealizations = getBest(amr, amr.dag.getRoot());
+        List<Prediction> bestRealizations =
+            getBestIfInvalidated(amr, amr.dag.getRoot());
 
         if (!bestRealizations.isEmpty()) {
             return bestRealizations.get(0);
@@ -177,36 +227,52 @@ public class SecondStageProcessor {
      * scores
      */
     private PrunedList getBest(Amr amr, Vertex v) {
+        CompiledGraph graph = amr.getCompiledGraph();
+        int index = graph.indexOf(v);
+        if (index < 0) {
+            throw new AssertionError(
+                "vertex " + v + " is not reachable from the root");
+        }
+
         boolean applyPunctuation = false;
         boolean isLast = true;
 
         // special handling for multi-sentence AMR graphs
         if (!v.getInstance().equals("multi-sentence")) {
-            if (v.getIncomingEdges().isEmpty()
-                || v.getIncomingEdges().get(0).getFrom().getInstance().equals(
-                       "multi-sentence")) {
+            int parent = graph.getParent(index);
+            if (graph.getDepth(index) == 0
+                || parent >= 0
+                    && graph.getVertex(parent).getInstance().equals(
+                           "multi-sentence")) {
                 applyPunctuation = true;
-                if (!v.getIncomingEdges().isEmpty()) {
-                    isLast = false;
-                    Edge in = v.getIncomingEdges().get(0);
-                    List<Edge> parentOut = in.getFrom().getOutgoingEdges();
-                    if (in.equals(parentOut.get(parentOut.size() - 1))) {
-                        isLast = true;
-                    }
+                if (parent >= 0) {
+                    int lastSibling = graph.getChild(
+                        parent, graph.getChildCount(parent) - 1);
+                    isLast = lastSibling == index;
                 }
             }
         }
 
-        Edge instanceEdge = v.getInstanceEdge();
+        // look up the subtree induced by v; as the signature depends on the
+        // POS tags of all vertices, it must be computed before processing any
+        // children
+        String signature = null;
+        if (subtreeCache != null) {
+            signature = subtreeCache.getSignature(
+                v, applyPunctuation, isLast, currentLinkedVertices);
+            if (signature != null) {
+                PrunedList cached = subtreeCache.get(signature, v);
+                if (cached != null)
+                    return cached;
+            }
+        }
 
-        List<Edge> trueChildren =
-            v.getOutgoingEdges()
-                .stream()
-                .filter(e -> e.getTo() != Vertex.EMPTY_VERTEX)
-                .collect(Collectors.toList());
+        Edge instanceEdge = v.getInstanceEdge();
 
-        for (Edge childEdge : trueChildren) {
-            getBest(amr, childEdge.getTo());
+        int childCount = graph.getChildCount(index);
+        for (int k = 0; k < childCount; k++) {
+            getBestIfInvalidated(
+                amr, graph.getVertex(graph.getChild(index, k)));
         }
 
         PrunedList realizationPredictions =
@@ -267,14 +333,14 @@ public class SecondStageProcessor {
                 realizationPrediction.partialTransitionFunction.childInsertions
                     .getOrDefault(v, new ArrayList<>());
 
-            int totalChildrenSize =
-                trueChildren.size() + childInsertions.size();
+            int totalChildrenSize = childCount + childInsertions.size();
 
             if (totalChildrenSize >= 1) {
                 List<Pair<List<Edge>, Double>> orderPredictions;
                 if (v.isDeleted() && totalChildrenSize == 1) {
                     orderPredictions = Collections.singletonList(new Pair<>(
-                        Collections.singletonList(trueChildren.get(0)), 1d));
+                        Collections.singletonList(graph.getChildEdge(index, 0)),
+                        1d));
                 } else {
                     // if there is more than one child, get the n-best REORDER
                     // transitions
@@ -400,9 +466,33 @@ public class SecondStageProcessor {
         }
 
         v.predictions.put("realization", bestRealizations);
+        if (signature != null) {
+            subtreeCache.put(signature, v);
+        }
         return bestRealizations;
     }
 
+    /**
+     * Returns the n-best partial transition functions for a vertex of an AMR
+     * graph. If only parts of the graph are regenerated, see {@link
+     * SecondStageProcessor#regenerateBestRealizationAsString(Amr, Set)}, and
+     * the vertex has not been invalidated, the previously computed partial
+     * transition functions are returned; otherwise, they are computed using
+     * {@link SecondStageProcessor#getBest(Amr, Vertex)}.
+     * @param amr the AMR graph
+     * @param v the vertex
+     * @return the list of n-best partial transition functions along with their
+     * scores
+     */
+    private List<Prediction> getBestIfInvalidated(Amr amr, Vertex v) {
+        if (currentInvalidatedVertices != null
+            && !currentInvalidatedVertices.contains(v)
+            && v.predictions.containsKey("realization")) {
+            return v.predictions.get("realization");
+        }
+        return getBest(amr, v);
+    }
+
     /**
      * This helper function computes the n-best partial transition functions for
      * a child of the currently considered vertex. As the realizations are
@@ -439,8 +529,8 @@ public class SecondStageProcessor {
         }
 
         PrunedList ret = new PrunedList(maxNrOfComposedPredictions);
+        List<Combination> candidates = new ArrayList<>();
 
-        List<Prediction> beforeInsPredictions;
         List<Prediction> afterInsPredictions =
             Collections.singletonList(new Prediction("", 1));
 
@@ -453,19 +543,16 @@ public class SecondStageProcessor {
             afterInsPredictions =
                 Collections.singletonList(new Prediction("", 1));
         } else {
+            CompiledGraph graph = amr.getCompiledGraph();
             Vertex v = newEdge.getTo();
-            if (!v.getIncomingEdges().isEmpty()) {
-                String inLabel = v.getIncomingEdges().get(0).getLabel();
+            Vertex parent = graph.getParent(v);
+            if (parent != null) {
+                String inLabel = graph.getIncomingLabel(v);
                 if (inLabel.equals(":domain")
-                    && !v.getIncomingEdges()
-                            .get(0)
-                            .getFrom()
-                            .getInstance()
-                            .equals("possible")) {
+                    && !parent.getInstance().equals("possible")) {
                     List<Prediction> bePredictions = new ArrayList<>();
 
-                    if (v.getIncomingEdges().get(0).getFrom().mode.equals(
-                            "imperative")) {
+                    if (parent.mode.equals("imperative")) {
                         bePredictions.add(new Prediction("be", 1));
                     } else {
                         bePredictions.add(new Prediction("", 0.33));
@@ -477,122 +564,318 @@ public class SecondStageProcessor {
             }
         }
 
+        if (cubePruningPopLimit > 0) {
+            combineLazily(amr, order, currentSentence, newWord, newEdge,
+                instancePred, afterInsPredictions, ret);
+            buildPartialTransitionFunctions(ret, newEdge);
+            return ret;
+        }
+
         // iterate over the n-best transitions for all previous vertices
         for (Prediction p1 : currentSentence) {
             // iterate over the n-best transitions for the current vertex
             for (Prediction p2 : newWord) {
-                boolean beforeInsIsArg = false;
+                afterInsPredictions = addCombinations(amr, order, p1, p2,
+                    newEdge, instancePred, afterInsPredictions, candidates);
+            }
+        }
 
-                if (newEdge.getTo().isPropbankEntry()) {
-                    newEdge.getTo().setPos(
-                        p2.partialTransitionFunction.pos.getOrDefault(
-                            newEdge.getTo(), PosHelper.POS_ANY));
-                }
-                if (newEdge.isInstanceEdge() || p2.getValue().isEmpty()
-                    || instancePred.getValue().isEmpty()
-                    || newEdge.isInserted()) {
+        // score all candidates at once so that each n-gram is looked up only
+        // once and all lookups can be resolved in a cache-friendly order; the
+        // partial transition functions are only built for the candidates that
+        // survive pruning
+        scoreCombinations(candidates, order, newEdge);
+        ret.addAll(candidates);
+        buildPartialTransitionFunctions(ret, newEdge);
+
+        return ret;
+    }
+
+    /**
+     * A combination of the partial transition function for all previous
+     * vertices, the partial transition function for the current vertex and
+     * the INSERT_BETWEEN transitions before and after the current vertex. As
+     * most combinations are discarded when pruning, the partial transition
+     * function of a combination is only built by {@link
+     * SecondStageProcessor#buildPartialTransitionFunctions(List, Edge)}.
+     */
+    private static class Combination extends Prediction {
+        final Prediction p1;
+        final Prediction p2;
+        final String beforeIns;
+        final String afterIns;
+
+        Combination(String value, double lmFreeScore, Prediction p1,
+            Prediction p2, String beforeIns, String afterIns) {
+            super(value, lmFreeScore, lmFreeScore, null);
+            this.p1 = p1;
+            this.p2 = p2;
+            this.beforeIns = beforeIns;
+            this.afterIns = afterIns;
+        }
+    }
+
+    /**
+     * Builds the partial transition functions of all combinations computed by
+     * {@link SecondStageProcessor#addCombinations(Amr, List, Prediction,
+     * Prediction, Edge, Prediction, List, List)} that are contained within a
+     * list of predictions.
+     * @param predictions the list of predictions
+     * @param newEdge the edge corresponding to the child currently considered
+     */
+    private static void buildPartialTransitionFunctions(
+        List<Prediction> predictions, Edge newEdge) {
+        for (Prediction p : predictions) {
+            if (!(p instanceof Combination)
+                || p.partialTransitionFunction != null)
+                continue;
+
+            Combination c = (Combination) p;
+            c.partialTransitionFunction = new PartialTransitionFunction();
+            if (!newEdge.isInstanceEdge()) {
+                c.partialTransitionFunction.beforeIns.put(
+                    newEdge.getTo(), c.beforeIns);
+                c.partialTransitionFunction.afterIns.put(
+                    newEdge.getTo(), c.afterIns);
+            }
+            c.partialTransitionFunction.addCopy(c.p1.partialTransitionFunction);
+            c.partialTransitionFunction.addCopy(c.p2.partialTransitionFunction);
+        }
+    }
+
+    /**
+     * Computes all combinations of the partial transition function for all
+     * previous vertices and the partial transition function for the current
+     * vertex with the n-best INSERT_BETWEEN transitions. The scores of the
+     * resulting combinations do not yet contain the language model score, see
+     * {@link SecondStageProcessor#scoreCombinations(List, List, Edge)}, and
+     * their partial transition functions are not yet built.
+     * @param amr the AMR graph
+     * @param order the determined order
+     * @param p1 the partial transition function for all vertices that occur in
+     * {@code order} before the current one
+     * @param p2 the partial transition function for the current vertex
+     * @param newEdge the edge corresponding to the child currently considered
+     * @param instancePred the prediction for the realization of the instance
+     * edge, i.e. the parent node
+     * @param afterInsPredictions the INSERT_BETWEEN transitions after the
+     * realization of the current vertex
+     * @param candidates the list to which all combinations are added
+     * @return the INSERT_BETWEEN transitions after the realization of the
+     * current vertex that were actually used
+     */
+    private List<Prediction> addCombinations(Amr amr, List<Edge> order,
+        Prediction p1, Prediction p2, Edge newEdge, Prediction instancePred,
+        List<Prediction> afterInsPredictions, List<Combination> candidates) {
+        List<Prediction> beforeInsPredictions;
+        boolean beforeInsIsArg = false;
+
+        if (newEdge.getTo().isPropbankEntry()) {
+            newEdge.getTo().setPos(
+                p2.partialTransitionFunction.pos.getOrDefault(
+                    newEdge.getTo(), PosHelper.POS_ANY));
+        }
+        if (newEdge.isInstanceEdge() || p2.getValue().isEmpty()
+            || instancePred.getValue().isEmpty() || newEdge.isInserted()) {
+            beforeInsPredictions =
+                Collections.singletonList(new Prediction("", 1));
+            afterInsPredictions =
+                Collections.singletonList(new Prediction("", 1));
+        } else {
+            // compute the n-best INSERT-BETWEEN transitions
+
+            String relPos;
+
+            String fromRealization =
+                p1.partialTransitionFunction.realization.get(newEdge.getFrom());
+            String fromVoice =
+                p1.partialTransitionFunction.voice.get(newEdge.getFrom());
+            String toRealization = p2.getValue();
+
+            // determine the relative position of the child w.r.t its parent
+            // according to the current order
+            if (!order.contains(newEdge.getFrom().getInstanceEdge()))
+                relPos = "d";
+            else if (order.indexOf(newEdge.getFrom().getInstanceEdge())
+                < order.indexOf(newEdge))
+                relPos = "r";
+            else
+                relPos = "l";
+
+            beforeInsPredictions = new ArrayList<>();
+            List<Datum<String, String>> argEps;
+
+            if (fromRealization != null && !fromRealization.isEmpty()) {
+                argEps = argInsertionMaxEnt.toDatumList(amr, newEdge, true,
+                    relPos, fromRealization, toRealization, fromVoice);
+            } else {
+                argEps = Collections.emptyList();
+            }
+            if (!argEps.isEmpty()) {
+                beforeInsPredictions.addAll(
+                    argInsertionMaxEnt.getNBestSorted(argEps.get(0)));
+                beforeInsIsArg = true;
+            } else {
+                List<Datum<String, String>> otherEps =
+                    othersInsertionMaxEnt.toDatumList(amr, newEdge, true,
+                        relPos, fromRealization, toRealization);
+
+                if (!otherEps.isEmpty()) {
+                    beforeInsPredictions.addAll(
+                        othersInsertionMaxEnt.getNBestSorted(otherEps.get(0)));
+                } else {
                     beforeInsPredictions =
                         Collections.singletonList(new Prediction("", 1));
-                    afterInsPredictions =
-                        Collections.singletonList(new Prediction("", 1));
-                } else {
-                    // compute the n-best INSERT-BETWEEN transitions
-
-                    String relPos;
-
-                    String fromRealization =
-                        p1.partialTransitionFunction.realization.get(
-                            newEdge.getFrom());
-                    String fromVoice = p1.partialTransitionFunction.voice.get(
-                        newEdge.getFrom());
-                    String toRealization = p2.getValue();
-
-                    // determine the relative position of the child w.r.t its
-                    // parent according to the current order
-                    if (!order.contains(newEdge.getFrom().getInstanceEdge()))
-                        relPos = "d";
-                    else if (order.indexOf(newEdge.getFrom().getInstanceEdge())
-                        < order.indexOf(newEdge))
-                        relPos = "r";
-                    else
-                        relPos = "l";
-
-                    beforeInsPredictions = new ArrayList<>();
-                    List<Datum<String, String>> argEps;
-
-                    if (fromRealization != null && !fromRealization.isEmpty()) {
-                        argEps = argInsertionMaxEnt.toDatumList(amr, newEdge,
-                            true, relPos, fromRealization, toRealization,
-                            fromVoice);
-                    } else {
-                        argEps = Collections.emptyList();
-                    }
-                    if (!argEps.isEmpty()) {
-                        beforeInsPredictions.addAll(
-                            argInsertionMaxEnt.getNBestSorted(argEps.get(0)));
-                        beforeInsIsArg = true;
-                    } else {
-                        List<Datum<String, String>> otherEps =
-                            othersInsertionMaxEnt.toDatumList(amr, newEdge,
-                                true, relPos, fromRealization, toRealization);
-
-                        if (!otherEps.isEmpty()) {
-                            beforeInsPredictions.addAll(
-                                othersInsertionMaxEnt.getNBestSorted(
-                                    otherEps.get(0)));
-                        } else {
-                            beforeInsPredictions = Collections.singletonList(
-                                new Prediction("", 1));
-                        }
-                    }
                 }
+            }
+        }
 
-                // for each INSERT-BETWEEN transition
-                for (Prediction beforeIns : beforeInsPredictions) {
-                    for (Prediction afterIns : afterInsPredictions) {
-                        // compute the current realization of the partial AMR
-                        // graph
-                        String value =
-                            ((p1.getValue() + " " + beforeIns.getValue() + " "
-                                 + p2.getValue() + " " + afterIns.getValue())
-                                    .trim()
-                                    .replaceAll("  ", " "))
-                                .toLowerCase();
-
-                        // get the score of the realization
-                        double lmFreeScore = p1.getLmFreeScore()
-                            + p2.getLmFreeScore()
-                            + (beforeInsIsArg ? beforeInsArgWeight
-                                              : beforeInsWeight)
-                                * Math.log(beforeIns.getScore())
-                            + afterInsWeight * Math.log(afterIns.getScore());
-
-                        boolean endBounded =
-                            order.indexOf(newEdge) == order.size() - 1;
-                        double score = lmFreeScore
-                            + lmWeight * scoreSent(value, true, endBounded);
-
-                        Prediction p =
-                            new Prediction(value, score, lmFreeScore);
-
-                        if (!newEdge.isInstanceEdge()) {
-                            p.partialTransitionFunction.beforeIns.put(
-                                newEdge.getTo(), beforeIns.getValue());
-                            p.partialTransitionFunction.afterIns.put(
-                                newEdge.getTo(), afterIns.getValue());
-                        }
+        // for each INSERT-BETWEEN transition
+        for (Prediction beforeIns : beforeInsPredictions) {
+            for (Prediction afterIns : afterInsPredictions) {
+                // compute the current realization of the partial AMR graph
+                String value = ((p1.getValue() + " " + beforeIns.getValue()
+                                    + " " + p2.getValue() + " "
+                                    + afterIns.getValue())
+                                       .trim()
+                                       .replaceAll("  ", " "))
+                                   .toLowerCase();
+
+                // get the score of the realization; the language model score
+                // is added by scoreCombinations
+                double lmFreeScore = p1.getLmFreeScore() + p2.getLmFreeScore()
+                    + (beforeInsIsArg ? beforeInsArgWeight : beforeInsWeight)
+                        * Math.log(beforeIns.getScore())
+                    + afterInsWeight * Math.log(afterIns.getScore());
+
+                candidates.add(new Combination(value, lmFreeScore, p1, p2,
+                    beforeIns.getValue(), afterIns.getValue()));
+            }
+        }
+        return afterInsPredictions;
+    }
 
-                        p.partialTransitionFunction.addCopy(
-                            p1.partialTransitionFunction);
-                        p.partialTransitionFunction.addCopy(
-                            p2.partialTransitionFunction);
-                        ret.add(p);
-                    }
-                }
+    /**
+     * Adds the language model scores to a list of combinations computed by
+     * {@link SecondStageProcessor#addCombinations(Amr, List, Prediction,
+     * Prediction, Edge, Prediction, List, List)}. All distinct realizations
+     * are scored at once so that each realization is scored and each n-gram
+     * is looked up only once.
+     * @param candidates the combinations
+     * @param order the determined order
+     * @param newEdge the edge corresponding to the child currently considered
+     */
+    private void scoreCombinations(
+        List<Combination> candidates, List<Edge> order, Edge newEdge) {
+        boolean endBounded = order.indexOf(newEdge) == order.size() - 1;
+        Map<String, Integer> indices = new LinkedHashMap<>();
+        for (Combination c : candidates) {
+            indices.putIfAbsent(c.getValue(), indices.size());
+        }
+        double[] lmScores =
+            scoreSents(new ArrayList<>(indices.keySet()), true, endBounded);
+        for (Combination c : candidates) {
+            c.setScoreAndLmFreeScore(c.getLmFreeScore()
+                    + lmWeight * lmScores[indices.get(c.getValue())],
+                c.getLmFreeScore());
+        }
+    }
+
+    /**
+     * Computes the n-best combinations of the partial transition functions for
+     * all previous vertices and those for the current vertex using cube
+     * pruning (Chiang, 2007). As both lists are sorted by score, pairs of
+     * partial transition functions are visited best-first: starting with the
+     * pair of both best entries, the successors of each visited pair are
+     * combined, scored (including their language model score) and put into a
+     * priority queue; the pair with the best combination is visited next.
+     * This is repeated until either {@link
+     * SecondStageProcessor#cubePruningPopLimit} pairs have been visited or the
+     * result list is full and no remaining pair can improve it.
+     * @param amr the AMR graph
+     * @param order the determined order
+     * @param currentSentence the predictions for the generated sentence so far
+     * @param newWord the realization of the child currently considered
+     * @param newEdge the edge corresponding to the child currently considered
+     * @param instancePred the prediction for the realization of the instance
+     * edge, i.e. the parent node
+     * @param afterInsPredictions the INSERT_BETWEEN transitions after the
+     * realization of the current vertex
+     * @param ret the list to which the n-best combinations are added
+     */
+    private void combineLazily(Amr amr, List<Edge> order,
+        PrunedList currentSentence, PrunedList newWord, Edge newEdge,
+        Prediction instancePred, List<Prediction> afterInsPredictions,
+        PrunedList ret) {
+        if (currentSentence.isEmpty() || newWord.isEmpty())
+            return;
+
+        // each entry of the queue consists of the indices of both partial
+        // transition functions and the list of their scored combinations
+        Map<List<Integer>, List<Combination>> combinations = new HashMap<>();
+        PriorityQueue<List<Integer>> queue = new PriorityQueue<>(
+            Comparator.comparingDouble(
+                pair -> -getBestScore(combinations.get(pair))));
+
+        List<Integer> first = Arrays.asList(0, 0);
+        combinations.put(first,
+            combine(amr, order, currentSentence.get(0), newWord.get(0),
+                newEdge, instancePred, afterInsPredictions));
+        queue.add(first);
+
+        for (int pops = 0; pops < cubePruningPopLimit && !queue.isEmpty();
+             pops++) {
+            List<Integer> pair = queue.peek();
+            List<Combination> best = combinations.get(pair);
+            if (ret.size() >= maxNrOfComposedPredictions
+                && getBestScore(best) <= ret.get(ret.size() - 1).getScore())
+                break;
+            queue.poll();
+            ret.addAll(best);
+
+            List<List<Integer>> successors = Arrays.asList(
+                Arrays.asList(pair.get(0) + 1, pair.get(1)),
+                Arrays.asList(pair.get(0), pair.get(1) + 1));
+            for (List<Integer> successor : successors) {
+                if (successor.get(0) >= currentSentence.size()
+                    || successor.get(1) >= newWord.size()
+                    || combinations.containsKey(successor))
+                    continue;
+                combinations.put(successor,
+                    combine(amr, order, currentSentence.get(successor.get(0)),
+                        newWord.get(successor.get(1)), newEdge, instancePred,
+                        afterInsPredictions));
+                queue.add(successor);
             }
         }
+    }
 
-        return ret;
+    /**
+     * Computes and scores all combinations of two partial transition
+     * functions, see {@link SecondStageProcessor#addCombinations(Amr, List,
+     * Prediction, Prediction, Edge, Prediction, List, List)}. In contrast to
+     * exhaustive enumeration, the INSERT_BETWEEN transitions after the
+     * realization of the current vertex are determined independently for
+     * each pair.
+     * @return the scored combinations
+     */
+    private List<Combination> combine(Amr amr, List<Edge> order,
+        Prediction p1, Prediction p2, Edge newEdge, Prediction instancePred,
+        List<Prediction> afterInsPredictions) {
+        List<Combination> candidates = new ArrayList<>();
+        addCombinations(amr, order, p1, p2, newEdge, instancePred,
+            afterInsPredictions, candidates);
+        scoreCombinations(candidates, order, newEdge);
+        return candidates;
+    }
+
+    private static double getBestScore(
+        List<? extends Prediction> predictions) {
+        double best = Double.NEGATIVE_INFINITY;
+        for (Prediction p : predictions) {
+            best = Math.max(best, p.getScore());
+        }
+        return best;
     }
 
     /**
@@ -1018,28 +1301,58 @@ public class SecondStageProcessor {
     }
 
     /**
-     * Helper function to score a sentence using a language model.
-     * @param sent the space-separated sentence
+     * Helper function to score several sentences at once using a language
+     * model. All n-grams required for scoring the sentences are collected
+     * first; each n-gram whose score is not yet known is then looked up exactly
+     * once using {@link LanguageModel#getLogProbs(List)}.
+     * @param sents the space-separated sentences
      * @param startBounded whether "start of sentence"-tags should be added at
-     * the start of the sentence
+     * the start of each sentence
      * @param endBounded whether "end of sentence"-tags should be added at the
-     * end of the sentence
-     * @return the language model score assigned to the sentence
+     * end of each sentence
+     * @return the language model scores assigned to the sentences
      */
-    private double scoreSent(
-        String sent, boolean startBounded, boolean endBounded) {
-        List<String> sentence = toArray(sent);
-
-        int articleCount = 0, remainingCount = 0;
-        for (String word : sentence) {
-            if (WordLists.articles.contains(word))
-                articleCount++;
-            else
-                remainingCount++;
+    private double[] scoreSents(
+        List<String> sents, boolean startBounded, boolean endBounded) {
+        List<List<String>> sentences = new ArrayList<>();
+        List<List<List<String>>> sentenceNGrams = new ArrayList<>();
+        Set<List<String>> lookups = new LinkedHashSet<>();
+        for (String sent : sents) {
+            List<String> sentence = toArray(sent);
+            List<List<String>> ngrams = getNGrams(
+                sentence, languageModel, startBounded, endBounded);
+            for (List<String> ngram : ngrams) {
+                if (!nGramScores.containsKey(ngram))
+                    lookups.add(ngram);
+            }
+            sentences.add(sentence);
+            sentenceNGrams.add(ngrams);
+        }
+
+        List<List<String>> lookupList = new ArrayList<>(lookups);
+        float[] logProbs = languageModel.getLogProbs(lookupList);
+        for (int i = 0; i < logProbs.length; i++) {
+            nGramScores.put(lookupList.get(i), logProbs[i]);
+        }
+
+        double[] sentenceScores = new double[sents.size()];
+        for (int i = 0; i < sentenceScores.length; i++) {
+            int articleCount = 0, remainingCount = 0;
+            for (String word : sentences.get(i)) {
+                if (WordLists.articles.contains(word))
+                    articleCount++;
+                else
+                    remainingCount++;
+            }
+            double quotient = remainingCount + articleCount * articleLmWeight;
+
+            float sentenceScore = 0.0f;
+            for (List<String> ngram : sentenceNGrams.get(i)) {
+                sentenceScore += nGramScores.get(ngram);
+            }
+            sentenceScores[i] = sentenceScore / quotient;
         }
-        double quotient = remainingCount + articleCount * articleLmWeight;
-        return scoreSentence(sentence, languageModel, startBounded, endBounded)
-            / quotient;
+        return sentenceScores;
     }
 
     /**
@@ -1087,6 +1400,46 @@ public class SecondStageProcessor {
         return false;
     }
 
+    /**
+     * Clears the scores stored for already observed n-grams. This function must
+     * be called whenever the language model is replaced as the stored scores
+     * are not associated with any specific language model.
+     */
+    public static void clearNGramScores() {
+        nGramScores.clear();
+    }
+
+    /**
+     * Enables or disables the reuse of n-best partial transition functions
+     * for identical subtrees of different AMR graphs, see {@link
+     * SubtreeCache}.
+     * @param capacity the maximum number of subtrees to store or 0 if no
+     * subtrees should be stored
+     */
+    public void setSubtreeCacheCapacity(int capacity) {
+        subtreeCache = capacity > 0 ? new SubtreeCache(capacity) : null;
+    }
+
+    /**
+     * Removes all subtrees from the subtree cache. This function must be
+     * called whenever the hyperparameters or any of the models used by this
+     * processor are changed as the cached results are not associated with
+     * specific hyperparameters.
+     */
+    public void clearSubtreeCache() {
+        if (subtreeCache != null) {
+            subtreeCache.clear();
+        }
+    }
+
+    /**
+     * @return a short description of the subtree cache's current size and
+     * number of hits and misses or {@code null} if no subtree cache is used
+     */
+    public String getSubtreeCacheStatistics() {
+        return subtreeCache == null ? null : subtreeCache.toString();
+    }
+
     /**
      * Helper function to score a sentence using a language model.
      * @param sentence the sentence, represented as a list of words
@@ -1098,34 +1451,47 @@ public class SecondStageProcessor {
      * @return the language model score assigned to the sentence
      */
     static float scoreSentence(final List<String> sentence,
-        final ArrayEncodedNgramLanguageModel<String> lm, boolean startBounds,
-        boolean endBounds) {
-        final List<String> sentenceWithBounds =
-            new BoundedList<>(sentence, lm.getWordIndexer().getStartSymbol(),
-                lm.getWordIndexer().getEndSymbol());
+        final LanguageModel lm, boolean startBounds, boolean endBounds) {
+        float sentenceScore = 0.0f;
+        for (List<String> ngram :
+            getNGrams(sentence, lm, startBounds, endBounds)) {
+            if (!nGramScores.containsKey(ngram)) {
+                nGramScores.put(ngram, lm.getLogProb(ngram));
+            }
+            sentenceScore += nGramScores.get(ngram);
+        }
+        return sentenceScore;
+    }
+
+    /**
+     * Computes all n-grams whose scores are required to score a sentence using
+     * a language model, see {@link SecondStageProcessor#scoreSentence(List,
+     * LanguageModel, boolean, boolean)}.
+     * @param sentence the sentence, represented as a list of words
+     * @param lm the language model to be used
+     * @param startBounds whether "start of sentence"-tags should be added at
+     * the start of the sentence
+     * @param endBounds whether "end of sentence"-tags should be added at the
+     * end of the sentence
+     * @return the list of n-grams
+     */
+    private static List<List<String>> getNGrams(final List<String> sentence,
+        final LanguageModel lm, boolean startBounds, boolean endBounds) {
+        final List<String> sentenceWithBounds = new BoundedList<>(
+            sentence, lm.getStartSymbol(), lm.getEndSymbol());
 
         final int lmOrder = lm.getLmOrder();
-        float sentenceScore = 0.0f;
+        List<List<String>> ngrams = new ArrayList<>();
         if (startBounds) {
             for (int i = 1;
                  i < lmOrder - 1 && i <= sentenceWithBounds.size() + 1; ++i) {
-                final List<String> ngram = sentenceWithBounds.subList(-1, i);
-
-                if (!nGramScores.containsKey(ngram)) {
-                    nGramScores.put(ngram, lm.getLogProb(ngram));
-                }
-                sentenceScore += nGramScores.get(ngram);
+                ngrams.add(sentenceWithBounds.subList(-1, i));
             }
         }
         for (int i = lmOrder - 1;
              i < sentenceWithBounds.size() + (endBounds ? 2 : 1); ++i) {
-            final List<String> ngram =
-                sentenceWithBounds.subList(i - lmOrder, i);
-            if (!nGramScores.containsKey(ngram)) {
-                nGramScores.put(ngram, lm.getLogProb(ngram));
-            }
-            sentenceScore += nGramScores.get(ngram);
+            ngrams.add(sentenceWithBounds.subList(i - lmOrder, i));
         }
-        return sentenceScore;
+        return ngrams;
     }
 }
@@ -0,0 +1,526 @@
+package gen;
+
+import dag.Edge;
+import dag.Vertex;
+import misc.BoundedCache;
+import misc.PrunedList;
+import ml.Prediction;
+
+import java.util.*;
+
+/**
+ * A cache storing the n-best partial transition functions computed by {@link
+ * SecondStageProcessor} for subtrees of AMR graphs, so that they can be reused
+ * for identical subtrees of other AMR graphs. Subtrees are identified by their
+ * signature, a string representation of all information used to compute these
+ * partial transition functions: the concepts, names, modes and assigned
+ * syntactic annotations of all vertices within the subtree, the labels and
+ * order of its edges and the context of its root, i.e. the labels, concepts
+ * and POS tags of its ancestors and siblings as well as the punctuation
+ * flags. Subtrees containing links or vertices referred to by links have no
+ * signature as their realizations depend on other parts of the graph. <br/>
+ * Note that the context is intentionally not restricted to the parent and the
+ * grandparent: the DENOM model is evaluated for every vertex of the subtree
+ * and its features contain the incoming labels and POS tags of all ancestors
+ * and the distance to the root (see {@link
+ * ml.DenomMaxentModel#toDatumList}). Subtrees are therefore only reused if
+ * they occur at the end of identically labeled paths from the root, which is
+ * mostly the case for shallow subtrees such as names, dates and quantities
+ * attached to the roots of similar AMR graphs.
+ */
+class SubtreeCache {
+    // characters used to separate the components of a signature
+    private static final char FIELD_SEPARATOR = '\u001f';
+    private static final char OPEN = '\u0002';
+    private static final char CLOSE = '\u0003';
+
+    private final BoundedCache<String, Entry> cache;
+
+    /**
+     * A cached result: the POS tags and n-best realizations that have been
+     * assigned to each vertex of the subtree for which it was computed, in the
+     * order in which the vertices are visited when computing the signature.
+     * Entries do not refer to the vertices and edges of this subtree, so that
+     * they do not keep the AMR graph containing it in memory; instead, each
+     * vertex and edge is represented by a reference (see {@link Encoder}).
+     */
+    private static class Entry {
+        // the number of vertices and edges of the subtree
+        int nrOfVertices;
+        int nrOfEdges;
+        final List<String> pos = new ArrayList<>();
+        final List<List<CachedPrediction>> realizations = new ArrayList<>();
+        // the vertices and edges created by INSERT_CHILD transitions, which
+        // are not part of the subtree
+        final List<CachedVertex> insertedVertices = new ArrayList<>();
+        final List<CachedEdge> insertedEdges = new ArrayList<>();
+    }
+
+    /**
+     * A vertex created by an INSERT_CHILD transition.
+     */
+    private static class CachedVertex {
+        String instance;
+        String pos;
+        // the n-best realizations of the vertex or null if it has none
+        List<CachedPrediction> realizations;
+    }
+
+    /**
+     * An edge created by an INSERT_CHILD transition.
+     */
+    private static class CachedEdge {
+        int from;
+        int to;
+        String label;
+        boolean instanceEdge;
+        boolean inserted;
+    }
+
+    /**
+     * A prediction along with its partial transition function, whose maps are
+     * stored as parallel arrays of references and values. The maps are stored
+     * in the order given by {@link SubtreeCache#getStringMaps} and {@link
+     * SubtreeCache#getEdgeMaps}.
+     */
+    private static class CachedPrediction {
+        String value;
+        double score;
+        double lmFreeScore;
+        int[][] stringMapKeys;
+        String[][] stringMapValues;
+        int[][] edgeMapKeys;
+        int[][][] edgeMapValues;
+    }
+
+    /**
+     * Creates a new subtree cache.
+     * @param capacity the maximum number of subtrees to store
+     */
+    SubtreeCache(int capacity) {
+        cache = new BoundedCache<>(capacity);
+    }
+
+    /**
+     * Computes the signature of the subtree induced by a vertex.
+     * @param v the root of the subtree
+     * @param applyPunctuation whether punctuation is applied to the subtree
+     * @param isLast whether the subtree is the last sentence of a
+     * multi-sentence AMR graph
+     * @param linkedVertices the set of all vertices of the AMR graph to which
+     * a link refers
+     * @return the signature or {@code null} if results for this subtree must
+     * not be cached
+     */
+    String getSignature(Vertex v, boolean applyPunctuation, boolean isLast,
+        Set<Vertex> linkedVertices) {
+        StringBuilder signature = new StringBuilder();
+        signature.append(applyPunctuation).append(isLast);
+        appendContext(v, signature);
+        Set<Vertex> visited =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+        if (!appendSubtree(v, signature, linkedVertices, visited))
+            return null;
+        return signature.toString();
+    }
+
+    /**
+     * Appends the context of a subtree's root to its signature. This consists
+     * of exactly the information about the root's ancestors and siblings read
+     * while computing the partial transition functions of the subtree:
+     * <ul>
+     * <li>the incoming labels and POS tags of all ancestors (DENOM),</li>
+     * <li>the concepts of the parent and the grandparent (DENOM),</li>
+     * <li>the mode of the parent (DENOM, default realizations and
+     * INSERT_BETWEEN transitions after the realization of the root),</li>
+     * <li>the concepts and modes of all ancestors up to the first one that is
+     * not a conjunction (INSERT_CHILD) and</li>
+     * <li>the labels, concepts and POS tags of all siblings (DENOM).</li>
+     * </ul>
+     */
+    private static void appendContext(Vertex v, StringBuilder signature) {
+        boolean nonConjunctionFound = false;
+        int distance = 0;
+        Vertex current = v;
+        while (!current.getIncomingEdges().isEmpty()) {
+            Edge in = current.getIncomingEdges().get(0);
+            Vertex parent = in.getFrom();
+            signature.append(OPEN).append(in.getLabel());
+            appendField(signature, getPosOrProp(parent));
+            if (distance < 2 || !nonConjunctionFound) {
+                appendField(signature, parent.getInstance());
+            }
+            if (distance == 0 || !nonConjunctionFound) {
+                appendField(signature, parent.mode);
+            }
+            nonConjunctionFound |= !"CC".equals(parent.getPos());
+            if (distance == 0) {
+                for (Edge sibling : parent.getOutgoingEdges()) {
+                    if (sibling == in || sibling.isInstanceEdge())
+                        continue;
+                    appendField(signature, sibling.getLabel());
+                    appendField(signature, sibling.getTo().getInstance());
+                    appendField(signature, getPosOrProp(sibling.getTo()));
+                }
+            }
+            signature.append(CLOSE);
+            current = parent;
+            distance++;
+        }
+    }
+
+    /**
+     * Appends a representation of the subtree induced by a vertex to a
+     * signature.
+     * @return false if results for the subtree must not be cached
+     */
+    private static boolean appendSubtree(Vertex v, StringBuilder signature,
+        Set<Vertex> linkedVertices, Set<Vertex> visited) {
+        if (v.isLink() || linkedVertices.contains(v) || !visited.add(v)
+            || v.getIncomingEdges().size() > 1)
+            return false;
+
+        signature.append(OPEN).append(v.getInstance());
+        appendField(signature, v.name);
+        appendField(signature, v.mode);
+        appendField(signature, v.getPos());
+        appendField(signature, String.valueOf(v.isDeleted()));
+
+        List<String> keys = new ArrayList<>(v.predictions.keySet());
+        keys.remove("realization");
+        Collections.sort(keys);
+        for (String key : keys) {
+            appendField(signature, key);
+            for (Prediction p : v.predictions.get(key)) {
+                appendField(signature, p.getValue() + "=" + p.getScore());
+            }
+        }
+
+        for (Edge e : v.getOutgoingEdges()) {
+            appendField(signature, e.getLabel());
+            signature.append(e.isInstanceEdge()).append(e.isInserted());
+            if (e.getTo() != Vertex.EMPTY_VERTEX
+                && !appendSubtree(
+                       e.getTo(), signature, linkedVertices, visited))
+                return false;
+        }
+        signature.append(CLOSE);
+        return true;
+    }
+
+    private static void appendField(StringBuilder signature, String field) {
+        signature.append(FIELD_SEPARATOR).append(field);
+    }
+
+    private static String getPosOrProp(Vertex v) {
+        return v.isPropbankEntry() ? ":PROP" : v.getPos();
+    }
+
+    /**
+     * Looks up the n-best partial transition functions for a subtree. If they
+     * are found, they are mapped onto the vertices and edges of the given
+     * subtree; furthermore, the POS tag and the realizations of each vertex
+     * within the subtree are set just as if they had been computed by {@link
+     * SecondStageProcessor}.
+     * @param signature the signature of the subtree
+     * @param v the root of the subtree
+     * @return the n-best partial transition functions or {@code null} if they
+     * are not cached
+     */
+    PrunedList get(String signature, Vertex v) {
+        Entry entry = cache.get(signature);
+        if (entry == null)
+            return null;
+
+        List<Vertex> vertices = new ArrayList<>();
+        List<Edge> edges = new ArrayList<>();
+        collect(v, vertices, edges);
+        if (vertices.size() != entry.nrOfVertices
+            || edges.size() != entry.nrOfEdges) {
+            throw new AssertionError(
+                "subtrees with identical signatures differ in size");
+        }
+
+        Decoder decoder = new Decoder(entry, vertices, edges);
+        for (int i = 0; i < vertices.size(); i++) {
+            vertices.get(i).setPos(entry.pos.get(i));
+            vertices.get(i).predictions.put("realization",
+                decode(entry.realizations.get(i), decoder));
+        }
+        return (PrunedList) vertices.get(0).predictions.get("realization");
+    }
+
+    /**
+     * Stores the n-best partial transition functions that have been computed
+     * for a subtree. To this end, the POS tags and realizations assigned to all
+     * of its vertices are encoded relative to the subtree.
+     * @param signature the signature of the subtree
+     * @param v the root of the subtree
+     */
+    void put(String signature, Vertex v) {
+        List<Vertex> vertices = new ArrayList<>();
+        List<Edge> edges = new ArrayList<>();
+        collect(v, vertices, edges);
+        for (Vertex vertex : vertices) {
+            if (!vertex.predictions.containsKey("realization"))
+                return;
+        }
+
+        Entry entry = new Entry();
+        Encoder encoder = new Encoder(entry, vertices, edges);
+        for (Vertex vertex : vertices) {
+            entry.pos.add(vertex.getPos());
+            entry.realizations.add(
+                encode(vertex.predictions.get("realization"), encoder));
+        }
+        cache.put(signature, entry);
+    }
+
+    /**
+     * Collects all vertices and edges of a subtree in the order in which they
+     * are visited by {@link SubtreeCache#appendSubtree}.
+     */
+    private static void collect(
+        Vertex v, List<Vertex> vertices, List<Edge> edges) {
+        vertices.add(v);
+        for (Edge e : v.getOutgoingEdges()) {
+            edges.add(e);
+            if (e.getTo() != Vertex.EMPTY_VERTEX) {
+                collect(e.getTo(), vertices, edges);
+            }
+        }
+    }
+
+    void clear() {
+        cache.clear();
+    }
+
+    public String toString() {
+        return cache.toString();
+    }
+
+    /**
+     * Assigns references to the vertices and edges of a subtree while it is
+     * stored. The i-th vertex of the subtree (see {@link
+     * SubtreeCache#collect}) is referred to by i and the i-th vertex created
+     * by an INSERT_CHILD transition by the number of vertices of the subtree
+     * plus i; {@link Vertex#EMPTY_VERTEX} is referred to by -1. Edges are
+     * referred to in the same way.
+     */
+    private static class Encoder {
+        final Entry entry;
+        final Map<Vertex, Integer> vertices = new IdentityHashMap<>();
+        final Map<Edge, Integer> edges = new IdentityHashMap<>();
+
+        Encoder(Entry entry, List<Vertex> subtreeVertices,
+            List<Edge> subtreeEdges) {
+            this.entry = entry;
+            entry.nrOfVertices = subtreeVertices.size();
+            entry.nrOfEdges = subtreeEdges.size();
+            for (int i = 0; i < subtreeVertices.size(); i++) {
+                vertices.put(subtreeVertices.get(i), i);
+            }
+            for (int i = 0; i < subtreeEdges.size(); i++) {
+                edges.put(subtreeEdges.get(i), i);
+            }
+        }
+
+        int get(Vertex v) {
+            if (v == Vertex.EMPTY_VERTEX)
+                return -1;
+            Integer ref = vertices.get(v);
+            if (ref == null) {
+                CachedVertex cached = new CachedVertex();
+                cached.instance = v.getInstance();
+                cached.pos = v.getPos();
+                ref = entry.nrOfVertices + entry.insertedVertices.size();
+                entry.insertedVertices.add(cached);
+                vertices.put(v, ref);
+                if (v.predictions.containsKey("realization")) {
+                    cached.realizations =
+                        encode(v.predictions.get("realization"), this);
+                }
+            }
+            return ref;
+        }
+
+        int get(Edge e) {
+            Integer ref = edges.get(e);
+            if (ref == null) {
+                CachedEdge cached = new CachedEdge();
+                ref = entry.nrOfEdges + entry.insertedEdges.size();
+                entry.insertedEdges.add(cached);
+                edges.put(e, ref);
+                cached.from = get(e.getFrom());
+                cached.to = get(e.getTo());
+                cached.label = e.getLabel();
+                cached.instanceEdge = e.instanceEdge;
+                cached.inserted = e.inserted;
+            }
+            return ref;
+        }
+    }
+
+    /**
+     * Resolves the references assigned by an {@link Encoder} for another
+     * subtree with the same signature. Vertices and edges created by
+     * INSERT_CHILD transitions are created anew when they are first
+     * encountered.
+     */
+    private static class Decoder {
+        final Entry entry;
+        final Vertex[] vertices;
+        final Edge[] edges;
+
+        Decoder(Entry entry, List<Vertex> subtreeVertices,
+            List<Edge> subtreeEdges) {
+            this.entry = entry;
+            vertices = new Vertex[entry.nrOfVertices
+                + entry.insertedVertices.size()];
+            edges = new Edge[entry.nrOfEdges + entry.insertedEdges.size()];
+            subtreeVertices.toArray(vertices);
+            subtreeEdges.toArray(edges);
+        }
+
+        Vertex getVertex(int ref) {
+            if (ref < 0)
+                return Vertex.EMPTY_VERTEX;
+            Vertex v = vertices[ref];
+            if (v == null) {
+                CachedVertex cached =
+                    entry.insertedVertices.get(ref - entry.nrOfVertices);
+                v = new Vertex(cached.instance);
+                v.setPos(cached.pos);
+                vertices[ref] = v;
+                if (cached.realizations != null) {
+                    v.predictions.put(
+                        "realization", decode(cached.realizations, this));
+                }
+            }
+            return v;
+        }
+
+        Edge getEdge(int ref) {
+            Edge e = edges[ref];
+            if (e == null) {
+                CachedEdge cached =
+                    entry.insertedEdges.get(ref - entry.nrOfEdges);
+                e = new Edge(getVertex(cached.from), getVertex(cached.to),
+                    cached.label, false);
+                e.instanceEdge = cached.instanceEdge;
+                e.inserted = cached.inserted;
+                edges[ref] = e;
+            }
+            return e;
+        }
+    }
+
+    /**
+     * @return the maps of a partial transition function that assign strings to
+     * vertices, in a fixed order
+     */
+    private static List<Map<Vertex, String>> getStringMaps(
+        PartialTransitionFunction ptf) {
+        return Arrays.asList(ptf.pos, ptf.number, ptf.tense, ptf.voice,
+            ptf.realization, ptf.denominator, ptf.beforeIns, ptf.afterIns,
+            ptf.punctuation);
+    }
+
+    /**
+     * @return the maps of a partial transition function that assign lists of
+     * edges to vertices, in a fixed order
+     */
+    private static List<Map<Vertex, List<Edge>>> getEdgeMaps(
+        PartialTransitionFunction ptf) {
+        return Arrays.asList(ptf.reordering, ptf.childInsertions);
+    }
+
+    private static List<CachedPrediction> encode(
+        List<Prediction> predictions, Encoder encoder) {
+        List<CachedPrediction> ret = new ArrayList<>(predictions.size());
+        for (Prediction p : predictions) {
+            ret.add(encode(p, encoder));
+        }
+        return ret;
+    }
+
+    private static CachedPrediction encode(Prediction p, Encoder encoder) {
+        CachedPrediction ret = new CachedPrediction();
+        ret.value = p.getValue();
+        ret.score = p.getScore();
+        ret.lmFreeScore = p.getLmFreeScore();
+
+        List<Map<Vertex, String>> stringMaps =
+            getStringMaps(p.partialTransitionFunction);
+        ret.stringMapKeys = new int[stringMaps.size()][];
+        ret.stringMapValues = new String[stringMaps.size()][];
+        for (int m = 0; m < stringMaps.size(); m++) {
+            Map<Vertex, String> map = stringMaps.get(m);
+            ret.stringMapKeys[m] = new int[map.size()];
+            ret.stringMapValues[m] = new String[map.size()];
+            int i = 0;
+            for (Map.Entry<Vertex, String> entry : map.entrySet()) {
+                ret.stringMapKeys[m][i] = encoder.get(entry.getKey());
+                ret.stringMapValues[m][i] = entry.getValue();
+                i++;
+            }
+        }
+
+        List<Map<Vertex, List<Edge>>> edgeMaps =
+            getEdgeMaps(p.partialTransitionFunction);
+        ret.edgeMapKeys = new int[edgeMaps.size()][];
+        ret.edgeMapValues = new int[edgeMaps.size()][][];
+        for (int m = 0; m < edgeMaps.size(); m++) {
+            Map<Vertex, List<Edge>> map = edgeMaps.get(m);
+            ret.edgeMapKeys[m] = new int[map.size()];
+            ret.edgeMapValues[m] = new int[map.size()][];
+            int i = 0;
+            for (Map.Entry<Vertex, List<Edge>> entry : map.entrySet()) {
+                ret.edgeMapKeys[m][i] = encoder.get(entry.getKey());
+                int[] edges = new int[entry.getValue().size()];
+                for (int j = 0; j < edges.length; j++) {
+                    edges[j] = encoder.get(entry.getValue().get(j));
+                }
+                ret.edgeMapValues[m][i] = edges;
+                i++;
+            }
+        }
+        return ret;
+    }
+
+    private static PrunedList decode(
+        List<CachedPrediction> predictions, Decoder decoder) {
+        PrunedList ret = new PrunedList(Math.max(1, predictions.size()));
+        for (CachedPrediction p : predictions) {
+            ret.add(decode(p, decoder));
+        }
+        return ret;
+    }
+
+    private static Prediction decode(CachedPrediction p, Decoder decoder) {
+        Prediction ret = new Prediction(p.value, p.score, p.lmFreeScore);
+
+        List<Map<Vertex, String>> stringMaps =
+            getStringMaps(ret.partialTransitionFunction);
+        for (int m = 0; m < stringMaps.size(); m++) {
+            for (int i = 0; i < p.stringMapKeys[m].length; i++) {
+                stringMaps.get(m).put(decoder.getVertex(p.stringMapKeys[m][i]),
+                    p.stringMapValues[m][i]);
+            }
+        }
+
+        List<Map<Vertex, List<Edge>>> edgeMaps =
+            getEdgeMaps(ret.partialTransitionFunction);
+        for (int m = 0; m < edgeMaps.size(); m++) {
+            for (int i = 0; i < p.edgeMapKeys[m].length; i++) {
+                List<Edge> edges = new ArrayList<>();
+                for (int ref : p.edgeMapValues[m][i]) {
+                    edges.add(decoder.getEdge(ref));
+                }
+                edgeMaps.get(m).put(
+                    decoder.getVertex(p.edgeMapKeys[m][i]), edges);
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,56 @@
+package lm;
+
+import edu.berkeley.nlp.lm.ArrayEncodedNgramLanguageModel;
+import edu.berkeley.nlp.lm.io.LmReaders;
+
+import java.util.List;
+
+/**
+ * A {@link LanguageModel} backed by the <a
+ * href="https://github.com/adampauls/berkeleylm">Berkeley LM</a>. The entire
+ * model is deserialized onto the heap, so this backend requires a considerable
+ * amount of memory for large language models.
+ */
+public class BerkeleyLanguageModel implements LanguageModel {
+    private final ArrayEncodedNgramLanguageModel<String> lm;
+
+    /**
+     * Creates a new language model wrapping a Berkeley LM.
+     * @param lm the Berkeley LM to wrap
+     */
+    public BerkeleyLanguageModel(ArrayEncodedNgramLanguageModel<String> lm) {
+        this.lm = lm;
+    }
+
+    /**
+     * Loads a Berkeley LM stored in binary format.
+     * @param filename the file in which the language model is stored
+     * @return the loaded language model
+     */
+    @SuppressWarnings("unchecked")
+    public static BerkeleyLanguageModel fromBinary(String filename) {
+        return new BerkeleyLanguageModel(
+            (ArrayEncodedNgramLanguageModel<String>) LmReaders.readLmBinary(
+                filename));
+    }
+
+    @Override
+    public float getLogProb(List<String> ngram) {
+        return lm.getLogProb(ngram);
+    }
+
+    @Override
+    public int getLmOrder() {
+        return lm.getLmOrder();
+    }
+
+    @Override
+    public String getStartSymbol() {
+        return lm.getWordIndexer().getStartSymbol();
+    }
+
+    @Override
+    public String getEndSymbol() {
+        return lm.getWordIndexer().getEndSymbol();
+    }
+}
@@ -0,0 +1,137 @@
+package lm;
+
+import com.github.jbaiter.kenlm.Model;
+import com.github.jbaiter.kenlm.State;
+import misc.Debugger;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link LanguageModel} backed by <a
+ * href="https://kheafield.com/code/kenlm/">KenLM</a>. KenLM models in binary
+ * (probing or trie) format are memory-mapped by KenLM itself, so this backend
+ * requires very little heap space. N-grams are scored using KenLM's
+ * state-based API: starting from either the "start of sentence" or the empty
+ * context, the state is advanced word by word and the score of the last word
+ * is returned. When several n-grams are scored at once, each n-gram that
+ * continues the previous one (as is the case for the n-grams of a sentence
+ * listed from left to right) is scored by advancing the state of the previous
+ * n-gram by a single word.
+ */
+public class KenLanguageModel implements LanguageModel {
+    public static final String START_SYMBOL = "<s>";
+    public static final String END_SYMBOL = "</s>";
+
+    private final Model model;
+    private final int order;
+
+    // two states per thread that are reused for scoring all n-grams, as each
+    // state is backed by native memory
+    private final ThreadLocal<State[]> states =
+        ThreadLocal.withInitial(() -> new State[] {new State(), new State()});
+
+    /**
+     * Loads a KenLM language model.
+     * @param filename the file in which the language model is stored, either
+     * in ARPA or in KenLM's binary format
+     */
+    public KenLanguageModel(String filename) throws IOException {
+        try {
+            model = new Model(Paths.get(filename));
+        } catch (Exception e) {
+            throw new IOException(
+                "unable to load KenLM language model " + filename, e);
+        }
+        order = model.getOrder();
+        Debugger.println(
+            "loaded " + order + "-gram KenLM language model " + filename);
+    }
+
+    @Override
+    public float getLogProb(List<String> ngram) {
+        return getLogProbs(Collections.singletonList(ngram))[0];
+    }
+
+    @Override
+    public float[] getLogProbs(List<List<String>> ngrams) {
+        State[] buffers = states.get();
+        State state = buffers[0];
+        State outState = buffers[1];
+
+        float[] logProbs = new float[ngrams.size()];
+        List<String> previous = null;
+        for (int n = 0; n < logProbs.length; n++) {
+            List<String> ngram = ngrams.get(n);
+            int end = ngram.size();
+            int start = Math.max(0, end - order);
+
+            if (previous != null && continues(previous, ngram)) {
+                // the current state already represents the context
+                start = end - 1;
+            } else if (start < end && ngram.get(start).equals(START_SYMBOL)) {
+                // a context starting with (possibly several) "start of
+                // sentence" symbols is represented by KenLM's begin sentence
+                // state
+                model.beginSentenceWrite(state);
+                while (start < end - 1
+                    && ngram.get(start).equals(START_SYMBOL)) {
+                    start++;
+                }
+            } else {
+                model.nullContextWrite(state);
+            }
+
+            for (int i = start; i < end; i++) {
+                logProbs[n] = model.baseScore(state, ngram.get(i), outState);
+                State swap = state;
+                state = outState;
+                outState = swap;
+            }
+            previous = ngram;
+        }
+        return logProbs;
+    }
+
+    /**
+     * Checks whether the state obtained after scoring an n-gram is the
+     * context required for scoring another n-gram, i.e. whether the context
+     * of the latter consists of exactly the words of the former that are
+     * relevant with respect to the order of the language model.
+     * @param previous the n-gram scored last
+     * @param ngram the n-gram to score
+     * @return true iff the last word of {@code ngram} can be scored directly
+     * from the state obtained after scoring {@code previous}
+     */
+    private boolean continues(List<String> previous, List<String> ngram) {
+        int contextLength = Math.min(order - 1, ngram.size() - 1);
+        if (previous.isEmpty()
+            || Math.min(order - 1, previous.size()) != contextLength
+            || previous.get(previous.size() - 1).equals(START_SYMBOL))
+            return false;
+
+        for (int i = 1; i <= contextLength; i++) {
+            if (!previous.get(previous.size() - i)
+                     .equals(ngram.get(ngram.size() - 1 - i)))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int getLmOrder() {
+        return order;
+    }
+
+    @Override
+    public String getStartSymbol() {
+        return START_SYMBOL;
+    }
+
+    @Override
+    public String getEndSymbol() {
+        return END_SYMBOL;
+    }
+}
@@ -0,0 +1,56 @@
+package lm;
+
+import java.util.List;
+
+/**
+ * Interface for n-gram language models used by the generator to score
+ * (partial) sentences. Implementations only have to provide conditional
+ * probabilities of single n-grams; scoring entire sentences is handled by the
+ * callers.
+ */
+public interface LanguageModel {
+    /**
+     * Computes the conditional log probability of the last word of an n-gram
+     * given all previous words. If the n-gram is longer than the order of the
+     * language model, only the last {@link LanguageModel#getLmOrder()} words
+     * are taken into account.
+     * @param ngram the n-gram
+     * @return the conditional log probability of the n-gram's last word
+     */
+    float getLogProb(List<String> ngram);
+
+    /**
+     * Computes the conditional log probabilities of several n-grams at once,
+     * see {@link LanguageModel#getLogProb(List)}. Implementations may resolve
+     * the n-grams in an arbitrary order, e.g. to improve the locality of memory
+     * accesses.
+     * @param ngrams the n-grams
+     * @return the conditional log probabilities of the n-grams' last words, in
+     * the same order as the n-grams
+     */
+    default float[] getLogProbs(List<List<String>> ngrams) {
+        float[] logProbs = new float[ngrams.size()];
+        for (int i = 0; i < logProbs.length; i++) {
+            logProbs[i] = getLogProb(ngrams.get(i));
+        }
+        return logProbs;
+    }
+
+    /**
+     * @return the order of the language model, i.e. the maximum length of
+     * n-grams whose probabilities are stored explicitly
+     */
+    int getLmOrder();
+
+    /**
+     * @return the symbol used by the language model to indicate the start of a
+     * sentence
+     */
+    String getStartSymbol();
+
+    /**
+     * @return the symbol used by the language model to indicate the end of a
+     * sentence
+     */
+    String getEndSymbol();
+}
@@ -0,0 +1,892 @@
+package lm;
+
+import edu.berkeley.nlp.lm.ArrayEncodedProbBackoffLm;
+import edu.berkeley.nlp.lm.NgramLanguageModel;
+import edu.berkeley.nlp.lm.io.LmReaders;
+import edu.berkeley.nlp.lm.map.NgramMapWrapper;
+import edu.berkeley.nlp.lm.values.ProbBackoffPair;
+import misc.Debugger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A {@link LanguageModel} that serves n-gram probabilities directly from a
+ * memory-mapped file. In contrast to {@link BerkeleyLanguageModel}, only the
+ * vocabulary is loaded onto the heap, so startup is fast and the pages of the
+ * file can be shared by several generator processes through the page cache of
+ * the operating system. <br/> The file is built once from a language model in
+ * ARPA format or from a Berkeley LM stored in binary format (such as {@code
+ * res/lm.binary}) using {@link MappedLanguageModel#build(String, String, int,
+ * float)} or the {@code --build-mapped-lm} flag of the command line interface.
+ * For each
+ * order {@code n}, it contains an open addressing hash table whose keys
+ * are the word ids of an n-gram packed into as few bytes as possible and whose
+ * values are the n-gram's log probability and backoff weight. Probabilities of
+ * n-grams not contained within the tables are computed using the backoff
+ * weights, exactly as for the original ARPA model. <br/> For low-memory
+ * deployments, log probabilities and backoff weights can be quantized to 8 or
+ * 16 bits and n-grams of the highest order with a low probability can be
+ * pruned, see {@link MappedLanguageModel#build(String, String, int,
+ * float)}.
+ */
+public class MappedLanguageModel implements LanguageModel {
+    private static final int MAGIC = 0x414d4c4d;
+    private static final int VERSION = 2;
+
+    // the maximum supported order of a language model
+    private static final int MAX_ORDER = 8;
+    // the size of the header of a file, in bytes
+    private static final int HEADER_SIZE = 256;
+    // the number of slots stored within a single mapped buffer; as mapped
+    // buffers are limited to 2GB, large tables are split into several segments
+    private static final int SEGMENT_BITS = 26;
+    private static final long SLOTS_PER_SEGMENT = 1L << SEGMENT_BITS;
+    // the maximum load factor of the hash tables
+    private static final double LOAD_FACTOR = 0.6;
+
+    // the number of bits used to store unquantized values
+    public static final int NO_QUANTIZATION = 32;
+    // log probabilities below this value (such as the log probability of -99
+    // typically assigned to the "start of sentence" symbol) are not considered
+    // for determining the range of quantized values; instead, they are all
+    // mapped to a single reserved code
+    private static final float QUANTIZATION_FLOOR = -90f;
+
+    // the log probability assigned to words that are neither contained within
+    // the vocabulary nor representable by an "unknown word" symbol
+    public static final float OOV_LOG_PROB = -100f;
+
+    public static final String START_SYMBOL = "<s>";
+    public static final String END_SYMBOL = "</s>";
+    public static final String UNK_SYMBOL = "<unk>";
+
+    private final int order;
+    private final int bitsPerWord;
+    // the number of bytes used for storing keys and values, respectively
+    private final int keyBytes;
+    private final int valueBits;
+    // maps each word to its id; ids start at 1 so that a key of 0 can be used
+    // to mark empty slots
+    private final Map<String, Integer> vocabulary;
+    private final int unkId;
+
+    // tables[n-1] stores the hash table for n-grams as a list of segments
+    private final MappedByteBuffer[][] tables;
+    private final long[] tableSlots;
+    private final int[] slotSizes;
+
+    // for quantized models, probCodebooks[n-1] and backoffCodebooks[n-1] map
+    // the codes stored for n-grams to the actual values
+    private final float[][] probCodebooks;
+    private final float[][] backoffCodebooks;
+
+    /**
+     * Loads a memory-mapped language model from a file created by {@link
+     * MappedLanguageModel#build(String, String, int, float)}.
+     * @param filename the file in which the language model is stored
+     */
+    public MappedLanguageModel(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename))) {
+            ByteBuffer header =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException(filename
+                    + " does not contain a memory-mapped language model");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported version " + version
+                    + " of memory-mapped language model " + filename
+                    + ", please rebuild it");
+            }
+
+            order = header.getInt();
+            bitsPerWord = header.getInt();
+            int vocabularySize = header.getInt();
+            keyBytes = header.getInt();
+            valueBits = header.getInt();
+            long vocabularyOffset = header.getLong();
+            long codebookOffset = header.getLong();
+
+            tables = new MappedByteBuffer[order][];
+            tableSlots = new long[order];
+            slotSizes = new int[order];
+            for (int n = 1; n <= order; n++) {
+                long offset = header.getLong();
+                tableSlots[n - 1] = header.getLong();
+                slotSizes[n - 1] = getSlotSize(n, order, keyBytes, valueBits);
+                tables[n - 1] = mapTable(channel,
+                    FileChannel.MapMode.READ_ONLY, offset, tableSlots[n - 1],
+                    slotSizes[n - 1]);
+            }
+
+            probCodebooks = new float[order][];
+            backoffCodebooks = new float[order][];
+            if (valueBits != NO_QUANTIZATION) {
+                channel.position(codebookOffset);
+                DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel)));
+                for (int n = 1; n <= order; n++) {
+                    probCodebooks[n - 1] = readCodebook(in, valueBits);
+                    if (n < order)
+                        backoffCodebooks[n - 1] = readCodebook(in, valueBits);
+                }
+            }
+
+            vocabulary = new HashMap<>(vocabularySize * 2);
+            channel.position(vocabularyOffset);
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel)));
+            for (int id = 1; id <= vocabularySize; id++) {
+                vocabulary.put(in.readUTF(), id);
+            }
+        }
+        unkId = vocabulary.getOrDefault(UNK_SYMBOL, 0);
+
+        Debugger.println("loaded memory-mapped " + order
+            + "-gram language model " + filename + " with " + vocabulary.size()
+            + " words"
+            + (valueBits == NO_QUANTIZATION
+                      ? ""
+                      : " and values quantized to " + valueBits + " bits"));
+    }
+
+    @Override
+    public float getLogProb(List<String> ngram) {
+        int n = Math.min(ngram.size(), order);
+        int offset = ngram.size() - n;
+
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = vocabulary.getOrDefault(ngram.get(offset + i), unkId);
+        }
+        if (n == 0 || ids[n - 1] == 0)
+            return OOV_LOG_PROB;
+
+        // find the longest suffix of the n-gram that is stored explicitly
+        float logProb = 0;
+        int matched = 0;
+        long key = 0;
+        for (int length = 1; length <= n; length++) {
+            int id = ids[n - length];
+            if (id == 0)
+                break;
+            key |= (long) id << (bitsPerWord * (length - 1));
+            long slot = find(length, key);
+            if (slot < 0)
+                break;
+            logProb = getValue(length, slot, 0, probCodebooks[length - 1]);
+            matched = length;
+        }
+
+        // add the backoff weights of all contexts that are longer than the
+        // matched suffix
+        long contextKey = 0;
+        for (int length = 1; length < n; length++) {
+            int id = ids[n - 1 - length];
+            if (id == 0)
+                break;
+            contextKey |= (long) id << (bitsPerWord * (length - 1));
+            if (length < matched)
+                continue;
+            long slot = find(length, contextKey);
+            if (slot < 0)
+                break;
+            logProb += getValue(
+                length, slot, valueBits / 8, backoffCodebooks[length - 1]);
+        }
+        return logProb;
+    }
+
+    /**
+     * Computes the conditional log probabilities of several n-grams at once.
+     * The n-grams are resolved in the order of the slots at which they would
+     * be stored within the hash tables, so that consecutive lookups access
+     * nearby pages of the memory-mapped file.
+     * @param ngrams the n-grams
+     * @return the conditional log probabilities of the n-grams' last words, in
+     * the same order as the n-grams
+     */
+    @Override
+    public float[] getLogProbs(List<List<String>> ngrams) {
+        long[] positions = new long[ngrams.size()];
+        List<Integer> indices = new ArrayList<>(ngrams.size());
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = getHomePosition(ngrams.get(i));
+            indices.add(i);
+        }
+        indices.sort((i, j) -> Long.compare(positions[i], positions[j]));
+
+        float[] logProbs = new float[ngrams.size()];
+        for (int i : indices) {
+            logProbs[i] = getLogProb(ngrams.get(i));
+        }
+        return logProbs;
+    }
+
+    /**
+     * Computes the position of the slot at which the longest suffix of an
+     * n-gram consisting only of known words would be stored if no collisions
+     * occurred. Positions are ordered by the length of the suffix first and by
+     * the slot second.
+     * @param ngram the n-gram
+     * @return the position of the slot
+     */
+    private long getHomePosition(List<String> ngram) {
+        int n = Math.min(ngram.size(), order);
+        long key = 0;
+        int length = 0;
+        while (length < n) {
+            int id = vocabulary.getOrDefault(
+                ngram.get(ngram.size() - 1 - length), unkId);
+            if (id == 0)
+                break;
+            key |= (long) id << (bitsPerWord * length);
+            length++;
+        }
+        if (length == 0)
+            return 0;
+        return ((long) length << 56)
+            | (hash(key) & (tableSlots[length - 1] - 1));
+    }
+
+    @Override
+    public int getLmOrder() {
+        return order;
+    }
+
+    @Override
+    public String getStartSymbol() {
+        return START_SYMBOL;
+    }
+
+    @Override
+    public String getEndSymbol() {
+        return END_SYMBOL;
+    }
+
+    /**
+     * Looks up an n-gram in the corresponding hash table.
+     * @param length the length of the n-gram
+     * @param key the packed word ids of the n-gram
+     * @return the slot at which the n-gram is stored or -1 if it is not
+     * contained within the table
+     */
+    private long find(int length, long key) {
+        MappedByteBuffer[] table = tables[length - 1];
+        int slotSize = slotSizes[length - 1];
+        long mask = tableSlots[length - 1] - 1;
+        for (long slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            long storedKey = readKey(table[(int) (slot >>> SEGMENT_BITS)],
+                (int) (slot & (SLOTS_PER_SEGMENT - 1)) * slotSize, keyBytes);
+            if (storedKey == key)
+                return slot;
+            if (storedKey == 0)
+                return -1;
+        }
+    }
+
+    /**
+     * Reads a (possibly quantized) value from a slot of a hash table.
+     * @param length the length of the n-grams stored within the table
+     * @param slot the slot
+     * @param index the index of the value within the slot, measured in bytes
+     * relative to the first value
+     * @param codebook the codebook for quantized values
+     * @return the value
+     */
+    private float getValue(int length, long slot, int index, float[] codebook) {
+        ByteBuffer segment = tables[length - 1][(int) (slot >>> SEGMENT_BITS)];
+        int position = (int) (slot & (SLOTS_PER_SEGMENT - 1))
+                * slotSizes[length - 1]
+            + keyBytes + index;
+        switch (valueBits) {
+            case 8:
+                return codebook[segment.get(position) & 0xff];
+            case 16:
+                return codebook[segment.getShort(position) & 0xffff];
+            default:
+                return segment.getFloat(position);
+        }
+    }
+
+    /**
+     * Builds a memory-mapped language model without quantization and pruning
+     * from a language model stored in ARPA format, see {@link
+     * MappedLanguageModel#build(String, String, int, float)}.
+     */
+    public static void fromArpa(String arpaFile, String outputFile)
+        throws IOException {
+        fromArpa(
+            arpaFile, outputFile, NO_QUANTIZATION, Float.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Builds a memory-mapped language model from a language model stored in
+     * ARPA format, see {@link MappedLanguageModel#build(String, String, int,
+     * float)}.
+     */
+    public static void fromArpa(String arpaFile, String outputFile,
+        int quantizationBits, float pruningThreshold) throws IOException {
+        build(new ArpaSource(arpaFile), outputFile, quantizationBits,
+            pruningThreshold);
+    }
+
+    /**
+     * Builds a memory-mapped language model from a Berkeley LM stored in
+     * binary format, see {@link MappedLanguageModel#build(String, String, int,
+     * float)}.
+     */
+    public static void fromBerkeleyBinary(String binaryFile, String outputFile,
+        int quantizationBits, float pruningThreshold) throws IOException {
+        build(new BerkeleySource(binaryFile), outputFile, quantizationBits,
+            pruningThreshold);
+    }
+
+    /**
+     * Builds a memory-mapped language model from a language model stored
+     * either in ARPA format or as a Berkeley LM in binary format (such as
+     * {@code res/lm.binary}); the format is determined by checking whether the
+     * file starts with a \data\ section. This only needs to be done once for
+     * each language model. Both formats store log probabilities and backoff
+     * weights but no n-gram counts, so n-grams can only be pruned by their
+     * probability.
+     * @param inputFile the file in which the language model is stored
+     * @param outputFile the file to which the memory-mapped language model is
+     * written
+     * @param quantizationBits the number of bits used to store log
+     * probabilities and backoff weights. This must be either 8 or 16 for
+     * quantized values or {@link MappedLanguageModel#NO_QUANTIZATION}. Values
+     * are quantized using equally sized intervals for each order; each code is
+     * mapped to the mean of all values within its interval.
+     * @param pruningThreshold n-grams of the highest order whose log
+     * probability is below this threshold are not stored within the
+     * memory-mapped language model; their probabilities are instead computed
+     * using backoff weights. As these n-grams are never the context of another
+     * n-gram, pruning them does not affect the probabilities of other n-grams.
+     * Note that this is a plain threshold criterion: neither the counts of the
+     * n-grams nor the difference to the probability obtained using backoff
+     * weights (as in entropy-based pruning) are taken into account. To
+     * disable pruning, set this to {@code Float.NEGATIVE_INFINITY}.
+     */
+    public static void build(String inputFile, String outputFile,
+        int quantizationBits, float pruningThreshold) throws IOException {
+        if (isArpa(inputFile)) {
+            fromArpa(inputFile, outputFile, quantizationBits, pruningThreshold);
+        } else {
+            fromBerkeleyBinary(
+                inputFile, outputFile, quantizationBits, pruningThreshold);
+        }
+    }
+
+    /**
+     * Builds a memory-mapped language model from the n-grams provided by a
+     * source, see {@link MappedLanguageModel#build(String, String, int,
+     * float)}.
+     */
+    private static void build(NgramSource source, String outputFile,
+        int quantizationBits, float pruningThreshold) throws IOException {
+        if (quantizationBits != 8 && quantizationBits != 16
+            && quantizationBits != NO_QUANTIZATION) {
+            throw new AssertionError("unable to quantize values to "
+                + quantizationBits + " bits, only 8 and 16 are supported");
+        }
+
+        // first pass: count the n-grams that are not pruned and determine the
+        // range of all values
+        List<Long> sourceCounts = source.getCounts();
+        int order = sourceCounts.size();
+        long[] counts = new long[order];
+        float[][] ranges = new float[2 * order][];
+        for (int i = 0; i < ranges.length; i++) {
+            ranges[i] = new float[] {Float.MAX_VALUE, -Float.MAX_VALUE};
+        }
+
+        source.forEach((n, words, logProb, backoff) -> {
+            if (n == order && logProb < pruningThreshold)
+                return;
+            counts[n - 1]++;
+            updateRange(ranges[2 * (n - 1)], logProb);
+            if (n < order)
+                updateRange(ranges[2 * (n - 1) + 1], backoff);
+        });
+
+        // second pass: compute the codebooks as the means of all values
+        // within each interval
+        float[][] codebooks = new float[2 * order][];
+        if (quantizationBits != NO_QUANTIZATION) {
+            int levels = 1 << quantizationBits;
+            double[][] sums = new double[2 * order][levels];
+            long[][] sizes = new long[2 * order][levels];
+
+            source.forEach((n, words, logProb, backoff) -> {
+                if (n == order && logProb < pruningThreshold)
+                    return;
+                int i = 2 * (n - 1);
+                int code = quantize(logProb, ranges[i], levels);
+                sums[i][code] += logProb;
+                sizes[i][code]++;
+                if (n < order) {
+                    code = quantize(backoff, ranges[i + 1], levels);
+                    sums[i + 1][code] += backoff;
+                    sizes[i + 1][code]++;
+                }
+            });
+
+            for (int i = 0; i < codebooks.length; i++) {
+                codebooks[i] = new float[levels];
+                for (int code = 0; code < levels; code++) {
+                    codebooks[i][code] = sizes[i][code] > 0
+                        ? (float) (sums[i][code] / sizes[i][code])
+                        : dequantize(code, ranges[i], levels);
+                }
+            }
+        }
+
+        // third pass: build the actual hash tables
+        int vocabularySize = (int) counts[0];
+        int bitsPerWord = 64 - Long.numberOfLeadingZeros(vocabularySize);
+        if (order > MAX_ORDER || bitsPerWord * order > 63) {
+            throw new IOException("unable to build a memory-mapped " + order
+                + "-gram language model with " + vocabularySize + " words");
+        }
+        int keyBytes = (bitsPerWord * order + 7) / 8;
+
+        long[] tableOffsets = new long[order];
+        long[] tableSlots = new long[order];
+        int[] slotSizes = new int[order];
+        long offset = HEADER_SIZE;
+        for (int n = 1; n <= order; n++) {
+            tableSlots[n - 1] = Long.highestOneBit(
+                Math.max(2, (long) (counts[n - 1] / LOAD_FACTOR)) * 2 - 1);
+            slotSizes[n - 1] =
+                getSlotSize(n, order, keyBytes, quantizationBits);
+            tableOffsets[n - 1] = offset;
+            offset += tableSlots[n - 1] * slotSizes[n - 1];
+        }
+        long codebookOffset = offset;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(outputFile),
+                 StandardOpenOption.CREATE, StandardOpenOption.READ,
+                 StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer[][] tables = new MappedByteBuffer[order][];
+            for (int n = 1; n <= order; n++) {
+                tables[n - 1] = mapTable(channel,
+                    FileChannel.MapMode.READ_WRITE, tableOffsets[n - 1],
+                    tableSlots[n - 1], slotSizes[n - 1]);
+            }
+
+            Map<String, Integer> vocabulary = new HashMap<>(vocabularySize * 2);
+            List<String> words = new ArrayList<>(vocabularySize);
+
+            source.forEach((n, ngram, logProb, backoff) -> {
+                if (n == order && logProb < pruningThreshold)
+                    return;
+
+                long key = 0;
+                for (int i = 0; i < n; i++) {
+                    String word = ngram[n - 1 - i];
+                    Integer id = vocabulary.get(word);
+                    if (id == null) {
+                        if (n > 1) {
+                            throw new IOException("the " + n + "-gram '"
+                                + String.join(" ", ngram)
+                                + "' contains the unknown word " + word);
+                        }
+                        words.add(word);
+                        id = words.size();
+                        vocabulary.put(word, id);
+                    }
+                    key |= (long) id << (bitsPerWord * i);
+                }
+
+                MappedByteBuffer[] table = tables[n - 1];
+                int slotSize = slotSizes[n - 1];
+                long mask = tableSlots[n - 1] - 1;
+                for (long slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+                    ByteBuffer segment = table[(int) (slot >>> SEGMENT_BITS)];
+                    int position =
+                        (int) (slot & (SLOTS_PER_SEGMENT - 1)) * slotSize;
+                    if (readKey(segment, position, keyBytes) == 0) {
+                        writeKey(segment, position, key, keyBytes);
+                        position += keyBytes;
+                        position = writeValue(segment, position, logProb,
+                            ranges[2 * (n - 1)], quantizationBits);
+                        if (n < order)
+                            writeValue(segment, position, backoff,
+                                ranges[2 * (n - 1) + 1], quantizationBits);
+                        break;
+                    }
+                }
+            });
+
+            for (MappedByteBuffer[] table : tables) {
+                for (MappedByteBuffer segment : table) {
+                    segment.force();
+                }
+            }
+
+            channel.position(codebookOffset);
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            if (quantizationBits != NO_QUANTIZATION) {
+                for (int n = 1; n <= order; n++) {
+                    writeCodebook(out, codebooks[2 * (n - 1)]);
+                    if (n < order)
+                        writeCodebook(out, codebooks[2 * (n - 1) + 1]);
+                }
+            }
+            out.flush();
+            long vocabularyOffset = channel.position();
+
+            for (String word : words) {
+                out.writeUTF(word);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(order);
+            header.putInt(bitsPerWord);
+            header.putInt(words.size());
+            header.putInt(keyBytes);
+            header.putInt(quantizationBits);
+            header.putLong(vocabularyOffset);
+            header.putLong(codebookOffset);
+            for (int n = 0; n < order; n++) {
+                header.putLong(tableOffsets[n]);
+                header.putLong(tableSlots[n]);
+            }
+            header.rewind();
+            channel.write(header, 0);
+        }
+
+        Debugger.println("built memory-mapped language model " + outputFile
+            + " with " + Arrays.toString(counts) + " n-grams (of "
+            + sourceCounts + " in " + source + ")");
+    }
+
+    /**
+     * A consumer for the n-grams of a language model.
+     */
+    private interface NgramConsumer {
+        /**
+         * Processes a single n-gram.
+         * @param n the length of the n-gram
+         * @param ngram the words of the n-gram
+         * @param logProb the log probability of the n-gram
+         * @param backoff the backoff weight of the n-gram or 0 if no backoff
+         * weight is specified
+         */
+        void accept(int n, String[] ngram, float logProb, float backoff)
+            throws IOException;
+    }
+
+    /**
+     * A language model from which a memory-mapped language model can be
+     * built.
+     */
+    private interface NgramSource {
+        /**
+         * @return the number of n-grams of each order, ordered by the length
+         * of the n-grams
+         */
+        List<Long> getCounts() throws IOException;
+
+        /**
+         * Passes all n-grams of the language model to a consumer.
+         * @param consumer the consumer to which all n-grams are passed,
+         * ordered by their length
+         */
+        void forEach(NgramConsumer consumer) throws IOException;
+    }
+
+    /**
+     * Checks whether a file contains a language model in ARPA format, i.e.
+     * whether its first non-empty line starts a \data\ section.
+     * @param file the file to check
+     * @return true iff the file is in ARPA format
+     */
+    private static boolean isArpa(String file) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            for (String line; (line = br.readLine()) != null;) {
+                if (!line.trim().isEmpty())
+                    return line.trim().equals("\\data\\");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The n-grams of a language model stored in ARPA format.
+     */
+    private static class ArpaSource implements NgramSource {
+        private final String arpaFile;
+
+        ArpaSource(String arpaFile) {
+            this.arpaFile = arpaFile;
+        }
+
+        /**
+         * Reads the number of n-grams of each order from the \data\ section.
+         */
+        @Override
+        public List<Long> getCounts() throws IOException {
+            List<Long> counts = new ArrayList<>();
+            try (BufferedReader br =
+                     new BufferedReader(new FileReader(arpaFile))) {
+                for (String line; (line = br.readLine()) != null;) {
+                    line = line.trim();
+                    if (line.equals("\\1-grams:"))
+                        break;
+                    if (line.startsWith("ngram ")) {
+                        counts.add(Long.valueOf(line.split("=")[1].trim()));
+                    }
+                }
+            }
+            if (counts.isEmpty()) {
+                throw new IOException(arpaFile
+                    + " does not contain a language model in ARPA format");
+            }
+            return counts;
+        }
+
+        @Override
+        public void forEach(NgramConsumer consumer) throws IOException {
+            try (BufferedReader br =
+                     new BufferedReader(new FileReader(arpaFile))) {
+                int n = 0;
+                for (String line; (line = br.readLine()) != null;) {
+                    line = line.trim();
+                    if (line.isEmpty())
+                        continue;
+                    if (line.startsWith("\\")) {
+                        n = line.matches("\\\\[0-9]+-grams:")
+                            ? Integer.valueOf(
+                                  line.substring(1, line.indexOf('-')))
+                            : 0;
+                        continue;
+                    }
+                    if (n == 0)
+                        continue;
+
+                    String[] comps = line.split("\\s+");
+                    float logProb = Float.valueOf(comps[0]);
+                    float backoff = comps.length > n + 1
+                        ? Float.valueOf(comps[n + 1])
+                        : 0f;
+                    consumer.accept(n, Arrays.copyOfRange(comps, 1, n + 1),
+                        logProb, backoff);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return arpaFile;
+        }
+    }
+
+    /**
+     * The n-grams of a Berkeley LM stored in binary format. The language model
+     * is deserialized once and its n-grams are read from its n-gram map; this
+     * requires a language model with explicit backoff weights, as built by the
+     * Berkeley LM from ARPA files.
+     */
+    private static class BerkeleySource implements NgramSource {
+        private final String binaryFile;
+        private final ArrayEncodedProbBackoffLm<String> lm;
+
+        @SuppressWarnings("unchecked")
+        BerkeleySource(String binaryFile) throws IOException {
+            this.binaryFile = binaryFile;
+            NgramLanguageModel<String> loaded =
+                LmReaders.readLmBinary(binaryFile);
+            if (!(loaded instanceof ArrayEncodedProbBackoffLm)) {
+                throw new IOException(binaryFile
+                    + " does not contain a Berkeley LM with backoff weights");
+            }
+            lm = (ArrayEncodedProbBackoffLm<String>) loaded;
+        }
+
+        /**
+         * @return a view of the n-grams of a given length as a map
+         */
+        private NgramMapWrapper<String, ProbBackoffPair> getNgrams(int n) {
+            return new NgramMapWrapper<>(
+                lm.getNgramMap(), lm.getWordIndexer(), n - 1);
+        }
+
+        @Override
+        public List<Long> getCounts() {
+            List<Long> counts = new ArrayList<>();
+            for (int n = 1; n <= lm.getLmOrder(); n++) {
+                counts.add((long) getNgrams(n).size());
+            }
+            return counts;
+        }
+
+        @Override
+        public void forEach(NgramConsumer consumer) throws IOException {
+            for (int n = 1; n <= lm.getLmOrder(); n++) {
+                for (Map.Entry<List<String>, ProbBackoffPair> entry :
+                    getNgrams(n).entrySet()) {
+                    consumer.accept(n,
+                        entry.getKey().toArray(new String[n]),
+                        entry.getValue().prob, entry.getValue().backoff);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return binaryFile;
+        }
+    }
+
+    private static void updateRange(float[] range, float value) {
+        if (value < QUANTIZATION_FLOOR)
+            return;
+        range[0] = Math.min(range[0], value);
+        range[1] = Math.max(range[1], value);
+    }
+
+    /**
+     * Maps a value to its code. Code 0 is reserved for all values below {@link
+     * MappedLanguageModel#QUANTIZATION_FLOOR}; all other values are mapped to
+     * one of the remaining codes using equally sized intervals.
+     * @param value the value
+     * @param range the minimum and maximum value to be quantized
+     * @param levels the number of codes
+     * @return the code
+     */
+    private static int quantize(float value, float[] range, int levels) {
+        if (value < QUANTIZATION_FLOOR)
+            return 0;
+        if (range[1] <= range[0])
+            return 1;
+        double relative = (value - range[0]) / (range[1] - range[0]);
+        return 1 + (int) Math.round(relative * (levels - 2));
+    }
+
+    private static float dequantize(int code, float[] range, int levels) {
+        if (code == 0)
+            return QUANTIZATION_FLOOR;
+        return (float) (range[0]
+            + (range[1] - range[0]) * (code - 1) / (double) (levels - 2));
+    }
+
+    private static int writeValue(ByteBuffer segment, int position, float value,
+        float[] range, int quantizationBits) {
+        switch (quantizationBits) {
+            case 8:
+                segment.put(position,
+                    (byte) quantize(value, range, 1 << quantizationBits));
+                return position + 1;
+            case 16:
+                segment.putShort(position,
+                    (short) quantize(value, range, 1 << quantizationBits));
+                return position + 2;
+            default:
+                segment.putFloat(position, value);
+                return position + 4;
+        }
+    }
+
+    private static float[] readCodebook(DataInputStream in, int bits)
+        throws IOException {
+        float[] codebook = new float[1 << bits];
+        for (int code = 0; code < codebook.length; code++) {
+            codebook[code] = in.readFloat();
+        }
+        return codebook;
+    }
+
+    private static void writeCodebook(DataOutputStream out, float[] codebook)
+        throws IOException {
+        for (float value : codebook) {
+            out.writeFloat(value);
+        }
+    }
+
+    private static long readKey(ByteBuffer segment, int position, int bytes) {
+        long key = 0;
+        for (int i = 0; i < bytes; i++) {
+            key = (key << 8) | (segment.get(position + i) & 0xff);
+        }
+        return key;
+    }
+
+    private static void writeKey(
+        ByteBuffer segment, int position, long key, int bytes) {
+        for (int i = bytes - 1; i >= 0; i--) {
+            segment.put(position + i, (byte) key);
+            key >>>= 8;
+        }
+    }
+
+    /**
+     * Computes the size of a single slot of a hash table, consisting of the
+     * key, the log probability and, for all but the highest order, the backoff
+     * weight.
+     * @param n the length of the n-grams stored within the table
+     * @param order the order of the language model
+     * @param keyBytes the number of bytes used for keys
+     * @param valueBits the number of bits used for values
+     * @return the size of a slot, in bytes
+     */
+    private static int getSlotSize(
+        int n, int order, int keyBytes, int valueBits) {
+        return keyBytes + (n < order ? 2 : 1) * (valueBits / 8);
+    }
+
+    /**
+     * Maps a hash table of a memory-mapped language model into memory.
+     * @param channel the channel of the file in which the table is stored
+     * @param mode the mapping mode
+     * @param offset the offset of the table within the file
+     * @param slots the number of slots of the table
+     * @param slotSize the size of a single slot, in bytes
+     * @return the segments of the table
+     */
+    private static MappedByteBuffer[] mapTable(FileChannel channel,
+        FileChannel.MapMode mode, long offset, long slots, int slotSize)
+        throws IOException {
+        int nrOfSegments =
+            (int) ((slots + SLOTS_PER_SEGMENT - 1) / SLOTS_PER_SEGMENT);
+        MappedByteBuffer[] segments = new MappedByteBuffer[nrOfSegments];
+        for (int i = 0; i < nrOfSegments; i++) {
+            long segmentSlots =
+                Math.min(SLOTS_PER_SEGMENT, slots - i * SLOTS_PER_SEGMENT);
+            segments[i] = channel.map(mode,
+                offset + i * SLOTS_PER_SEGMENT * slotSize,
+                segmentSlots * slotSize);
+        }
+        return segments;
+    }
+
+    /**
+     * Mixes the bits of a packed n-gram key (see the finalization step of
+     * MurmurHash3) so that consecutive word ids are spread over the table.
+     * @param key the key
+     * @return the hash value of the key
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
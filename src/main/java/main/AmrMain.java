@@ -4,19 +4,24 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import dag.*;
-import edu.berkeley.nlp.lm.ArrayEncodedNgramLanguageModel;
-import edu.berkeley.nlp.lm.io.LmReaders;
 import edu.stanford.nlp.mt.metrics.BLEUMetric;
 import edu.stanford.nlp.mt.util.ArraySequence;
 import edu.stanford.nlp.mt.util.Sequence;
 import edu.stanford.nlp.tagger.maxent.MaxentTagger;
 import gen.*;
+import lm.BerkeleyLanguageModel;
+import lm.KenLanguageModel;
+import lm.LanguageModel;
+import lm.MappedLanguageModel;
+import misc.BoundedCache;
 import misc.Debugger;
+import misc.ParallelHelper;
 import misc.StaticHelper;
 import misc.WordNetHelper;
 import ml.*;
 import net.sf.extjwnl.JWNLException;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -38,9 +43,57 @@ public class AmrMain {
     private FirstStageProcessor firstStageProcessor;
     private SecondStageProcessor secondStageProcessor;
     private PostProcessor postProcessor;
+    private DefaultRealizer defaultRealizer;
 
     private boolean setUp = false;
 
+    // a rough estimate of the memory (in bytes) required per vertex of the
+    // training and development data while training a maximum entropy model,
+    // covering both the derived events and their indexed form
+    private static final int TRAINING_MEMORY_PER_VERTEX = 4 << 10;
+
+    // the kind of language model to load, see CommandGenerate
+    private String languageModelType = "berkeley";
+
+    // the maximum number of pairs of partial transition functions to combine
+    // per vertex using cube pruning, see CommandGenerate
+    private int cubePruningPopLimit = 0;
+
+    // the maximum number of subtrees whose n-best realizations are stored for
+    // reuse in other AMR graphs, see CommandGenerate
+    private int subtreeCacheCapacity = 0;
+
+    // the maximum number of post-processed sentences to store for AMR graphs
+    // that have already been processed and the number of seconds after which
+    // stored sentences expire, see CommandGenerate
+    private int resultCacheCapacity = 0;
+    private long resultCacheTimeToLive = 0;
+
+    // a cache mapping canonical representations of AMR graphs (see
+    // Amr#getCanonicalString()) along with the current hyperparameters to the
+    // generated post-processed sentences or null if no such cache is used
+    private BoundedCache<String, String> resultCache;
+
+    // whether the REALIZE model should consult the precomputed table stored
+    // at PathList.REALIZATION_TABLE_PATH, see CommandGenerate
+    private boolean useRealizationTable = false;
+
+    // whether AMR graphs prepared for training should be stored in and loaded
+    // from PathList.CORPUS_CACHE_DIR, see CommandGenerate
+    private boolean useCorpusCache = true;
+
+    // the maximum number of maximum entropy models trained concurrently and
+    // the amount of memory (in MB) available for training them, see
+    // TrainingScheduler and CommandGenerate
+    private int trainingParallelism = 1;
+    private int trainingMemoryBudget = (int) Math.min(
+        Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() >> 20);
+
+    // the filter applied to all AMR graphs loaded from the training,
+    // development and test directories or null if all AMR graphs should be
+    // loaded, see CommandGenerate
+    private AmrFilter amrFilter;
+
     public static void main(String[] args) throws IOException, JWNLException {
         args = new String[] {"-i", "in1.txt", "-o", "out1.txt"};
 
@@ -117,10 +170,7 @@ public class AmrMain {
     // shows AMR graphs from the LDC2014T12 development corpus
     private void demo3() throws IOException {
         List<Amr> amrs =
-            loadAmrGraphs(PathList.DEVELOPMENT_DIR, false, 1, -1, -1);
-
-        BigraphAlignmentBuilder builder = new BigraphAlignmentBuilder();
-        builder.buildTypeAlignment(amrs.get(2), amrs.get(2).dependencyTree);
+            loadAmrGraphs(PathList.DEVELOPMENT_DIR, false, 1, null);
 
         new AmrFrame(amrs.get(2));
         new DependencyTreeFrame(amrs.get(2).dependencyTree);
@@ -130,7 +180,7 @@ public class AmrMain {
     /*private void demo4() throws IOException {
 
         PathList.AMR_SUBDIRECTORIES = Collections.singletonList("example/");
-        List<Amr> amrs = loadAmrGraphs("", false, 1, -1, -1);
+        List<Amr> amrs = loadAmrGraphs("", false, 1, null);
         new AmrFrame(amrs.get(0));
         new DependencyTreeFrame(amrs.get(0).dependencyTree);
     }*/
@@ -144,24 +194,117 @@ public class AmrMain {
 
         jCommander.parse(args);
 
+        if (gen.threads != null) {
+            ParallelHelper.setParallelism(gen.threads);
+        }
+        useCorpusCache = !gen.noCorpusCache;
+        if (gen.trainingThreads != null) {
+            trainingParallelism = gen.trainingThreads;
+        }
+        if (gen.trainingMemory != null) {
+            trainingMemoryBudget = gen.trainingMemory;
+        }
+        if (gen.minSentenceLength >= 0 || gen.maxSentenceLength >= 0
+            || gen.idFile != null || gen.samplingRate < 1) {
+            Set<String> ids = gen.idFile == null
+                ? null
+                : new HashSet<>(StaticHelper.listFromFile(gen.idFile));
+            amrFilter = new AmrFilter(gen.minSentenceLength,
+                gen.maxSentenceLength, ids, gen.samplingRate);
+        }
+
         // show help for the command line interface
         if (gen.help) {
             jCommander.usage();
         }
 
+        // merge the outputs of several shards
+        else if (gen.mergeFiles != null) {
+            if (gen.outputFile == null) {
+                throw new AssertionError(
+                    "an output file must be specified using '--output path/to/output'.");
+            }
+            mergeShardOutputs(
+                gen.mergeFiles, gen.shardByByteRange, gen.outputFile);
+        }
+
+        // compare several kinds of language models
+        else if (gen.compareLanguageModelTypes != null) {
+            if (gen.inputFile == null) {
+                throw new AssertionError(
+                    "an input file must be specified using '--input path/to/input' when using '--compare-lm'.");
+            }
+            cubePruningPopLimit = gen.cubePruningPopLimit;
+            subtreeCacheCapacity = gen.subtreeCacheCapacity;
+            resultCacheCapacity = gen.resultCacheCapacity;
+            resultCacheTimeToLive = gen.resultCacheTimeToLive;
+            useRealizationTable = gen.useRealizationTable;
+            compareLanguageModels(gen.inputFile, gen.compareLanguageModelTypes);
+        }
+
+        // build a memory-mapped language model from an ARPA file or a
+        // Berkeley LM in binary format
+        else if (gen.buildMappedLanguageModel != null) {
+            MappedLanguageModel.build(gen.buildMappedLanguageModel.get(0),
+                gen.buildMappedLanguageModel.get(1), gen.lmQuantizationBits,
+                gen.lmPruningThreshold == null ? Float.NEGATIVE_INFINITY
+                                               : gen.lmPruningThreshold);
+        }
+
+        // precompute the inflections of all known concepts
+        else if (gen.buildInflectionTable) {
+            new DefaultRealizer(new WordNetHelper()).writeInflectionTable(
+                StaticHelper.listFromFile(PathList.CONCEPT_LIST),
+                PathList.INFLECTIONS_PATH);
+        }
+
+        // precompute the REALIZE transitions for frequent feature vectors
+        else if (gen.buildRealizationTable) {
+            if (gen.inputFile == null) {
+                throw new AssertionError(
+                    "an input file must be specified using '--input path/to/input' when using '--build-realization-table'.");
+            }
+            languageModelType = gen.languageModelType;
+            setUp();
+            buildRealizationTable(
+                loadAmrGraphs(gen.inputFile), gen.realizationTableMinCount);
+        }
+
+        // compare the single-pass and the regex-based AMR parser
+        else if (gen.compareParsers) {
+            if (gen.inputFile == null) {
+                throw new AssertionError(
+                    "an input file must be specified using '--input path/to/input' when using '--compare-parsers'.");
+            }
+            AmrParser.compareParsers(gen.inputFile);
+        }
+
         // generate sentences from a list of AMR graphs
         else {
             if (gen.outputFile == null) {
                 throw new AssertionError(
                     "an output file must be specified using '--output path/to/output'.");
             }
+            if (gen.shard != null && gen.inputFile == null) {
+                throw new AssertionError(
+                    "an input file must be specified using '--input path/to/input' when using '--shard'.");
+            }
 
+            languageModelType = gen.languageModelType;
+            cubePruningPopLimit = gen.cubePruningPopLimit;
+            subtreeCacheCapacity = gen.subtreeCacheCapacity;
+            resultCacheCapacity = gen.resultCacheCapacity;
+            resultCacheTimeToLive = gen.resultCacheTimeToLive;
+            useRealizationTable = gen.useRealizationTable;
             setUp();
 
             List<Amr> amrs;
 
             if (gen.inputFile == null) {
                 amrs = loadAmrGraphs(PathList.TEST_DIR, true);
+            } else if (gen.shard != null) {
+                amrs = loadAmrGraphs(gen.inputFile,
+                    Shard.fromString(gen.shard, gen.shardByByteRange));
             } else {
                 amrs = loadAmrGraphs(gen.inputFile);
             }
@@ -183,6 +326,75 @@ public class AmrMain {
         }
     }
 
+    /**
+     * Compares several kinds of language models (see {@link
+     * AmrMain#loadLanguageModel()}) by generating sentences for the same AMR
+     * graphs with each of them. This can be used to benchmark quantized or
+     * pruned language models (see {@link MappedLanguageModel#fromArpa(String,
+     * String, int, float)}) against the original one. For each kind of
+     * language model, the size of its file, the heap space used after loading
+     * it, the time required for generation and the number of sentences that
+     * differ from those generated using the first kind of language model are
+     * printed; if the AMR graphs contain reference realizations, the achieved
+     * BLEU scores and their drift with respect to the first kind of language
+     * model are printed as well.
+     * @param filename the file containing the AMR graphs
+     * @param types the kinds of language models to compare
+     */
+    private void compareLanguageModels(String filename, List<String> types)
+        throws IOException, JWNLException {
+        List<String> referenceSentences = null;
+        Double referenceBleu = null;
+
+        for (String type : types) {
+            languageModelType = type;
+            setUp();
+
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            long heapSize = runtime.totalMemory() - runtime.freeMemory();
+            long fileSize =
+                Files.size(Paths.get(getLanguageModelPath(type)));
+
+            List<Amr> amrs = loadAmrGraphs(filename);
+
+            long time = System.nanoTime();
+            List<String> generatedSentences = generate(amrs, true, true);
+            double seconds = (System.nanoTime() - time) / 1000000000.0;
+
+            String result = "language model " + type + " (file size = "
+                + fileSize / (1 << 20) + " MB, heap used = "
+                + heapSize / (1 << 20) + " MB): generated "
+                + generatedSentences.size() + " sentences in " + seconds
+                + " seconds";
+
+            if (referenceSentences == null) {
+                referenceSentences = generatedSentences;
+            } else {
+                int differences = 0;
+                for (int i = 0; i < generatedSentences.size(); i++) {
+                    if (!generatedSentences.get(i).equals(
+                            referenceSentences.get(i))) {
+                        differences++;
+                    }
+                }
+                result += ", " + differences + " differ from language model "
+                    + types.get(0);
+            }
+
+            if (amrs.stream().allMatch(amr -> amr.sentence != null)) {
+                double bleu = getBleu(amrs, generatedSentences);
+                result += ", Bleu = " + bleu;
+                if (referenceBleu == null) {
+                    referenceBleu = bleu;
+                } else {
+                    result += " (drift = " + (bleu - referenceBleu) + ")";
+                }
+            }
+            Debugger.println(result);
+        }
+    }
+
     /**
      * Optimizes hyperparameters of the fully trained generator using the
      * development data found in the subdirectories (according to
@@ -291,6 +503,8 @@ public class AmrMain {
      * @param modelsToTrain a list of maximum entropy models which should be
      * trained. All other maximum entropy models are assumed to be pretrained
      * and loaded from the corresponding files specified in {@link PathList}.
+     * Up to {@link AmrMain#trainingParallelism} independent models are
+     * trained concurrently, see {@link TrainingScheduler}.
      * @param stopAfterFirstStage this parameter is only relevant for the full
      * training procedure and specifies whether set up should stop after
      * training the first stage. For must usages, this parameter should be set
@@ -298,34 +512,24 @@ public class AmrMain {
      */
     private void setUp(List<Models> modelsToTrain, boolean stopAfterFirstStage)
         throws JWNLException, IOException {
-        posTagger = new MaxentTagger(PathList.POS_TAGGER_PATH);
+        posTagger = new PosTagger(PathList.POS_TAGGER_PATH);
         hyperparams = new Hyperparams();
 
         AutoLoadParams params = new AutoLoadParams();
         WordNetHelper wordNetHelper = new WordNetHelper();
-        DefaultRealizer defaultRealizer = new DefaultRealizer(wordNetHelper);
-        ArrayEncodedNgramLanguageModel<String> languageModel =
-            (ArrayEncodedNgramLanguageModel) LmReaders.readLmBinary(
-                PathList.LANGUAGE_MODEL_PATH);
+        defaultRealizer = new DefaultRealizer(wordNetHelper);
+        if (Files.exists(Paths.get(PathList.INFLECTIONS_PATH))) {
+            defaultRealizer.loadInflectionTable(PathList.INFLECTIONS_PATH);
+        }
+        LanguageModel languageModel = loadLanguageModel();
+        SecondStageProcessor.clearNGramScores();
 
         // if the maximum entropy models are to be trained, load the training
         // and development data and build type alignments from the corresponding
         // dependency trees
         if (!modelsToTrain.isEmpty()) {
-            BigraphAlignmentBuilder builder = new BigraphAlignmentBuilder();
-
             params.trainingData = loadAmrGraphs(PathList.TRAINING_DIR, false);
             params.devData = loadAmrGraphs(PathList.DEVELOPMENT_DIR, false);
-
-            List<Amr> allAmrs = new ArrayList<>();
-            allAmrs.addAll(params.trainingData);
-            allAmrs.addAll(params.devData);
-
-            for (Amr amr : allAmrs) {
-                if (amr.dependencyTree != null) {
-                    builder.buildTypeAlignment(amr, amr.dependencyTree);
-                }
-            }
         }
 
         // syntactic annotation maximum entropy classifiers
@@ -369,67 +573,211 @@ public class AmrMain {
                 maxentModels.childInsertionMaxentModel,
                 maxentModels.denomMaxentModel, defaultRealizer, positionHelper,
                 languageModel);
+        secondStageProcessor.cubePruningPopLimit = cubePruningPopLimit;
+        secondStageProcessor.setSubtreeCacheCapacity(subtreeCacheCapacity);
+        resultCache = resultCacheCapacity > 0
+            ? new BoundedCache<>(
+                  resultCacheCapacity, resultCacheTimeToLive * 1000)
+            : null;
         postProcessor =
             new PostProcessor(languageModel, maxentModels.denomMaxentModel);
 
-        // automatically load all maximum entropy models
-        maxentModels.posMaxentModel.autoLoad(params, PathList.POS_MAXENT_PATH,
-            modelsToTrain.contains(Models.POS));
-        maxentModels.denomMaxentModel.autoLoad(params,
-            PathList.DENOM_MAXENT_PATH, modelsToTrain.contains(Models.DENOM));
-        maxentModels.numberMaxentModel.autoLoad(params,
-            PathList.NUMBER_MAXENT_PATH, modelsToTrain.contains(Models.NUMBER));
-        maxentModels.tenseMaxentModel.autoLoad(params,
-            PathList.TENSE_MAXENT_PATH, modelsToTrain.contains(Models.TENSE));
-        maxentModels.voiceMaxentModel.autoLoad(params,
-            PathList.VOICE_MAXENT_PATH, modelsToTrain.contains(Models.VOICE));
-
-        maxentModels.otherInsertionMaxentModel.autoLoad(params,
-            PathList.OTHERS_INSERTION_MAXENT_PATH,
-            modelsToTrain.contains(Models.INSERT_OTHERS));
-        maxentModels.argInsertionMaxentModel.autoLoad(params,
-            PathList.ARG_INSERTION_MAXENT_PATH,
-            modelsToTrain.contains(Models.INSERT_ARGS));
-        maxentModels.childInsertionMaxentModel.autoLoad(params,
-            PathList.CHILD_INSERTION_MAXENT_PATH,
-            modelsToTrain.contains(Models.INSERT_CHILD));
-
-        if (!modelsToTrain.contains(Models.FIRST_STAGE)) {
-            maxentModels.firstStageMaxentModel.autoLoad(
-                params, PathList.FIRST_STAGE_MAXENT_PATH, false);
-        } else {
-            firstStageProcessor.performGoldTransitionsFirstStage(
-                params.trainingData, params.devData, params,
-                PathList.FIRST_STAGE_MAXENT_PATH, true);
-        }
-
-        if (!modelsToTrain.isEmpty()
-            && !modelsToTrain.contains(Models.FIRST_STAGE)) {
-            firstStageProcessor.processFirstStage(params.devData);
-            firstStageProcessor.processFirstStage(params.trainingData);
+        // automatically load all maximum entropy models; models that do not
+        // depend on each other are trained concurrently, see
+        // TrainingScheduler. The first stage modifies the training and
+        // development data, so it is only started once all models trained on
+        // the original data are finished, and the reordering and realization
+        // models are trained on its result.
+        TrainingScheduler scheduler =
+            new TrainingScheduler(trainingParallelism, trainingMemoryBudget);
+        int memory = getTrainingMemoryEstimate(params);
+
+        addTrainingJob(scheduler, Models.POS, modelsToTrain, memory,
+            () -> maxentModels.posMaxentModel.autoLoad(params,
+                PathList.POS_MAXENT_PATH, modelsToTrain.contains(Models.POS)));
+        addTrainingJob(scheduler, Models.DENOM, modelsToTrain, memory,
+            () -> maxentModels.denomMaxentModel.autoLoad(params,
+                PathList.DENOM_MAXENT_PATH,
+                modelsToTrain.contains(Models.DENOM)));
+        addTrainingJob(scheduler, Models.NUMBER, modelsToTrain, memory,
+            () -> maxentModels.numberMaxentModel.autoLoad(params,
+                PathList.NUMBER_MAXENT_PATH,
+                modelsToTrain.contains(Models.NUMBER)));
+        addTrainingJob(scheduler, Models.TENSE, modelsToTrain, memory,
+            () -> maxentModels.tenseMaxentModel.autoLoad(params,
+                PathList.TENSE_MAXENT_PATH,
+                modelsToTrain.contains(Models.TENSE)));
+        addTrainingJob(scheduler, Models.VOICE, modelsToTrain, memory,
+            () -> maxentModels.voiceMaxentModel.autoLoad(params,
+                PathList.VOICE_MAXENT_PATH,
+                modelsToTrain.contains(Models.VOICE)));
+
+        addTrainingJob(scheduler, Models.INSERT_OTHERS, modelsToTrain, memory,
+            () -> maxentModels.otherInsertionMaxentModel.autoLoad(params,
+                PathList.OTHERS_INSERTION_MAXENT_PATH,
+                modelsToTrain.contains(Models.INSERT_OTHERS)));
+        addTrainingJob(scheduler, Models.INSERT_ARGS, modelsToTrain, memory,
+            () -> maxentModels.argInsertionMaxentModel.autoLoad(params,
+                PathList.ARG_INSERTION_MAXENT_PATH,
+                modelsToTrain.contains(Models.INSERT_ARGS)));
+        addTrainingJob(scheduler, Models.INSERT_CHILD, modelsToTrain, memory,
+            () -> maxentModels.childInsertionMaxentModel.autoLoad(params,
+                PathList.CHILD_INSERTION_MAXENT_PATH,
+                modelsToTrain.contains(Models.INSERT_CHILD)));
+
+        addTrainingJob(scheduler, Models.FIRST_STAGE, modelsToTrain, memory,
+            () -> {
+                if (!modelsToTrain.contains(Models.FIRST_STAGE)) {
+                    maxentModels.firstStageMaxentModel.autoLoad(
+                        params, PathList.FIRST_STAGE_MAXENT_PATH, false);
+                } else {
+                    firstStageProcessor.performGoldTransitionsFirstStage(
+                        params.trainingData, params.devData, params,
+                        PathList.FIRST_STAGE_MAXENT_PATH, true);
+                }
+
+                if (!modelsToTrain.isEmpty()
+                    && !modelsToTrain.contains(Models.FIRST_STAGE)) {
+                    firstStageProcessor.processFirstStage(params.devData);
+                    firstStageProcessor.processFirstStage(params.trainingData);
+                }
+            },
+            Models.POS, Models.DENOM, Models.NUMBER, Models.TENSE,
+            Models.VOICE, Models.INSERT_OTHERS, Models.INSERT_ARGS,
+            Models.INSERT_CHILD);
+
+        if (!stopAfterFirstStage) {
+            addTrainingJob(scheduler, Models.REORDER, modelsToTrain, memory,
+                () -> maxentModels.parentChildReorderMaxentModel.autoLoad(
+                    params, PathList.REORDER_MAXENT_PATH,
+                    modelsToTrain.contains(Models.REORDER)),
+                Models.FIRST_STAGE);
+            addTrainingJob(scheduler, Models.REORDER_RIGHT, modelsToTrain,
+                memory,
+                () -> maxentModels.rightMaxEnt.autoLoad(params,
+                    PathList.RIGHT_REORDER_MAXENT_PATH,
+                    modelsToTrain.contains(Models.REORDER_RIGHT)),
+                Models.FIRST_STAGE);
+            addTrainingJob(scheduler, Models.REORDER_LEFT, modelsToTrain,
+                memory,
+                () -> maxentModels.leftMaxEnt.autoLoad(params,
+                    PathList.LEFT_REORDER_MAXENT_PATH,
+                    modelsToTrain.contains(Models.REORDER_LEFT)),
+                Models.FIRST_STAGE);
+            addTrainingJob(scheduler, Models.REALIZE, modelsToTrain, memory,
+                () -> maxentModels.realizeMaxentModel.autoLoad(params,
+                    PathList.REALIZE_MAXENT_PATH,
+                    modelsToTrain.contains(Models.REALIZE)),
+                Models.FIRST_STAGE);
         }
 
+        scheduler.run();
+
         if (stopAfterFirstStage)
             return;
 
-        maxentModels.parentChildReorderMaxentModel.autoLoad(params,
-            PathList.REORDER_MAXENT_PATH,
-            modelsToTrain.contains(Models.REORDER));
-        maxentModels.rightMaxEnt.autoLoad(params,
-            PathList.RIGHT_REORDER_MAXENT_PATH,
-            modelsToTrain.contains(Models.REORDER_RIGHT));
-        maxentModels.leftMaxEnt.autoLoad(params,
-            PathList.LEFT_REORDER_MAXENT_PATH,
-            modelsToTrain.contains(Models.REORDER_LEFT));
-        maxentModels.realizeMaxentModel.autoLoad(params,
-            PathList.REALIZE_MAXENT_PATH,
-            modelsToTrain.contains(Models.REALIZE));
+        maxentModels.realizeMaxentModel.realizationTable = null;
+        if (useRealizationTable && !modelsToTrain.contains(Models.REALIZE)) {
+            // the table only affects the speed of generation, so generation
+            // continues using the model alone if it cannot be used
+            try {
+                maxentModels.realizeMaxentModel.realizationTable =
+                    new RealizationTable(PathList.REALIZATION_TABLE_PATH,
+                        maxentModels.realizeMaxentModel);
+            } catch (IOException e) {
+                Debugger.println(
+                    "not using the realization table: " + e.getMessage());
+            }
+        }
 
         setUp = true;
         Hyperparam.initializeFromFile(PathList.HYPERPARAMS_LIST);
         applyCurrentHyperparams();
     }
 
+    /**
+     * Loads the language model to be used for scoring sentences according to
+     * {@link AmrMain#languageModelType}. The type is either one of {@code
+     * berkeley}, {@code mapped} and {@code kenlm}, in which case the language
+     * model is loaded from the corresponding default path, or of the form
+     * {@code kind:path}, in which case it is loaded from the given path.
+     * @return the loaded language model
+     */
+    private LanguageModel loadLanguageModel() throws IOException {
+        String kind = getLanguageModelKind(languageModelType);
+        String path = getLanguageModelPath(languageModelType);
+        switch (kind) {
+            case "berkeley":
+                return BerkeleyLanguageModel.fromBinary(path);
+            case "mapped":
+                return new MappedLanguageModel(path);
+            case "kenlm":
+                return new KenLanguageModel(path);
+            default:
+                throw new AssertionError("unknown language model type '"
+                    + languageModelType
+                    + "', expected berkeley, mapped or kenlm");
+        }
+    }
+
+    /**
+     * @param type a language model type as described in {@link
+     * AmrMain#loadLanguageModel()}
+     * @return the kind of the language model, i.e. {@code berkeley}, {@code
+     * mapped} or {@code kenlm}
+     */
+    private static String getLanguageModelKind(String type) {
+        int separator = type.indexOf(':');
+        return separator < 0 ? type : type.substring(0, separator);
+    }
+
+    /**
+     * @param type a language model type as described in {@link
+     * AmrMain#loadLanguageModel()}
+     * @return the path from which the language model is loaded
+     */
+    private static String getLanguageModelPath(String type) {
+        int separator = type.indexOf(':');
+        if (separator >= 0)
+            return type.substring(separator + 1);
+        switch (type) {
+            case "mapped":
+                return PathList.MAPPED_LANGUAGE_MODEL_PATH;
+            case "kenlm":
+                return PathList.KENLM_LANGUAGE_MODEL_PATH;
+            default:
+                return PathList.LANGUAGE_MODEL_PATH;
+        }
+    }
+
+    /**
+     * Builds a {@link RealizationTable} for the current REALIZE model and
+     * stores it at {@link PathList#REALIZATION_TABLE_PATH}. For this purpose,
+     * sentences are generated from the given AMR graphs and all feature
+     * vectors for which the REALIZE model is evaluated are counted; the table
+     * then contains the n-best outcomes of all feature vectors observed at
+     * least {@code minCount} times, where n is the maximum value of the
+     * corresponding hyperparameter.
+     * @param amrs the AMR graphs used to collect feature vectors
+     * @param minCount the minimum number of observations required for a
+     * feature vector to be included
+     */
+    private void buildRealizationTable(List<Amr> amrs, int minCount)
+        throws IOException {
+        RealizeMaxentModel realizeMaxentModel =
+            maxentModels.realizeMaxentModel;
+        realizeMaxentModel.realizationTable = null;
+
+        realizeMaxentModel.startRecording();
+        generate(amrs, true, false);
+        Map<String, Integer> contextCounts =
+            realizeMaxentModel.stopRecording();
+
+        RealizationTable.build(realizeMaxentModel, contextCounts, minCount,
+            (int) hyperparams.realizeMaxEnt_params_takeBestN.max,
+            PathList.REALIZATION_TABLE_PATH);
+    }
+
     /**
      * Generates realizations from AMR graphs using the Generation algorithm as
      * described in the thesis.
@@ -459,6 +807,70 @@ public class AmrMain {
                 "setUp() must be called before using the generator.");
         }
 
+        // only final, post-processed sentences are stored in the result cache
+        if (resultCache != null && firstStage && postProcess) {
+            return generateUsingResultCache(amrs);
+        }
+        return generateWithoutResultCache(amrs, firstStage, postProcess);
+    }
+
+    /**
+     * Generates post-processed realizations from AMR graphs, reusing the
+     * realizations stored in {@link AmrMain#resultCache} for all AMR graphs
+     * whose canonical representation has been processed before using the
+     * same hyperparameters. AMR graphs whose realization is found in the cache
+     * are not modified.
+     * @param amrs the AMR graphs for which realizations should be generated
+     * @return the list of generated realizations
+     */
+    private List<String> generateUsingResultCache(List<Amr> amrs) {
+        String fingerprint = Hyperparam.allToString() + languageModelType
+            + cubePruningPopLimit + "\n";
+
+        // look up all AMR graphs; graphs with the same canonical
+        // representation are only processed once
+        List<String> keys = new ArrayList<>();
+        Map<String, String> found = new HashMap<>();
+        Map<String, Amr> missing = new LinkedHashMap<>();
+        for (Amr amr : amrs) {
+            String key = fingerprint + amr.getCanonicalString();
+            keys.add(key);
+            if (found.containsKey(key) || missing.containsKey(key))
+                continue;
+            String sentence = resultCache.get(key);
+            if (sentence != null) {
+                found.put(key, sentence);
+            } else {
+                missing.put(key, amr);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            List<String> generatedSentences = generateWithoutResultCache(
+                new ArrayList<>(missing.values()), true, true);
+            int i = 0;
+            for (String key : missing.keySet()) {
+                found.put(key, generatedSentences.get(i));
+                resultCache.put(key, generatedSentences.get(i));
+                i++;
+            }
+        }
+        Debugger.println("result cache: " + resultCache);
+
+        List<String> ret = new ArrayList<>();
+        for (String key : keys) {
+            ret.add(found.get(key));
+        }
+        return ret;
+    }
+
+    /**
+     * Generates realizations from AMR graphs without using {@link
+     * AmrMain#resultCache}; see {@link AmrMain#generate(List, boolean,
+     * boolean)}.
+     */
+    private List<String> generateWithoutResultCache(
+        List<Amr> amrs, boolean firstStage, boolean postProcess) {
         Debugger.println("starting first-stage processing of " + amrs.size()
             + " AMR graphs...");
 
@@ -490,6 +902,12 @@ public class AmrMain {
 
         Debugger.println("finished second-stage processing of " + amrs.size()
             + " AMR graphs.");
+        if (secondStageProcessor.getSubtreeCacheStatistics() != null) {
+            Debugger.println("subtree cache: "
+                + secondStageProcessor.getSubtreeCacheStatistics());
+        }
+        Debugger.println("default realizer caches: "
+            + defaultRealizer.getCacheStatistics());
 
         if (postProcess) {
             generatedSentences = postProcessor.postProcess(amrs);
@@ -502,6 +920,121 @@ public class AmrMain {
         return generatedSentences;
     }
 
+    /**
+     * Regenerates the realization of an AMR graph after some of its vertices
+     * have been changed, e.g. by an annotator. The AMR graph must have been
+     * processed by {@link AmrMain#generate(List, boolean, boolean)} before and
+     * the changes must have been applied to the processed graph. Only the
+     * changed vertices, their siblings, all of their descendants and all of
+     * their ancestors are processed again, so the time required mostly depends
+     * on the depth of the graph rather than its size. If the first stage
+     * predicts a MERGE or SWAP transition for one of the changed vertices or
+     * their neighbors that has not been applied before (see {@link
+     * FirstStageProcessor#processChangedVertices(Amr, Collection)}), all
+     * transitions of the first stage are reverted (see {@link
+     * Amr#revertTransitions()}) and the entire graph is processed again
+     * instead.
+     * @param amr the AMR graph
+     * The compiled form of the graph (see {@link Amr#getCompiledGraph()}) is
+     * discarded, as it does not reflect the changes.
+     * @param changedVertices all vertices that have been added to the graph,
+     * whose labels have been modified or whose outgoing edges have been added,
+     * removed or relabeled
+     * @param postProcess whether post-processing should be performed
+     * @return the regenerated realization
+     */
+    public String regenerate(
+        Amr amr, Collection<Vertex> changedVertices, boolean postProcess) {
+        if (!setUp) {
+            throw new AssertionError(
+                "setUp() must be called before using the generator.");
+        }
+
+        // the graph has been edited since it was compiled
+        amr.invalidateCompiledGraph();
+
+        // if the realization of the graph has been taken from the result
+        // cache, the graph has not been processed yet
+        if (amr.partialTransitionFunction == null) {
+            return generate(Collections.singletonList(amr), true, postProcess)
+                .get(0);
+        }
+
+        // check whether the first stage would change the structure of the
+        // graph; to this end, the neighbors of all changed vertices are
+        // considered as well
+        Set<Vertex> firstStageVertices = new LinkedHashSet<>();
+        for (Vertex v : changedVertices) {
+            firstStageVertices.add(v);
+            for (Edge e : v.getIncomingEdges()) {
+                firstStageVertices.add(e.getFrom());
+            }
+            for (Edge e : v.getOutgoingEdges()) {
+                if (e.getTo() != Vertex.EMPTY_VERTEX)
+                    firstStageVertices.add(e.getTo());
+            }
+        }
+        if (!firstStageProcessor.processChangedVertices(
+                amr, firstStageVertices)) {
+            Debugger.println(
+                "first-stage transitions changed, regenerating entire graph");
+            amr.revertTransitions();
+            return generate(Collections.singletonList(amr), true, postProcess)
+                .get(0);
+        }
+
+        Set<Vertex> invalidatedVertices =
+            getInvalidatedVertices(changedVertices);
+        maxentModels.posMaxentModel.annotate(amr, invalidatedVertices);
+        maxentModels.numberMaxentModel.annotate(amr, invalidatedVertices);
+        maxentModels.voiceMaxentModel.annotate(amr, invalidatedVertices);
+        maxentModels.tenseMaxentModel.annotate(amr, invalidatedVertices);
+        maxentModels.denomMaxentModel.annotate(amr, invalidatedVertices);
+
+        String generatedSentence =
+            secondStageProcessor.regenerateBestRealizationAsString(
+                amr, invalidatedVertices);
+        if (postProcess) {
+            generatedSentence =
+                postProcessor.postProcess(Collections.singletonList(amr))
+                    .get(0);
+        }
+        return generatedSentence;
+    }
+
+    /**
+     * Computes the set of all vertices whose syntactic annotations and
+     * realizations may depend on a given set of changed vertices. As the
+     * features used by the maximum entropy models include information about
+     * the parent, the siblings and the ancestors of a vertex, this set
+     * contains the changed vertices, their siblings and all of their
+     * descendants and ancestors.
+     * @param changedVertices the changed vertices
+     * @return the set of invalidated vertices
+     */
+    private static Set<Vertex> getInvalidatedVertices(
+        Collection<Vertex> changedVertices) {
+        Set<Vertex> invalidated =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Vertex v : changedVertices) {
+            invalidated.addAll(v.getVerticesBottomUp());
+            if (v.getIncomingEdges().isEmpty())
+                continue;
+            for (Edge e : v.getIncomingEdges().get(0)
+                              .getFrom()
+                              .getOutgoingEdges()) {
+                if (e.getTo() != Vertex.EMPTY_VERTEX)
+                    invalidated.add(e.getTo());
+            }
+            Vertex current = v;
+            while (!current.getIncomingEdges().isEmpty()) {
+                current = current.getIncomingEdges().get(0).getFrom();
+                invalidated.add(current);
+            }
+        }
+        return invalidated;
+    }
+
     /**
      * This function updates all classes using hyperparameters with the current
      * values according to {@link AmrMain#hyperparams}. For a detailed
@@ -602,6 +1135,9 @@ public class AmrMain {
         secondStageProcessor.linkRealizationScore = -0.5;
         secondStageProcessor.minTranslationScore = 0.025d;
 
+        // results computed using previous hyperparameters must not be reused
+        secondStageProcessor.clearSubtreeCache();
+
         // update hyperparameters used by the post processor
         postProcessor.linkRemovalHandicap = 0.7;
         postProcessor.articleAdditionHandicap = 1.15;
@@ -679,6 +1215,54 @@ public class AmrMain {
         return bleu.scoreSeq(hyps);
     }
 
+    /**
+     * Adds a job training or loading a maximum entropy model to a training
+     * scheduler. Jobs that only load a pretrained model are assumed to require
+     * no additional memory.
+     * @param scheduler the training scheduler
+     * @param model the maximum entropy model
+     * @param modelsToTrain the maximum entropy models which should be trained
+     * @param memory the amount of memory (in MB) required for training the
+     * model, see {@link AmrMain#getTrainingMemoryEstimate(AutoLoadParams)}
+     * @param task the task training or loading the model
+     * @param dependencies the maximum entropy models whose jobs must be
+     * finished before this job is started
+     */
+    private static void addTrainingJob(TrainingScheduler scheduler,
+        Models model, List<Models> modelsToTrain, int memory,
+        TrainingScheduler.Task task, Models... dependencies) {
+        String[] names = new String[dependencies.length];
+        for (int i = 0; i < dependencies.length; i++) {
+            names[i] = dependencies[i].name();
+        }
+        scheduler.add(model.name(), modelsToTrain.contains(model) ? memory : 0,
+            task, names);
+    }
+
+    /**
+     * Estimates the amount of memory required for training a single maximum
+     * entropy model, see {@link TrainingScheduler}. As most models derive
+     * about one feature vector from each vertex, this is simply proportional
+     * to the number of vertices of the training and development data.
+     * @param params the parameters containing the training and development
+     * data
+     * @return the estimated amount of memory in MB
+     */
+    private static int getTrainingMemoryEstimate(AutoLoadParams params) {
+        if (params.trainingData == null || params.devData == null)
+            return 0;
+
+        long vertices = 0;
+        for (List<Amr> amrs :
+            Arrays.asList(params.trainingData, params.devData)) {
+            for (Amr amr : amrs) {
+                vertices += amr.getCompiledGraph().getVerticesBfs().size();
+            }
+        }
+        return (int) Math.min(
+            Integer.MAX_VALUE, (vertices * TRAINING_MEMORY_PER_VERTEX) >> 20);
+    }
+
     /**
      * Loads a list of AMR graphs from a given directory.
      * @param directory the directory from which the AMR graphs are loaded. This
@@ -688,11 +1272,12 @@ public class AmrMain {
      * @param forTesting whether the AMR graphs should be prepared for testing
      * (in which case no gold annotations, POS tagging and alignments are
      * loaded) or for training
-     * @return the preprocessed AMR graphs
+     * @return the preprocessed AMR graphs accepted by the filter given on the
+     * command line, see {@link CommandGenerate}
      */
     private List<Amr> loadAmrGraphs(String directory, boolean forTesting)
         throws IOException {
-        return loadAmrGraphs(directory, forTesting, -1, -1, -1);
+        return loadAmrGraphs(directory, forTesting, -1, amrFilter);
     }
 
     /**
@@ -707,62 +1292,140 @@ public class AmrMain {
      * @param limitPerSubdirectory the maximum number of AMR graphs to load per
      * subdirectory. If all AMR graphs should be loaded, simply set this to some
      * value below zero
-     * @param minRealLength the minimum length (in words) of the reference
-     * realization for each AMR graph to be included in the returned list. If
-     * this is set to some value &lt;0, all AMR graphs are included.
-     * @param maxRealLenght the maximum length (in words) of the reference
-     * realization for each AMR graph to be included in the returned list. If
-     * this is set to some value &lt;0, all AMR graphs are included.
+     * @param filter the filter selecting the AMR graphs to include in the
+     * returned list or {@code null} if all AMR graphs should be included. The
+     * filter is applied while reading the AMR graphs, so rejected AMR graphs
+     * are neither built nor prepared and their POS tags, dependency trees and
+     * alignments are skipped, see {@link AmrParser#fromFile(String, String,
+     * String, String, int, AmrLineFormat, AmrFilter)}.
      * @return the preprocessed AMR graphs
      */
     private List<Amr> loadAmrGraphs(String directory, boolean forTesting,
-        int limitPerSubdirectory, int minRealLength, int maxRealLenght)
-        throws IOException {
+        int limitPerSubdirectory, AmrFilter filter) throws IOException {
         List<Amr> ret = new ArrayList<>();
 
         boolean useJamrAlignments = !forTesting;
         boolean useEmAlignments = !forTesting;
 
-        for (String subdirectory : PathList.AMR_SUBDIRECTORIES) {
-            String path = directory + subdirectory;
-
+        List<String> paths = PathList.AMR_SUBDIRECTORIES.stream()
+                                 .map(subdirectory -> directory + subdirectory)
+                                 .collect(Collectors.toList());
+
+        // AMR graphs prepared for training are taken from the corpus cache
+        // whenever all files they are obtained from are unchanged; as the
+        // filter is only applied after loading them, the cache only ever
+        // contains entire subdirectories
+        boolean useCache =
+            useCorpusCache && !forTesting && limitPerSubdirectory < 0;
+        List<String> cacheKeys = useCache
+            ? ParallelHelper.map(paths, AmrMain::getCorpusCacheKey)
+            : null;
+        boolean[] cached = new boolean[paths.size()];
+
+        // the AMR graphs, POS tags, dependency trees and alignments of all
+        // subdirectories are read concurrently; the AMR graphs are then
+        // prepared for one subdirectory after another
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            indices.add(i);
+        }
+        List<List<Amr>> amrsPerSubdirectory = ParallelHelper.map(indices, i -> {
+            if (useCache) {
+                List<Amr> amrs = CorpusCache.load(cacheKeys.get(i));
+                if (amrs != null) {
+                    cached[i] = true;
+                    if (filter != null) {
+                        amrs.removeIf(amr -> !filter.accepts(amr));
+                    }
+                    return amrs;
+                }
+            }
+            String path = paths.get(i);
             String posTagFilePath = null;
             String dependencyTreeFilePath = null;
-            String amrsPath = path + PathList.AMR_FILENAME;
-
+            String emAlignmentFilePath = null;
             if (!forTesting) {
                 posTagFilePath = path + PathList.POS_FILENAME;
                 dependencyTreeFilePath = path + PathList.DEPENDENCIES_FILENAME;
             }
+            if (useEmAlignments) {
+                emAlignmentFilePath = path + PathList.EM_ALIGNMENTS_FILENAME;
+            }
 
-            List<Amr> amrs = AmrParser.fromFile(amrsPath,
-                dependencyTreeFilePath, posTagFilePath, limitPerSubdirectory,
-                useJamrAlignments ? AmrLineFormat.JAMR : null);
+            return AmrParser.fromFile(path + PathList.AMR_FILENAME,
+                dependencyTreeFilePath, posTagFilePath, emAlignmentFilePath,
+                limitPerSubdirectory,
+                useJamrAlignments ? AmrLineFormat.JAMR : null, filter);
+        });
 
-            if (useEmAlignments) {
-                AmrParser.addAlignmentsFromFile(amrs,
-                    path + PathList.EM_ALIGNMENTS_FILENAME,
-                    AmrLineFormat.EXTERNAL);
+        for (int i = 0; i < paths.size(); i++) {
+            String path = paths.get(i);
+            List<Amr> amrs = amrsPerSubdirectory.get(i);
+
+            if (cached[i]) {
+                Debugger.println("loaded " + amrs.size()
+                    + " prepared AMR graphs for " + path
+                    + " from the corpus cache");
+            } else {
+                prepareAmrGraphs(amrs, path, forTesting);
+                if (useCache && filter == null) {
+                    CorpusCache.store(cacheKeys.get(i), amrs);
+                }
             }
+            ret.addAll(amrs);
+        }
+        if (filter != null) {
+            Debugger.println("selected " + ret.size() + " AMR graphs from "
+                + directory + " (" + filter + ")");
+        }
+        return ret;
+    }
 
-            Amr.prepare(amrs, posTagger, forTesting);
-            Debugger.println("loaded and prepared " + amrs.size()
-                + " AMR graphs from " + path);
+    /**
+     * Prepares the AMR graphs loaded from a subdirectory of the training,
+     * development or test data. AMR graphs prepared for training are
+     * additionally assigned type alignments built from their dependency trees,
+     * see {@link BigraphAlignmentBuilder}.
+     * @param amrs the AMR graphs
+     * @param path the subdirectory from which the AMR graphs are loaded
+     * @param forTesting whether the AMR graphs should be prepared for testing
+     * or for training
+     */
+    private void prepareAmrGraphs(
+        List<Amr> amrs, String path, boolean forTesting) {
+        Amr.prepare(amrs, posTagger, forTesting);
 
+        if (!forTesting) {
+            BigraphAlignmentBuilder builder = new BigraphAlignmentBuilder();
             for (Amr amr : amrs) {
-                boolean include = true;
-                if (minRealLength >= 0 && amr.sentence.length < minRealLength) {
-                    include = false;
-                }
-                if (maxRealLenght >= 0 && amr.sentence.length > maxRealLenght) {
-                    include = false;
-                }
-                if (include) {
-                    ret.add(amr);
+                if (amr.dependencyTree != null) {
+                    builder.buildTypeAlignment(amr, amr.dependencyTree);
                 }
             }
         }
-        return ret;
+        Debugger.println(
+            "loaded and prepared " + amrs.size() + " AMR graphs from " + path);
+    }
+
+    /**
+     * Computes the key under which the AMR graphs of a subdirectory of the
+     * training or development data are stored in the corpus cache, see {@link
+     * CorpusCache}. It covers all files read while loading and preparing the
+     * AMR graphs; the POS tagger is identified by the size and modification
+     * time of its model file.
+     * @param path the subdirectory
+     * @return the key
+     */
+    private static String getCorpusCacheKey(String path) throws IOException {
+        List<String> files = Arrays.asList(path + PathList.AMR_FILENAME,
+            path + PathList.POS_FILENAME,
+            path + PathList.DEPENDENCIES_FILENAME,
+            path + PathList.EM_ALIGNMENTS_FILENAME,
+            PathList.VERBALIZATION_PATH, PathList.MORPH_VERBALIZATION_PATH,
+            PathList.BESTPOSTAGS_PATH);
+        File tagger = new File(PathList.POS_TAGGER_PATH);
+        return CorpusCache.getKey(files, Collections.singletonList(
+            tagger.length() + ":" + tagger.lastModified()));
     }
 
     /**
@@ -776,6 +1439,72 @@ public class AmrMain {
         return ret;
     }
 
+    /**
+     * Loads AMR graphs for testing from a single shard of a file.
+     * @param filename the name of the file
+     * @param shard the shard to load, see {@link Shard}
+     * @return the preprocessed AMR graphs
+     */
+    private List<Amr> loadAmrGraphs(String filename, Shard shard)
+        throws IOException {
+        List<Amr> ret = AmrParser.fromFile(filename, -1, null, shard);
+        Amr.prepare(ret, posTagger, true);
+        Debugger.println("loaded and prepared " + ret.size()
+            + " AMR graphs from shard " + shard + " of " + filename);
+        return ret;
+    }
+
+    /**
+     * Merges the sentences generated for all shards of an input file (see
+     * {@link Shard}) into a single output file such that the order of the
+     * sentences corresponds to the order of the AMR graphs in the input file.
+     * @param shardFiles the output files of all shards, ordered by the index of
+     * the corresponding shard
+     * @param byByteRange whether the input file was split by byte range
+     * instead of by index
+     * @param outputFile the file to which the merged sentences are written
+     */
+    private static void mergeShardOutputs(List<String> shardFiles,
+        boolean byByteRange, String outputFile) throws IOException {
+        List<List<String>> shardOutputs = new ArrayList<>();
+        int total = 0;
+        for (String shardFile : shardFiles) {
+            List<String> lines = Files.readAllLines(Paths.get(shardFile));
+            shardOutputs.add(lines);
+            total += lines.size();
+        }
+
+        List<String> merged = new ArrayList<>(total);
+
+        // for shards obtained by byte range, all shards simply have to be
+        // concatenated
+        if (byByteRange) {
+            shardOutputs.forEach(merged::addAll);
+        }
+
+        // for shards obtained by index, the sentence for the i-th AMR graph is
+        // found in shard i mod N at position i / N
+        else {
+            int count = shardOutputs.size();
+            for (int i = 0; i < count; i++) {
+                int expectedSize = (total - i + count - 1) / count;
+                if (shardOutputs.get(i).size() != expectedSize) {
+                    throw new AssertionError("shard " + i + "/" + count
+                        + " contains " + shardOutputs.get(i).size()
+                        + " sentences, but " + expectedSize
+                        + " were expected. Are all shard files given in the correct order?");
+                }
+            }
+            for (int i = 0; i < total; i++) {
+                merged.add(shardOutputs.get(i % count).get(i / count));
+            }
+        }
+
+        Files.write(Paths.get(outputFile), merged);
+        Debugger.println("merged " + total + " sentences from "
+            + shardFiles.size() + " shards into " + outputFile);
+    }
+
     /**
      * This class is a simple wrapper for all maximum entropy models required by
      * the generator.
@@ -852,4 +1581,169 @@ class CommandGenerate {
             "Show pairs of (reference realization, generated sentence) in the console when the generator is finished. "
             + "This is only possible if the AMR graphs are stored with tokenized reference realizations in the input file.")
     Boolean printOutputToStdout = false;
+
+    @Parameter(names = {"--shard"},
+        description =
+            "Only process the shard i/N of the input file, e.g. 0/4. By default, this shard contains every AMR graph whose "
+            + "index is congruent to i modulo N. This requires an input file to be specified.")
+    String shard;
+
+    @Parameter(names = {"--shard-by-bytes"},
+        description =
+            "Split the input file into shards of roughly equal size in bytes (aligned on the empty lines between AMR graphs) "
+            + "instead of by index. This flag must also be set when merging the outputs of such shards.")
+    Boolean shardByByteRange = false;
+
+    @Parameter(names = {"--merge"},
+        description =
+            "Merge the comma-separated output files of all shards, ordered by shard index, into the output file such that "
+            + "the sentences appear in the order of the original input file. No sentences are generated.")
+    List<String> mergeFiles;
+
+    @Parameter(names = {"--lm"},
+        description =
+            "The kind of language model to use, either berkeley (deserialized onto the heap from res/lm.binary), mapped "
+            + "(memory-mapped from res/lm.mapped, which requires considerably less heap space) or kenlm (loaded from "
+            + "res/lm.kenlm using KenLM). To load a language model from a different file, use kind:path "
+            + "(e.g. mapped:res/lm.q8.mapped).")
+    String languageModelType = "berkeley";
+
+    @Parameter(names = {"--cube-pruning"},
+        description =
+            "Combine the partial realizations of each vertex and its children using cube pruning, visiting at most the "
+            + "given number of pairs of partial realizations per step instead of all of them. This allows for larger "
+            + "beam sizes at the cost of a possibly slightly lower quality. If this is 0, all pairs are visited.")
+    Integer cubePruningPopLimit = 0;
+
+    @Parameter(names = {"--subtree-cache"},
+        description =
+            "Store the n-best partial realizations of up to the given number of subtrees and reuse them whenever an "
+            + "identical subtree occurs in the same context of another AMR graph; this mostly helps for frequent "
+            + "subtrees such as names, dates and quantities. If this is 0, no subtrees are stored.")
+    Integer subtreeCacheCapacity = 0;
+
+    @Parameter(names = {"--result-cache"},
+        description =
+            "Store the generated sentences of up to the given number of AMR graphs and return them directly whenever an "
+            + "AMR graph that differs only in variable names is processed again with the same "
+            + "hyperparameters. If this is 0, no sentences are stored.")
+    Integer resultCacheCapacity = 0;
+
+    @Parameter(names = {"--result-cache-ttl"},
+        description =
+            "The number of seconds after which sentences stored using --result-cache expire. If this is 0, stored "
+            + "sentences never expire.")
+    Long resultCacheTimeToLive = 0L;
+
+    @Parameter(names = {"--build-inflection-table"},
+        description =
+            "Compute the inflections of all PropBank framesets listed in res/concepts.txt that may be required for "
+            + "default realizations and store them in res/inflections.txt, from which they are loaded whenever the "
+            + "generator is set up. No sentences are generated.")
+    Boolean buildInflectionTable = false;
+
+    @Parameter(names = {"--realization-table"},
+        description =
+            "Look up the REALIZE transitions of frequent concepts in the precomputed table res/realizations.table "
+            + "before evaluating the REALIZE model. The generated sentences are identical to those obtained without "
+            + "the table. If the table is missing or has been built for a different model, it is ignored.")
+    Boolean useRealizationTable = false;
+
+    @Parameter(names = {"--build-realization-table"},
+        description =
+            "Generate sentences from the input file, count the feature vectors for which the REALIZE model is evaluated "
+            + "and store the outcomes of all frequent feature vectors in res/realizations.table for use with "
+            + "--realization-table. No output file is written.")
+    Boolean buildRealizationTable = false;
+
+    @Parameter(names = {"--realization-table-min-count"},
+        description =
+            "The minimum number of times a feature vector must be observed when using --build-realization-table in "
+            + "order to be included in the table.")
+    Integer realizationTableMinCount = 2;
+
+    @Parameter(names = {"--compare-lm"},
+        description =
+            "Generate sentences from the input file once for each of the given comma-separated kinds of language models "
+            + "(e.g. berkeley,mapped:res/lm.q8.mapped) and compare the results, the BLEU scores, the memory usage and the "
+            + "time required for generation.")
+    List<String> compareLanguageModelTypes;
+
+    @Parameter(names = {"--build-mapped-lm"}, arity = 2,
+        description =
+            "Build a memory-mapped language model (see --lm) from the language model stored either in ARPA format or as a "
+            + "binary Berkeley LM in the first given file and write it to the second given file (e.g. --build-mapped-lm "
+            + "res/lm.binary res/lm.mapped). No sentences are generated.")
+    List<String> buildMappedLanguageModel;
+
+    @Parameter(names = {"--lm-bits"},
+        description =
+            "The number of bits used by --build-mapped-lm to store log probabilities and backoff weights, either 8 or 16 "
+            + "for quantized values or 32 for unquantized values.")
+    Integer lmQuantizationBits = MappedLanguageModel.NO_QUANTIZATION;
+
+    @Parameter(names = {"--lm-prune"},
+        description =
+            "When using --build-mapped-lm, omit all n-grams of the highest order whose log probability is below the given "
+            + "threshold (e.g. --lm-prune -5); their probabilities are then computed using backoff weights. By default, "
+            + "no n-grams are omitted.")
+    Float lmPruningThreshold;
+
+    @Parameter(names = {"--compare-parsers"},
+        description =
+            "Parse the input file with both the single-pass and the regex-based AMR parser, check that the resulting "
+            + "graphs are identical and compare the time required for parsing; no sentences are generated.")
+    Boolean compareParsers = false;
+
+    @Parameter(names = {"--threads"},
+        description =
+            "The number of threads used for loading AMR graphs. By default, one thread per available processor is used.")
+    Integer threads;
+
+    @Parameter(names = {"--no-corpus-cache"},
+        description =
+            "Do not store the prepared training and development AMR graphs in res/corpus-cache/ and always load them "
+            + "from the corpus files instead.")
+    Boolean noCorpusCache = false;
+
+    @Parameter(names = {"--min-length"},
+        description =
+            "Only load AMR graphs from the training, development and test directories whose reference sentence "
+            + "consists of at least the given number of words. AMR graphs are filtered while reading their # ::tok "
+            + "lines, so rejected AMR graphs are never parsed or prepared.")
+    Integer minSentenceLength = -1;
+
+    @Parameter(names = {"--max-length"},
+        description =
+            "Only load AMR graphs from the training, development and test directories whose reference sentence "
+            + "consists of at most the given number of words, see --min-length.")
+    Integer maxSentenceLength = -1;
+
+    @Parameter(names = {"--ids"},
+        description =
+            "Only load AMR graphs from the training, development and test directories whose # ::id is listed in the "
+            + "given file (one id per line), see --min-length.")
+    String idFile;
+
+    @Parameter(names = {"--sample"},
+        description =
+            "Only load the given fraction of the AMR graphs from the training, development and test directories, "
+            + "see --min-length. The sample is determined by the ids of the AMR graphs, so the same AMR graphs are "
+            + "selected in every run.")
+    Double samplingRate = 1.0;
+
+    @Parameter(names = {"--training-threads"},
+        description =
+            "The maximum number of maximum entropy models trained concurrently. Models that do not depend on each other "
+            + "(e.g. the syntactic annotation and insertion models, or the reordering and realization models, which "
+            + "are trained after the first stage) are trained at the same time. By default, all models are trained one "
+            + "after another.")
+    Integer trainingThreads;
+
+    @Parameter(names = {"--training-memory"},
+        description =
+            "The amount of memory in MB available for training maximum entropy models concurrently; a model is only "
+            + "started if its estimated memory requirements fit into what is left by the models currently being "
+            + "trained. By default, this is the maximum heap size.")
+    Integer trainingMemory;
 }
@@ -99,6 +99,24 @@ public class PathList {
      */
     public static final String LANGUAGE_MODEL_PATH = BASEPATH + "res/lm.binary";
 
+    /**
+     * path to the {@link lm.MappedLanguageModel} file to be used for scoring
+     * sentences if the language model should be memory-mapped instead of
+     * deserialized onto the heap. This file can be built from a language model
+     * in ARPA format using {@link lm.MappedLanguageModel#fromArpa(String,
+     * String)}.
+     */
+    public static final String MAPPED_LANGUAGE_MODEL_PATH =
+        BASEPATH + "res/lm.mapped";
+
+    /**
+     * path to the {@link lm.KenLanguageModel} file to be used for scoring
+     * sentences if KenLM should be used instead of the Berkeley LM. This file
+     * may either be in ARPA format or in KenLM's binary format.
+     */
+    public static final String KENLM_LANGUAGE_MODEL_PATH =
+        BASEPATH + "res/lm.kenlm";
+
     /**
      * path to the parts of speech (POS) maximum entropy model to be used by the
      * generator
@@ -183,6 +201,13 @@ public class PathList {
     public static final String REALIZE_MAXENT_PATH =
         BASEPATH + "models/realize.bin.gz";
 
+    /**
+     * path to the precomputed table of REALIZE transitions for frequent
+     * feature vectors, see {@link ml.RealizationTable}
+     */
+    public static final String REALIZATION_TABLE_PATH =
+        BASEPATH + "res/realizations.table";
+
     /**
      * path to the map containing verbalizations like (developer → (person
      * (:ARG1-of develop-02))). The default version of this map is extracted
@@ -212,6 +237,28 @@ public class PathList {
      */
     public static final String CONCEPT_LIST = BASEPATH + "res/concepts.txt";
 
+    /**
+     * path to the index of WordNet POS tags and use counts, see {@link
+     * misc.WordNetIndex}. If this file does not exist, it is created from the
+     * WordNet dictionary.
+     */
+    public static final String WORDNET_INDEX_PATH =
+        BASEPATH + "res/wordnet.index.gz";
+
+    /**
+     * path to the precomputed inflections of all PropBank framesets contained
+     * in {@link PathList#CONCEPT_LIST}, see {@link gen.DefaultRealizer}
+     */
+    public static final String INFLECTIONS_PATH =
+        BASEPATH + "res/inflections.txt";
+
+    /**
+     * path to the directory in which prepared training and development AMR
+     * graphs are stored, see {@link dag.CorpusCache}
+     */
+    public static final String CORPUS_CACHE_DIR =
+        BASEPATH + "res/corpus-cache/";
+
     /**
      * path to a map containing (parent,child) pairs and the result of merging
      * them
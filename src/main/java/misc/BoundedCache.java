@@ -0,0 +1,161 @@
+package misc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe cache storing at most a fixed number of entries. If a new
+ * entry is added to a full cache, the least recently used entry is removed.
+ * Optionally, entries expire after a fixed amount of time. Additionally, the
+ * cache counts the number of successful and unsuccessful lookups as well as
+ * the number of removed entries so that its effectiveness can be assessed.
+ * @param <K> the type of keys
+ * @param <V> the type of cached values
+ */
+public class BoundedCache<K, V> {
+    private final int capacity;
+    private final long timeToLiveNanos;
+    private final LinkedHashMap<K, TimedValue<V>> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * A cached value along with the time at which it was stored.
+     */
+    private static class TimedValue<V> {
+        final V value;
+        final long storedAt;
+
+        TimedValue(V value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+
+    /**
+     * Creates a new, empty cache whose entries never expire.
+     * @param capacity the maximum number of entries to store within the cache
+     */
+    public BoundedCache(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * Creates a new, empty cache.
+     * @param capacity the maximum number of entries to store within the cache
+     * @param timeToLiveMillis the number of milliseconds after which an entry
+     * expires or 0 if entries should never expire
+     */
+    public BoundedCache(int capacity, long timeToLiveMillis) {
+        if (capacity <= 0) {
+            throw new AssertionError(
+                "the capacity of a cache must be positive, found " + capacity);
+        }
+        if (timeToLiveMillis < 0) {
+            throw new AssertionError(
+                "the time to live of cache entries must not be negative, found "
+                + timeToLiveMillis);
+        }
+        this.capacity = capacity;
+        this.timeToLiveNanos = timeToLiveMillis * 1000000L;
+        // the access order is used to determine the least recently used entry
+        entries = new LinkedHashMap<K, TimedValue<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<K, TimedValue<V>> eldest) {
+                if (size() > BoundedCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param key the key
+     * @return the value stored for the given key or {@code null} if there is
+     * no such value or if it has expired
+     */
+    public synchronized V get(K key) {
+        TimedValue<V> entry = entries.get(key);
+        if (entry != null && isExpired(entry)) {
+            entries.remove(key);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Stores a value for the given key, possibly removing the least recently
+     * used entry of the cache.
+     * @param key the key
+     * @param value the value to store
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new TimedValue<>(value, System.nanoTime()));
+    }
+
+    private boolean isExpired(TimedValue<V> entry) {
+        return timeToLiveNanos > 0
+            && System.nanoTime() - entry.storedAt > timeToLiveNanos;
+    }
+
+    /**
+     * Removes all entries from the cache and resets its statistics.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        expirations = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    /**
+     * @return the fraction of lookups that were successful or 0 if there were
+     * no lookups
+     */
+    public synchronized double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    public synchronized String toString() {
+        return entries.size() + "/" + capacity + " entries, " + hits
+            + " hits, " + misses + " misses, " + evictions + " evictions, "
+            + expirations + " expirations";
+    }
+}
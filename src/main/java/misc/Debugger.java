@@ -1,14 +1,33 @@
 package misc;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
 /**
  * This class manages the output of debugging information to the console.
  */
 public class Debugger {
     public static boolean PRINT_DEBUG_INFORMATION = true;
 
+    // the number of nested calls to runQuietly() on the current thread; output
+    // to System.out is discarded on all threads for which this is positive
+    private static final ThreadLocal<Integer> quietDepth =
+        ThreadLocal.withInitial(() -> 0);
+    // whether System.out has been replaced by a stream that discards the
+    // output of quiet threads, see installQuietStream()
+    private static boolean quietStreamInstalled = false;
+
     // non-instantiable class
     private Debugger() {}
 
+    /**
+     * An action performed by {@link Debugger#runQuietly(Action)}.
+     */
+    public interface Action<T> {
+        T run() throws IOException;
+    }
+
     public static void println(String x) {
         if (PRINT_DEBUG_INFORMATION)
             System.out.println(x);
@@ -28,4 +47,56 @@ public class Debugger {
         if (PRINT_DEBUG_INFORMATION)
             System.err.print(x);
     }
+
+    /**
+     * Performs an action while discarding all output written to {@code
+     * System.out} by the current thread, e.g. the progress messages printed by
+     * third-party libraries. Unlike replacing {@code System.out} for the
+     * duration of the action, this does not affect the output of other
+     * threads, so several such actions may be performed concurrently.
+     * @param action the action to perform
+     * @return the result of the action
+     */
+    public static <T> T runQuietly(Action<T> action) throws IOException {
+        installQuietStream();
+        quietDepth.set(quietDepth.get() + 1);
+        try {
+            return action.run();
+        } finally {
+            quietDepth.set(quietDepth.get() - 1);
+        }
+    }
+
+    /**
+     * Replaces {@code System.out} once by a stream that forwards all output to
+     * the original stream unless it is written by a thread that is currently
+     * performing an action using {@link Debugger#runQuietly(Action)}.
+     */
+    private static synchronized void installQuietStream() {
+        if (quietStreamInstalled)
+            return;
+
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                if (quietDepth.get() == 0) {
+                    original.write(b);
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                if (quietDepth.get() == 0) {
+                    original.write(b, off, len);
+                }
+            }
+
+            @Override
+            public void flush() {
+                original.flush();
+            }
+        }, true));
+        quietStreamInstalled = true;
+    }
 }
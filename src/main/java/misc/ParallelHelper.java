@@ -0,0 +1,164 @@
+package misc;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class provides static methods for processing lists of independent items
+ * on several threads while preserving the order of the results. All work is
+ * carried out by a single fork-join pool, so parallel operations may be
+ * nested without blocking worker threads, e.g. when several files are read
+ * concurrently and each file is split into chunks that are again processed
+ * concurrently.
+ */
+public class ParallelHelper {
+    // the number of batches per thread into which lists are split by
+    // flatMap(), so that batches that take longer to process do not leave
+    // other threads idle
+    private static final int BATCHES_PER_THREAD = 4;
+
+    // the number of threads used for parallel operations
+    private static int parallelism = Runtime.getRuntime().availableProcessors();
+    // the pool executing all parallel operations, created on demand
+    private static ForkJoinPool pool;
+
+    // non-instantiable class
+    private ParallelHelper() {}
+
+    /**
+     * A function applied to each item of a list by {@link
+     * ParallelHelper#map(List, Task)}.
+     */
+    public interface Task<T, R> {
+        R apply(T item) throws IOException;
+    }
+
+    /**
+     * @return the number of threads used for parallel operations
+     */
+    public static synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of threads used for parallel operations. If this is set
+     * to 1, all operations are carried out sequentially on the calling thread.
+     * @param parallelism the number of threads, must be at least 1
+     */
+    public static synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new AssertionError("the parallelism must be at least 1");
+        }
+        if (pool != null && parallelism != ParallelHelper.parallelism) {
+            pool.shutdown();
+            pool = null;
+        }
+        ParallelHelper.parallelism = parallelism;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    /**
+     * Applies a task to each item of a list, using up to {@link
+     * ParallelHelper#getParallelism()} threads. If the task fails for some
+     * item, the exception thrown for the first such item (with respect to the
+     * order of the list) is rethrown after all items have been processed.
+     * @param items the items to process
+     * @param task the task to apply to each item
+     * @return the results of the task, in the same order as {@code items}
+     */
+    public static <T, R> List<R> map(List<T> items, Task<T, R> task)
+        throws IOException {
+        List<R> ret = new ArrayList<>(items.size());
+        if (items.size() <= 1 || getParallelism() <= 1) {
+            for (T item : items) {
+                ret.add(task.apply(item));
+            }
+            return ret;
+        }
+
+        Object[] results = new Object[items.size()];
+        Throwable[] failures = new Throwable[items.size()];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            int index = i;
+            tasks.add(ForkJoinTask.adapt(() -> {
+                try {
+                    results[index] = task.apply(items.get(index));
+                } catch (IOException | RuntimeException | Error e) {
+                    failures[index] = e;
+                }
+            }));
+        }
+
+        // tasks started from within a worker thread of some pool are forked
+        // into that pool, so that the calling worker helps executing them
+        if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            getPool().invoke(
+                ForkJoinTask.adapt(() -> { ForkJoinTask.invokeAll(tasks); }));
+        }
+
+        for (Throwable failure : failures) {
+            if (failure instanceof IOException)
+                throw (IOException) failure;
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if (failure instanceof Error)
+                throw (Error) failure;
+        }
+        for (Object result : results) {
+            @SuppressWarnings("unchecked") R r = (R) result;
+            ret.add(r);
+        }
+        return ret;
+    }
+
+    /**
+     * Applies a task returning a list to each item of a list and concatenates
+     * the results. To keep the overhead low for long lists of small items, the
+     * items are split into a few batches of consecutive items per thread; each
+     * batch is processed by a single thread which collects its results in a
+     * list of its own, and the lists of all batches are concatenated in the
+     * order of the batches, see {@link ParallelHelper#map(List, Task)}.
+     * @param items the items to process
+     * @param task the task to apply to each item
+     * @return the concatenated results of the task, in the same order as
+     * {@code items}
+     */
+    public static <T, R> List<R> flatMap(List<T> items, Task<T, List<R>> task)
+        throws IOException {
+        int batchCount = Math.min(
+            items.size(), getParallelism() * BATCHES_PER_THREAD);
+        List<Integer> batches = new ArrayList<>(batchCount);
+        for (int i = 0; i < batchCount; i++) {
+            batches.add(i);
+        }
+
+        List<List<R>> resultsPerBatch = map(batches, batch -> {
+            int start = (int) ((long) items.size() * batch / batchCount);
+            int end = (int) ((long) items.size() * (batch + 1) / batchCount);
+            List<R> results = new ArrayList<>();
+            for (T item : items.subList(start, end)) {
+                results.addAll(task.apply(item));
+            }
+            return results;
+        });
+
+        int size = 0;
+        for (List<R> results : resultsPerBatch) {
+            size += results.size();
+        }
+        List<R> ret = new ArrayList<>(size);
+        resultsPerBatch.forEach(ret::addAll);
+        return ret;
+    }
+}
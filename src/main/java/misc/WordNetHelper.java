@@ -1,14 +1,13 @@
 package misc;
 
+import main.PathList;
 import net.sf.extjwnl.JWNLException;
-import net.sf.extjwnl.data.IndexWord;
 import net.sf.extjwnl.data.POS;
-import net.sf.extjwnl.data.Synset;
-import net.sf.extjwnl.data.Word;
 import net.sf.extjwnl.dictionary.Dictionary;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
 
@@ -20,13 +19,32 @@ import java.util.Map;
  * interface to WordNet.
  */
 public class WordNetHelper {
-    private final Dictionary dictionary;
+    private final WordNetIndex index;
 
     /**
-     * Creates a new WordNetHelper.
+     * Creates a new WordNetHelper. All queries are answered using a {@link
+     * WordNetIndex} which is loaded from {@link PathList#WORDNET_INDEX_PATH}
+     * if this file exists; otherwise, the index is built from the WordNet
+     * dictionary and stored at this path.
      */
     public WordNetHelper() throws JWNLException {
-        this.dictionary = Dictionary.getDefaultResourceInstance();
+        WordNetIndex index = null;
+        if (Files.exists(Paths.get(PathList.WORDNET_INDEX_PATH))) {
+            try {
+                index = WordNetIndex.read(PathList.WORDNET_INDEX_PATH);
+            } catch (IOException e) {
+                Debugger.println("rebuilding WordNet index: " + e.getMessage());
+            }
+        }
+        if (index == null) {
+            index = WordNetIndex.build(Dictionary.getDefaultResourceInstance());
+            try {
+                index.write(PathList.WORDNET_INDEX_PATH);
+            } catch (IOException e) {
+                Debugger.println("could not store WordNet index: " + e);
+            }
+        }
+        this.index = index;
     }
 
     /**
@@ -37,19 +55,7 @@ public class WordNetHelper {
      * @return the list of POS tags
      */
     public List<POS> getAllPOSTags(String word) {
-        List<POS> ret = new ArrayList<>();
-        for (POS pos : POS.getAllPOS()) {
-            IndexWord iw = null;
-            try {
-                iw = dictionary.getIndexWord(pos, word);
-            } catch (JWNLException e) {
-                System.err.println(e);
-            }
-            if (iw != null) {
-                ret.add(pos);
-            }
-        }
-        return ret;
+        return index.getPOSTags(word);
     }
 
     /**
@@ -66,44 +72,6 @@ public class WordNetHelper {
      */
     public Map<POS, Integer> getAllPOSTagsWithCount(
         String word, boolean useMax) {
-        Map<POS, Integer> ret = new HashMap<>();
-        for (POS pos : POS.getAllPOS()) {
-            IndexWord iw = null;
-            try {
-                iw = dictionary.getIndexWord(pos, word);
-            } catch (JWNLException e) {
-                System.err.println(e);
-            }
-            if (iw != null) {
-                ret.put(pos, getWordCount(iw, useMax));
-            }
-        }
-        return ret;
-    }
-
-    /**
-     * This function computes the observed count of an IndexWord as required by
-     * {@link WordNetHelper#getAllPOSTagsWithCount(String, boolean)}.
-     * @param word the IndexWord
-     * @param useMax if set to true, the maximum of all use counts observed for
-     * each (word, POS)-pair is assigned to it. Otherwise, the sum of all use
-     * counts is taken.
-     * @return the use count of {@code word} according to WordNet
-     */
-    private int getWordCount(IndexWord word, boolean useMax) {
-        int sum = 0;
-        for (Synset synset : word.getSenses()) {
-            int count = synset.getWords()
-                            .stream()
-                            .filter(w -> w.getLemma().equals(word.getLemma()))
-                            .mapToInt(Word::getUseCount)
-                            .sum();
-            if (!useMax) {
-                sum += count;
-            } else {
-                sum = Math.max(sum, count);
-            }
-        }
-        return sum;
+        return index.getPOSTagsWithCount(word, useMax);
     }
 }
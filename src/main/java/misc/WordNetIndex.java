@@ -0,0 +1,249 @@
+package misc;
+
+import net.sf.extjwnl.JWNLException;
+import net.sf.extjwnl.data.IndexWord;
+import net.sf.extjwnl.data.POS;
+import net.sf.extjwnl.data.Synset;
+import net.sf.extjwnl.data.Word;
+import net.sf.extjwnl.dictionary.Dictionary;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An immutable index containing, for each lemma of WordNet, the POS tags that
+ * can be assigned to it along with the maximum and the sum of the use counts
+ * observed for each (lemma, POS)-pair (see {@link
+ * WordNetHelper#getAllPOSTagsWithCount(String, boolean)}). The index is built
+ * once by iterating over all index words of a WordNet dictionary and can be
+ * stored in a compact binary file, so that the dictionary itself does not need
+ * to be accessed when querying POS tags. <br/> Internally, the lemmas are
+ * stored in an open addressing hash table; the counts of the lemma stored in
+ * slot i are found at positions {@code 2 * (i * |POS| + p)} (maximum) and
+ * {@code 2 * (i * |POS| + p) + 1} (sum) of a single integer array, where p is
+ * the index of the POS tag in {@link POS#getAllPOS()} and -1 indicates that
+ * the POS tag cannot be assigned to the lemma.
+ */
+public class WordNetIndex {
+    private static final int MAGIC = 0x574e4958;
+    private static final int VERSION = 1;
+
+    // the maximum load factor of the hash table
+    private static final double LOAD_FACTOR = 0.5;
+
+    private static final List<POS> ALL_POS = POS.getAllPOS();
+
+    private final String[] lemmas;
+    private final int[] counts;
+    private final int size;
+
+    /**
+     * Creates an index from a map of lemmas to counts as described in the
+     * class description.
+     */
+    private WordNetIndex(Map<String, int[]> lemmaCounts) {
+        int slots = Integer.highestOneBit(
+            (int) Math.max(2, Math.ceil(lemmaCounts.size() / LOAD_FACTOR)) * 2
+            - 1);
+        lemmas = new String[slots];
+        counts = new int[slots * ALL_POS.size() * 2];
+        size = lemmaCounts.size();
+
+        for (Map.Entry<String, int[]> entry : lemmaCounts.entrySet()) {
+            int slot = hash(entry.getKey()) & (slots - 1);
+            while (lemmas[slot] != null) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            lemmas[slot] = entry.getKey();
+            System.arraycopy(entry.getValue(), 0, counts,
+                slot * ALL_POS.size() * 2, ALL_POS.size() * 2);
+        }
+    }
+
+    /**
+     * Builds an index from all index words of a WordNet dictionary.
+     * @param dictionary the dictionary
+     * @return the index
+     */
+    public static WordNetIndex build(Dictionary dictionary)
+        throws JWNLException {
+        Map<String, int[]> lemmaCounts = new HashMap<>();
+        for (int p = 0; p < ALL_POS.size(); p++) {
+            Iterator<IndexWord> it =
+                dictionary.getIndexWordIterator(ALL_POS.get(p));
+            while (it.hasNext()) {
+                IndexWord word = it.next();
+                int[] wordCounts = lemmaCounts.computeIfAbsent(
+                    normalize(word.getLemma()), lemma -> {
+                        int[] ret = new int[ALL_POS.size() * 2];
+                        Arrays.fill(ret, -1);
+                        return ret;
+                    });
+
+                int max = 0, sum = 0;
+                for (Synset synset : word.getSenses()) {
+                    int count = synset.getWords()
+                                    .stream()
+                                    .filter(w
+                                        -> w.getLemma().equals(
+                                            word.getLemma()))
+                                    .mapToInt(Word::getUseCount)
+                                    .sum();
+                    max = Math.max(max, count);
+                    sum += count;
+                }
+                wordCounts[2 * p] = max;
+                wordCounts[2 * p + 1] = sum;
+            }
+        }
+
+        Debugger.println(
+            "built WordNet index with " + lemmaCounts.size() + " lemmas");
+        return new WordNetIndex(lemmaCounts);
+    }
+
+    /**
+     * Loads an index created by {@link WordNetIndex#write(String)}.
+     * @param filename the file in which the index is stored
+     * @return the index
+     * @throws IOException if the file does not contain an index
+     */
+    public static WordNetIndex read(String filename) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                 new GZIPInputStream(new FileInputStream(filename))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(
+                    filename + " does not contain a WordNet index");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported version " + version
+                    + " of WordNet index " + filename);
+            }
+            int nrOfPos = in.readInt();
+            if (nrOfPos != ALL_POS.size()) {
+                throw new IOException("WordNet index " + filename
+                    + " has been built for a different set of POS tags");
+            }
+            int size = in.readInt();
+
+            Map<String, int[]> lemmaCounts = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                String lemma = in.readUTF();
+                int[] wordCounts = new int[nrOfPos * 2];
+                for (int j = 0; j < wordCounts.length; j++) {
+                    wordCounts[j] = in.readInt();
+                }
+                lemmaCounts.put(lemma, wordCounts);
+            }
+            return new WordNetIndex(lemmaCounts);
+        }
+    }
+
+    /**
+     * Writes this index to a gzipped binary file.
+     * @param filename the file to which the index should be written
+     */
+    public void write(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(
+                     new GZIPOutputStream(new FileOutputStream(filename))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ALL_POS.size());
+            out.writeInt(size);
+            for (int slot = 0; slot < lemmas.length; slot++) {
+                if (lemmas[slot] == null)
+                    continue;
+                out.writeUTF(lemmas[slot]);
+                for (int j = 0; j < ALL_POS.size() * 2; j++) {
+                    out.writeInt(counts[slot * ALL_POS.size() * 2 + j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param word the English word in its base form
+     * @return the list of POS tags that can be assigned to the word, see
+     * {@link WordNetHelper#getAllPOSTags(String)}
+     */
+    public List<POS> getPOSTags(String word) {
+        List<POS> ret = new ArrayList<>();
+        int offset = find(word);
+        if (offset < 0)
+            return ret;
+        for (int p = 0; p < ALL_POS.size(); p++) {
+            if (counts[offset + 2 * p] >= 0) {
+                ret.add(ALL_POS.get(p));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param word the English word in its base form
+     * @param useMax whether the maximum or the sum of all use counts observed
+     * for each (word, POS)-pair should be returned
+     * @return a map from all POS tags that can be assigned to the word to their
+     * counts, see {@link WordNetHelper#getAllPOSTagsWithCount(String,
+     * boolean)}
+     */
+    public Map<POS, Integer> getPOSTagsWithCount(String word, boolean useMax) {
+        Map<POS, Integer> ret = new HashMap<>();
+        int offset = find(word);
+        if (offset < 0)
+            return ret;
+        for (int p = 0; p < ALL_POS.size(); p++) {
+            int max = counts[offset + 2 * p];
+            if (max >= 0) {
+                ret.put(ALL_POS.get(p),
+                    useMax ? max : counts[offset + 2 * p + 1]);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param word the word to look up
+     * @return the position of the counts of the given word in {@link
+     * WordNetIndex#counts} or -1 if the word is not contained in WordNet
+     */
+    private int find(String word) {
+        String lemma = normalize(word);
+        int mask = lemmas.length - 1;
+        for (int slot = hash(lemma) & mask;; slot = (slot + 1) & mask) {
+            if (lemmas[slot] == null)
+                return -1;
+            if (lemmas[slot].equals(lemma))
+                return slot * ALL_POS.size() * 2;
+        }
+    }
+
+    /**
+     * Spreads the higher bits of the hash code of a lemma to the lower ones,
+     * which are used to determine its slot.
+     */
+    private static int hash(String lemma) {
+        int h = lemma.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Normalizes a word in the same way as WordNet lemmas are normalized,
+     * i.e. by converting it to lower case and replacing underscores with
+     * spaces.
+     */
+    private static String normalize(String word) {
+        return word.trim().toLowerCase().replace('_', ' ');
+    }
+
+    /**
+     * @return the number of lemmas contained in this index
+     */
+    public int size() {
+        return size;
+    }
+}
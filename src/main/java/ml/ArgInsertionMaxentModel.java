@@ -48,7 +48,7 @@ public class ArgInsertionMaxentModel extends StanfordMaxentModelImplementation {
     public List<Datum<String, String>> toDatumList(Amr amr, Edge edge,
         boolean forTesting, String relPos, String fromRealization,
         String toRealization, String fromVoice) {
-        boolean isArg = edge.getLabel().matches(":ARG[0-9]");
+        boolean isArg = edge.isArgEdge();
         if (!isArg)
             return Collections.emptyList();
 
@@ -132,7 +132,7 @@ public class ArgInsertionMaxentModel extends StanfordMaxentModelImplementation {
             : toReal.endsWith("s") ? toReal.substring(0, toReal.length() - 1)
                                    : toReal;
 
-        int depth = to.subtreeSize();
+        int depth = amr.getCompiledGraph().getSubtreeSize(to);
 
         List<Edge> fromOutEdges = new ArrayList<>(from.getOutgoingEdges());
         fromOutEdges.remove(from.getInstanceEdge());
@@ -169,13 +169,7 @@ public class ArgInsertionMaxentModel extends StanfordMaxentModelImplementation {
             }
         }
 
-        Vertex currentVertex = from;
-
-        int distanceToRoot = 0;
-        while (!currentVertex.getIncomingEdges().isEmpty()) {
-            distanceToRoot++;
-            currentVertex = currentVertex.getIncomingEdges().get(0).getFrom();
-        }
+        int distanceToRoot = amr.getCompiledGraph().getDistanceToRoot(from);
 
         List<IndicatorFeature> features = new ArrayList<>();
 
@@ -241,12 +235,12 @@ public class ArgInsertionMaxentModel extends StanfordMaxentModelImplementation {
 
         features.add(new StringFeature("fromNumberOfArgs",
             fromOutEdges.stream()
-                    .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                    .filter(e -> e.isArgEdge())
                     .count()
                 + ""));
         features.add(new StringFeature("toNumberOfArgs",
             toOutEdges.stream()
-                    .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                    .filter(e -> e.isArgEdge())
                     .count()
                 + ""));
 
@@ -297,9 +291,9 @@ public class ArgInsertionMaxentModel extends StanfordMaxentModelImplementation {
                 .composeWith(
                     new StringFeature(fromInst + simpleFromPos), "c023"));
 
-        featureManager.addAllUnaries(features);
+        getFeatureManager().addAllUnaries(features);
 
-        List<String> context = featureManager.toContext();
+        List<String> context = getFeatureManager().toContext();
         List<Datum<String, String>> ret = new ArrayList<>();
 
         this.usesRVF = true;
@@ -106,9 +106,9 @@ public class ChildInsertionMaxentModel
         features.add(new StringFeature(
             "realization-parent", vRealization + parentString));
 
-        featureManager.addAllUnaries(features);
+        getFeatureManager().addAllUnaries(features);
 
-        List<String> context = featureManager.toContext();
+        List<String> context = getFeatureManager().toContext();
 
         List<Datum<String, String>> ret = new ArrayList<>();
 
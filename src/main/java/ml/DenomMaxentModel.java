@@ -189,17 +189,13 @@ public class DenomMaxentModel extends StanfordMaxentModelImplementation {
         allPosInLabels.add(inLabel + "," + parentPos);
 
         if (parentVertex != null) {
-            for (Vertex v : amr.dag) {
-                if (v.isLink() && v.annotation.original == vertex) {
-                    if (!v.getIncomingEdges().isEmpty()) {
-                        Vertex newParent =
-                            v.getIncomingEdges().get(0).getFrom();
-                        allParentConcepts.add(newParent.getInstance());
-                        allInLabels.add(v.getIncomingEdges().get(0).getLabel());
-                        allPosInLabels.add(
-                            v.getIncomingEdges().get(0).getLabel() + ","
-                            + newParent.getInstance());
-                    }
+            for (Vertex v : amr.getCompiledGraph().getLinks(vertex)) {
+                if (!v.getIncomingEdges().isEmpty()) {
+                    Vertex newParent = v.getIncomingEdges().get(0).getFrom();
+                    allParentConcepts.add(newParent.getInstance());
+                    allInLabels.add(v.getIncomingEdges().get(0).getLabel());
+                    allPosInLabels.add(v.getIncomingEdges().get(0).getLabel()
+                        + "," + newParent.getInstance());
                 }
             }
         }
@@ -287,10 +283,11 @@ public class DenomMaxentModel extends StanfordMaxentModelImplementation {
             new StringFeature("parentInst-inLabel", parentInstance + inLabel));
         features.add(new StringFeature("inLabel", inLabel));
         features.add(new StringFeature("outSize", outEdges.size()));
-        features.add(new StringFeature("depth", vertex.subtreeSize()));
+        int subtreeSize = amr.getCompiledGraph().getSubtreeSize(vertex);
+        features.add(new StringFeature("depth", subtreeSize));
         features.add(new StringFeature("numberOfArgs",
             outEdges.stream()
-                    .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                    .filter(e -> e.isArgEdge())
                     .count()
                 + ""));
         features.add(
@@ -353,9 +350,9 @@ public class DenomMaxentModel extends StanfordMaxentModelImplementation {
         features.add(new StringFeature("hasInverseLabel", hasInverseLabel));
         features.add(new StringFeature(
             "hasInvArgFeature", (hasInverseLabel && hasArgLabel)));
-        featureManager.addAllUnaries(features);
+        getFeatureManager().addAllUnaries(features);
 
-        List<String> context = featureManager.toContext();
+        List<String> context = getFeatureManager().toContext();
         return Collections.singletonList(new BasicDatum<>(context, result));
     }
 
@@ -218,9 +218,9 @@ public class FirstStageMaxentModel extends StanfordMaxentModelImplementation {
                         (from != null && from.getOutgoingEdges().size() > 2)),
                     "*c1"));
 
-        featureManager.addAllUnaries(features);
+        getFeatureManager().addAllUnaries(features);
 
-        List<String> context = featureManager.toContext();
+        List<String> context = getFeatureManager().toContext();
         return Collections.singletonList(new BasicDatum<>(context, result));
     }
 }
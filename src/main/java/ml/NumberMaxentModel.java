@@ -191,17 +191,13 @@ public class NumberMaxentModel extends StanfordMaxentModelImplementation {
         allPosInLabels.add(inLabel + "," + parentPos);
 
         if (parentVertex != null) {
-            for (Vertex v : amr.dag) {
-                if (v.isLink() && v.annotation.original == vertex) {
-                    if (!v.getIncomingEdges().isEmpty()) {
-                        Vertex newParent =
-                            v.getIncomingEdges().get(0).getFrom();
-                        allParentConcepts.add(newParent.getInstance());
-                        allInLabels.add(v.getIncomingEdges().get(0).getLabel());
-                        allPosInLabels.add(
-                            v.getIncomingEdges().get(0).getLabel() + ","
-                            + newParent.getInstance());
-                    }
+            for (Vertex v : amr.getCompiledGraph().getLinks(vertex)) {
+                if (!v.getIncomingEdges().isEmpty()) {
+                    Vertex newParent = v.getIncomingEdges().get(0).getFrom();
+                    allParentConcepts.add(newParent.getInstance());
+                    allInLabels.add(v.getIncomingEdges().get(0).getLabel());
+                    allPosInLabels.add(v.getIncomingEdges().get(0).getLabel()
+                        + "," + newParent.getInstance());
                 }
             }
         }
@@ -209,8 +205,8 @@ public class NumberMaxentModel extends StanfordMaxentModelImplementation {
         boolean hasInverseLabel = inLabel.endsWith("-of");
         boolean hasArgLabel = inLabel.startsWith(":ARG");
 
-        int depth = vertex.subtreeSize();
-        String depthString = Math.min(3, vertex.subtreeSize()) + "";
+        int depth = amr.getCompiledGraph().getSubtreeSize(vertex);
+        String depthString = Math.min(3, depth) + "";
 
         List<IndicatorFeature> features = new ArrayList<>();
 
@@ -271,10 +267,10 @@ public class NumberMaxentModel extends StanfordMaxentModelImplementation {
             new StringFeature("parentInst-inLabel", parentInstance + inLabel));
         features.add(new StringFeature("inLabel", inLabel));
         features.add(new StringFeature("outSize", outEdges.size()));
-        features.add(new StringFeature("depth", vertex.subtreeSize()));
+        features.add(new StringFeature("depth", depth));
         features.add(new StringFeature("numberOfArgs",
             outEdges.stream()
-                    .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                    .filter(e -> e.isArgEdge())
                     .count()
                 + ""));
         features.add(new StringFeature(
@@ -282,7 +278,7 @@ public class NumberMaxentModel extends StanfordMaxentModelImplementation {
         features.add(
             new ListFeature("allPosInLabels-depth", allPosInLabels)
                 .composeWith(
-                    new StringFeature("depth", vertex.subtreeSize()), "*c0"));
+                    new StringFeature("depth", depth), "*c0"));
         features.add(
             new ListFeature("allInLabels-outSize", allInLabels)
                 .composeWith(
@@ -303,16 +299,16 @@ public class NumberMaxentModel extends StanfordMaxentModelImplementation {
         features.add(
             new StringFeature("instance-mode", instance + vertex.mode));
         features.add(new StringFeature(
-            "instance-depth", instance + vertex.subtreeSize()));
+            "instance-depth", instance + depth));
         features.add(
             new StringFeature("inLabel-outSize", inLabel + outEdges.size()));
         features.add(new StringFeature("inLabel-numberOfArgs",
             inLabel
                 + +outEdges.stream()
-                       .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                       .filter(e -> e.isArgEdge())
                        .count()));
         features.add(
-            new StringFeature("inLabel-depth", inLabel + vertex.subtreeSize()));
+            new StringFeature("inLabel-depth", inLabel + depth));
         features.add(new StringFeature("parentInst-grandparentInst",
             parentInstance + grandparentInstance));
         features.add(
@@ -321,7 +317,7 @@ public class NumberMaxentModel extends StanfordMaxentModelImplementation {
         features.add(new StringFeature("parentInst-numberOfArgs",
             parentInstance
                 + outEdges.stream()
-                      .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                      .filter(e -> e.isArgEdge())
                       .count()));
         features.add(new StringFeature("parentPos-hasInvArgFeature",
             parentPos + (hasInverseLabel && hasArgLabel)));
@@ -387,14 +383,14 @@ public class NumberMaxentModel extends StanfordMaxentModelImplementation {
 
         features.add(new StringFeature("numberOfArgs",
             outEdges.stream()
-                    .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                    .filter(e -> e.isArgEdge())
                     .count()
                 + ""));
         features.add(new StringFeature("mode", vertex.mode));
         features.add(new StringFeature(
             "parentMode", parentVertex == null ? ":ROOT" : parentVertex.mode));
 
-        features.add(new StringFeature("depth", vertex.subtreeSize()));
+        features.add(new StringFeature("depth", depth));
 
         features.add(new StringFeature("hasInverseLabel", hasInverseLabel));
         features.add(new StringFeature(
@@ -415,9 +411,9 @@ public class NumberMaxentModel extends StanfordMaxentModelImplementation {
         }
         features.addAll(newFeatures);
 
-        featureManager.addAllUnaries(features);
+        getFeatureManager().addAllUnaries(features);
 
-        List<String> context = featureManager.toContext();
+        List<String> context = getFeatureManager().toContext();
 
         this.usesRVF = true;
 
@@ -3,6 +3,7 @@ package ml;
 import dag.Amr;
 import dag.Vertex;
 import misc.Debugger;
+import misc.ParallelHelper;
 import opennlp.tools.ml.maxent.GIS;
 import opennlp.tools.ml.maxent.GISModel;
 import opennlp.tools.ml.maxent.io.GISModelReader;
@@ -16,8 +17,6 @@ import opennlp.tools.util.ObjectStream;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
@@ -33,9 +32,11 @@ public abstract class OpenNlpMaxentModelImplementation {
     public AutoLoadParams params;
 
     /**
-     * The feature manager used by this model, see {@link FeatureManager}
+     * The feature managers used by this model, one for each thread extracting
+     * feature vectors, see {@link FeatureManager}
      */
-    protected FeatureManager featureManager;
+    private final ThreadLocal<FeatureManager> featureManagers =
+        ThreadLocal.withInitial(FeatureManager::new);
 
     private double bestScore;
     private GISModel model;
@@ -43,8 +44,14 @@ public abstract class OpenNlpMaxentModelImplementation {
     /**
      * Creates a new Open NLP maximum entropy model.
      */
-    public OpenNlpMaxentModelImplementation() {
-        featureManager = new FeatureManager();
+    public OpenNlpMaxentModelImplementation() {}
+
+    /**
+     * @return the feature manager used by this model on the current thread,
+     * see {@link FeatureManager}
+     */
+    protected FeatureManager getFeatureManager() {
+        return featureManagers.get();
     }
 
     /**
@@ -62,7 +69,12 @@ public abstract class OpenNlpMaxentModelImplementation {
 
     /**
      * Automatically loads this maximum entropy model using the parameters
-     * specified by an instance of {@link AutoLoadParams}
+     * specified by an instance of {@link AutoLoadParams}. If the model is
+     * trained, a model is trained for each number of iterations in {@link
+     * AutoLoadParams#iterNrs}; as only the number of iterations differs
+     * between these models, the events of the training and development data
+     * are derived only once and all models are trained from the same {@link
+     * DataIndexer}.
      * @param params the parameters to use for loading the model
      * @param filename the file name under which the model can be found
      * @param train whether the model should be (re)trained or left as is
@@ -73,14 +85,20 @@ public abstract class OpenNlpMaxentModelImplementation {
         loadMetaInformations(filename);
 
         if (train) {
+            DataIndexer dataIndexer = null;
+            List<Event> devEvents = null;
+            if (!params.iterNrs.isEmpty()) {
+                dataIndexer =
+                    indexEvents(deriveEvents(params.trainingData), false);
+                devEvents = deriveEvents(params.devData);
+            }
+
             for (Integer nrOfIterations : params.iterNrs) {
                 Debugger.println(
                     "starting iteration with iterNr " + nrOfIterations);
 
-                List<Event> events = deriveEvents(params.trainingData);
-
-                train(events, nrOfIterations, false);
-                double trainScore = test(params.devData).total;
+                train(dataIndexer, nrOfIterations, false);
+                double trainScore = test(devEvents).total;
 
                 if (trainScore > bestScore) {
                     bestScore = trainScore;
@@ -96,51 +114,63 @@ public abstract class OpenNlpMaxentModelImplementation {
     }
 
     /**
-     * Trains this maximum entropy model.
+     * Indexes the events from which this maximum entropy model is trained.
+     * The resulting {@link DataIndexer} is not modified by training, so it can
+     * be used to train several models.
      * @param events the events from which the model should be trained
-     * @param iterations the number of iterations
      * @param debug if set to true, additional debugging information is printed
+     * @return the data indexer
      */
-    private void train(List<Event> events, int iterations, boolean debug)
+    private static DataIndexer indexEvents(List<Event> events, boolean debug)
         throws IOException {
-        PrintStream original = null;
-
-        if (!debug) {
-            original = System.out;
-            System.setOut(new PrintStream(new OutputStream() {
-                public void write(int b) {}
-            }));
-        }
-
         if (events.isEmpty()) {
             throw new AssertionError(
                 "cannot train maximum entropy model because the list of events is empty");
         }
 
+        // the data indexer prints its progress to System.out, which is only
+        // discarded for the current thread as several models may be trained
+        // concurrently
         ObjectStream<Event> reorderEventStream = new ReorderEventStream(events);
-        DataIndexer dataIndexer = new OnePassDataIndexer(reorderEventStream);
-        model = GIS.trainModel(iterations, dataIndexer, debug, false, null, 0);
+        Debugger.Action<DataIndexer> index =
+            () -> new OnePassDataIndexer(reorderEventStream);
+        return debug ? index.run() : Debugger.runQuietly(index);
+    }
 
-        if (!debug) {
-            System.setOut(original);
-        }
+    /**
+     * Trains this maximum entropy model.
+     * @param dataIndexer the indexed events from which the model should be
+     * trained, see {@link OpenNlpMaxentModelImplementation#indexEvents(List,
+     * boolean)}
+     * @param iterations the number of iterations
+     * @param debug if set to true, additional debugging information is printed
+     */
+    private void train(DataIndexer dataIndexer, int iterations, boolean debug)
+        throws IOException {
+        Debugger.Action<GISModel> train = () -> GIS.trainModel(
+            iterations, dataIndexer, debug, false, null, 0);
+        model = debug ? train.run() : Debugger.runQuietly(train);
     }
 
     /**
      * Derives a list of events from a list of AMR graphs using {@link
-     * OpenNlpMaxentModelImplementation#toEvents(Amr, Vertex, boolean)}.
+     * OpenNlpMaxentModelImplementation#toEvents(Amr, Vertex, boolean)}. The
+     * AMR graphs are processed concurrently (see {@link
+     * ParallelHelper#flatMap(List, ParallelHelper.Task)}); as the events of
+     * each AMR graph are derived by a single thread and merged in the order of
+     * the AMR graphs, the result is the same as if all AMR graphs were
+     * processed one after another.
      * @param amrs the list of AMR graphs
      * @return the list of events
      */
-    private List<Event> deriveEvents(List<Amr> amrs) {
-        List<Event> events = new ArrayList<>();
-
-        for (Amr amr : amrs) {
-            for (Vertex vertex : amr.dag) {
+    private List<Event> deriveEvents(List<Amr> amrs) throws IOException {
+        return ParallelHelper.flatMap(amrs, amr -> {
+            List<Event> events = new ArrayList<>();
+            for (Vertex vertex : amr.getCompiledGraph().getVerticesBfs()) {
                 events.addAll(toEvents(amr, vertex, false));
             }
-        }
-        return events;
+            return events;
+        });
     }
 
     /**
@@ -190,27 +220,19 @@ public abstract class OpenNlpMaxentModelImplementation {
         return predictions;
     }
 
-    private LossEvaluator test(List<Amr> amrs) {
+    private LossEvaluator test(List<Event> events) {
         LossEvaluator lossEvaluator = new LossEvaluator();
 
         double wrongCount = 0, totalCount = 0;
 
-        for (Amr amr : amrs) {
-            for (Vertex v : amr.dag) {
-                List<Event> events = toEvents(amr, v, false);
+        for (Event event : events) {
+            List<Prediction> predictions = getNBestSorted(
+                event.getContext(), params.takeBestN, params.maxProbDecrement);
 
-                for (Event event : events) {
-                    List<Prediction> predictions =
-                        getNBestSorted(event.getContext(), params.takeBestN,
-                            params.maxProbDecrement);
-
-                    if (!predictions.get(0).getValue().equals(
-                            event.getOutcome())) {
-                        wrongCount++;
-                    }
-                    totalCount++;
-                }
+            if (!predictions.get(0).getValue().equals(event.getOutcome())) {
+                wrongCount++;
             }
+            totalCount++;
         }
         lossEvaluator.total = 1 - wrongCount / totalCount;
         return lossEvaluator;
@@ -39,7 +39,7 @@ public class OtherInsertionMaxentModel
     public List<Datum<String, String>> toDatumList(Amr amr, Edge edge,
         boolean forTesting, String relPos, String fromRealization,
         String toRealization) {
-        boolean isArg = edge.getLabel().matches(":ARG[0-9]");
+        boolean isArg = edge.isArgEdge();
         if (isArg)
             return Collections.emptyList();
 
@@ -120,7 +120,7 @@ public class OtherInsertionMaxentModel
             : toReal.endsWith("s") ? toReal.substring(0, toReal.length() - 1)
                                    : toReal;
 
-        int depth = to.subtreeSize();
+        int depth = amr.getCompiledGraph().getSubtreeSize(to);
 
         List<Edge> fromOutEdges = new ArrayList<>(from.getOutgoingEdges());
         fromOutEdges.remove(from.getInstanceEdge());
@@ -157,13 +157,7 @@ public class OtherInsertionMaxentModel
             }
         }
 
-        Vertex currentVertex = from;
-
-        int distanceToRoot = 0;
-        while (!currentVertex.getIncomingEdges().isEmpty()) {
-            distanceToRoot++;
-            currentVertex = currentVertex.getIncomingEdges().get(0).getFrom();
-        }
+        int distanceToRoot = amr.getCompiledGraph().getDistanceToRoot(from);
 
         List<IndicatorFeature> features = new ArrayList<>();
 
@@ -185,7 +179,7 @@ public class OtherInsertionMaxentModel
         features.add(new StringFeature("label-fromNumberOfArgs",
             label + ","
                 + fromOutEdges.stream()
-                      .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                      .filter(e -> e.isArgEdge())
                       .count()));
         features.add(new StringFeature(
             "toWithPos-fromMode", toInst + toPOS + from.mode));
@@ -225,7 +219,7 @@ public class OtherInsertionMaxentModel
         features.add(new StringFeature("label-toNumberOfArgs",
             label + ";"
                 + toOutEdges.stream()
-                      .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                      .filter(e -> e.isArgEdge())
                       .count()
                 + ""));
 
@@ -259,8 +253,8 @@ public class OtherInsertionMaxentModel
         features.add(new StringFeature("toName", to.name));
         features.add(new StringFeature("label-toName", label + "," + to.name));
 
-        featureManager.addAllUnaries(features);
-        List<String> context = featureManager.toContext();
+        getFeatureManager().addAllUnaries(features);
+        List<String> context = getFeatureManager().toContext();
 
         List<Datum<String, String>> ret = new ArrayList<>();
 
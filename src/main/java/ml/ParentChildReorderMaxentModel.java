@@ -139,7 +139,7 @@ public class ParentChildReorderMaxentModel
             }
         }
 
-        int depth = edge.getTo().subtreeSize();
+        int depth = amr.getCompiledGraph().getSubtreeSize(edge.getTo());
         String edgeLabel = edge.getLabel();
         String instPOS = vertex.getPos();
         Vertex target = edge.getTo();
@@ -178,7 +178,8 @@ public class ParentChildReorderMaxentModel
                     -> e.getLabel()
                         + StaticHelper.getInstanceOrNumeric(e.getTo()))
                 .collect(Collectors.toList())));
-        features.add(new StringFeature("instDepth", vertex.subtreeSize()));
+        features.add(new StringFeature(
+            "instDepth", amr.getCompiledGraph().getSubtreeSize(vertex)));
         features.add(new StringFeature("instMode", vertex.mode));
 
         features.add(new StringFeature("edgeLabel", edgeLabel));
@@ -212,9 +213,9 @@ public class ParentChildReorderMaxentModel
             i++;
         }
         features.addAll(newFeatures);
-        featureManager.addAllUnaries(features);
+        getFeatureManager().addAllUnaries(features);
 
-        List<String> context = featureManager.toContext();
+        List<String> context = getFeatureManager().toContext();
         return new BasicDatum<>(context, result);
     }
 }
@@ -211,17 +211,13 @@ public class PosMaxentModel extends StanfordMaxentModelImplementation {
         allPosInLabels.add(inLabel + "," + parentPos);
 
         if (parentVertex != null) {
-            for (Vertex v : amr.dag) {
-                if (v.isLink() && v.annotation.original == vertex) {
-                    if (!v.getIncomingEdges().isEmpty()) {
-                        Vertex newParent =
-                            v.getIncomingEdges().get(0).getFrom();
-                        allParentConcepts.add(newParent.getInstance());
-                        allInLabels.add(v.getIncomingEdges().get(0).getLabel());
-                        allPosInLabels.add(
-                            v.getIncomingEdges().get(0).getLabel() + ","
-                            + newParent.getInstance());
-                    }
+            for (Vertex v : amr.getCompiledGraph().getLinks(vertex)) {
+                if (!v.getIncomingEdges().isEmpty()) {
+                    Vertex newParent = v.getIncomingEdges().get(0).getFrom();
+                    allParentConcepts.add(newParent.getInstance());
+                    allInLabels.add(v.getIncomingEdges().get(0).getLabel());
+                    allPosInLabels.add(v.getIncomingEdges().get(0).getLabel()
+                        + "," + newParent.getInstance());
                 }
             }
         }
@@ -244,10 +240,11 @@ public class PosMaxentModel extends StanfordMaxentModelImplementation {
             new StringFeature("parentInst-inLabel", parentInstance + inLabel));
         features.add(new StringFeature("inLabel", inLabel));
         features.add(new StringFeature("outSize", outEdges.size()));
-        features.add(new StringFeature("depth", vertex.subtreeSize()));
+        int subtreeSize = amr.getCompiledGraph().getSubtreeSize(vertex);
+        features.add(new StringFeature("depth", subtreeSize));
         features.add(new StringFeature("numberOfArgs",
             outEdges.stream()
-                    .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                    .filter(e -> e.isArgEdge())
                     .count()
                 + ""));
         features.add(new StringFeature(
@@ -257,7 +254,7 @@ public class PosMaxentModel extends StanfordMaxentModelImplementation {
         features.add(
             new ListFeature("allPosInLabels-depth", allPosInLabels)
                 .composeWith(
-                    new StringFeature("depth", vertex.subtreeSize()), "*c0"));
+                    new StringFeature("depth", subtreeSize), "*c0"));
         features.add(
             new ListFeature("allInLabels-outSize", allInLabels)
                 .composeWith(
@@ -278,16 +275,16 @@ public class PosMaxentModel extends StanfordMaxentModelImplementation {
         features.add(
             new StringFeature("instance-mode", instance + vertex.mode));
         features.add(new StringFeature(
-            "instance-depth", instance + vertex.subtreeSize()));
+            "instance-depth", instance + subtreeSize));
         features.add(
             new StringFeature("inLabel-outSize", inLabel + outEdges.size()));
         features.add(new StringFeature("inLabel-numberOfArgs",
             inLabel
                 + +outEdges.stream()
-                       .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                       .filter(e -> e.isArgEdge())
                        .count()));
         features.add(
-            new StringFeature("inLabel-depth", inLabel + vertex.subtreeSize()));
+            new StringFeature("inLabel-depth", inLabel + subtreeSize));
         features.add(new StringFeature("parentInst-grandparentInst",
             parentInstance + grandparentInstance));
         features.add(
@@ -300,7 +297,7 @@ public class PosMaxentModel extends StanfordMaxentModelImplementation {
         features.add(new StringFeature("parentInst-numberOfArgs",
             parentInstance
                 + outEdges.stream()
-                      .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                      .filter(e -> e.isArgEdge())
                       .count()));
         features.add(new StringFeature("parentPos-hasInvArgFeature",
             parentPos + (hasInverseLabel && hasArgLabel)));
@@ -366,14 +363,14 @@ public class PosMaxentModel extends StanfordMaxentModelImplementation {
 
         features.add(new StringFeature("numberOfArgs",
             outEdges.stream()
-                    .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                    .filter(e -> e.isArgEdge())
                     .count()
                 + ""));
         features.add(new StringFeature("mode", vertex.mode));
         features.add(new StringFeature(
             "parentMode", parentVertex == null ? ":ROOT" : parentVertex.mode));
 
-        features.add(new StringFeature("depth", vertex.subtreeSize()));
+        features.add(new StringFeature("depth", subtreeSize));
 
         features.add(new StringFeature("hasInverseLabel", hasInverseLabel));
         features.add(new StringFeature(
@@ -385,9 +382,9 @@ public class PosMaxentModel extends StanfordMaxentModelImplementation {
         features.add(new StringFeature("hasNoArgChildren",
             outStrings.stream().anyMatch(s -> !s.startsWith(":ARG"))));
 
-        featureManager.addAllUnaries(features);
+        getFeatureManager().addAllUnaries(features);
         this.usesRVF = true;
-        List<String> context = featureManager.toContext();
+        List<String> context = getFeatureManager().toContext();
 
         Counter<String> counter = new ClassicCounter<>();
 
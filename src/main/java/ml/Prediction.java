@@ -24,10 +24,24 @@ public class Prediction {
     }
 
     public Prediction(String value, double score, double lmFreeScore) {
+        this(value, score, lmFreeScore, new PartialTransitionFunction());
+    }
+
+    /**
+     * Creates a new prediction for a given partial transition function.
+     * @param value the partial yield of the partial transition function
+     * @param score the score
+     * @param lmFreeScore the score without the language model factor
+     * @param partialTransitionFunction the partial transition function, which
+     * may be {@code null} if it is only built once the prediction has survived
+     * pruning
+     */
+    public Prediction(String value, double score, double lmFreeScore,
+        PartialTransitionFunction partialTransitionFunction) {
         this.value = value;
         this.score = score;
         this.lmFreeScore = lmFreeScore;
-        this.partialTransitionFunction = new PartialTransitionFunction();
+        this.partialTransitionFunction = partialTransitionFunction;
     }
 
     public String getValue() {
@@ -0,0 +1,336 @@
+package ml;
+
+import misc.Debugger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * A precomputed table of REALIZE transitions that allows {@link
+ * RealizeMaxentModel} to skip the evaluation of its maximum entropy model for
+ * frequently observed feature vectors. For each feature vector contained
+ * within the table, the n-best outcomes of the model along with their scores
+ * are stored for some fixed n; as the feature vector of a vertex is a function
+ * of its concept, its syntactic annotation (summarized by the model's {@code
+ * complexInfo}), its incoming label and its number of swaps, the entire
+ * feature vector is used as a key. Requests for more outcomes than stored are
+ * answered by the model itself, so the results are always identical to those
+ * of the model. <br/> The table is built once using {@link
+ * RealizationTable#build(RealizeMaxentModel, Map, int, int, String)} from the
+ * feature vectors observed while generating sentences from a corpus and
+ * memory-mapped at runtime. It consists of an open addressing hash table whose
+ * slots point to the entries, each of which contains the UTF-8 encoded key
+ * followed by the indices of the n-best outcomes and their scores.
+ */
+public class RealizationTable {
+    private static final int MAGIC = 0x524c5a54;
+    private static final int VERSION = 1;
+
+    // the size of the header of a file, in bytes
+    private static final int HEADER_SIZE = 64;
+    // the maximum load factor of the hash table
+    private static final double LOAD_FACTOR = 0.5;
+    // the number of entries that are compared with the maximum entropy model
+    // when loading a table to detect tables built for other models
+    private static final int NR_OF_VERIFIED_ENTRIES = 32;
+
+    private final int predictionsPerEntry;
+    private final int nrOfEntries;
+    private final int slots;
+    private final String[] outcomes;
+    private final MappedByteBuffer buffer;
+    private final int slotsOffset;
+    private final int entriesOffset;
+
+    /**
+     * Loads a table created by {@link
+     * RealizationTable#build(RealizeMaxentModel, Map, int, int, String)}. To detect tables that have been built for a
+     * different model, some of its entries are compared with the outcomes of
+     * the given model.
+     * @param filename the file in which the table is stored
+     * @param model the model whose outcomes are stored in the table
+     * @throws IOException if the file does not contain a table or if the table
+     * does not match the model
+     */
+    public RealizationTable(String filename, RealizeMaxentModel model)
+        throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename))) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(
+                    "realization table " + filename + " is too large");
+            }
+            buffer = channel.map(
+                FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException(
+                filename + " does not contain a realization table");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("unsupported version " + version
+                + " of realization table " + filename
+                + ", please rebuild it");
+        }
+        predictionsPerEntry = buffer.getInt(8);
+        int nrOfOutcomes = buffer.getInt(12);
+        nrOfEntries = buffer.getInt(16);
+        slots = buffer.getInt(20);
+        int outcomesOffset = buffer.getInt(24);
+        slotsOffset = buffer.getInt(28);
+        entriesOffset = buffer.getInt(32);
+
+        outcomes = new String[nrOfOutcomes];
+        ByteBuffer outcomeBuffer = buffer.duplicate();
+        outcomeBuffer.position(outcomesOffset);
+        for (int i = 0; i < nrOfOutcomes; i++) {
+            outcomes[i] = readString(outcomeBuffer);
+        }
+
+        verify(filename, model);
+        Debugger.println("loaded realization table " + filename + " with "
+            + nrOfEntries + " entries");
+    }
+
+    /**
+     * Compares the first entries of this table with the outcomes of a model.
+     */
+    private void verify(String filename, RealizeMaxentModel model)
+        throws IOException {
+        ByteBuffer entries = buffer.duplicate();
+        entries.position(entriesOffset);
+        for (int i = 0; i < Math.min(nrOfEntries, NR_OF_VERIFIED_ENTRIES);
+             i++) {
+            String[] context = fromKey(readString(entries));
+            List<Prediction> expected = model.getNBestSortedFromModel(
+                context, predictionsPerEntry, Double.POSITIVE_INFINITY);
+            for (Prediction p : expected) {
+                String outcome = outcomes[entries.getInt()];
+                double score = entries.getDouble();
+                if (!outcome.equals(p.getValue()) || score != p.getScore()) {
+                    throw new IOException("realization table " + filename
+                        + " does not match the REALIZE model, please rebuild "
+                        + "it");
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up the n-best outcomes for a feature vector, see {@link
+     * OpenNlpMaxentModelImplementation#getNBestSorted(String[], int, double)}.
+     * @param context the feature vector
+     * @param n the maximum number of predictions
+     * @param maxProbDifference the threshold, the score of no returned
+     * prediction is below the maximum score minus this threshold
+     * @return the list of predictions or {@code null} if the feature vector is
+     * not contained within the table or if more outcomes are requested than
+     * stored
+     */
+    public List<Prediction> get(
+        String[] context, int n, double maxProbDifference) {
+        if (n > predictionsPerEntry)
+            return null;
+
+        byte[] key = toKey(context).getBytes(StandardCharsets.UTF_8);
+        int entry = find(key);
+        if (entry < 0)
+            return null;
+
+        int position = entry + 4 + key.length;
+        List<Prediction> predictions = new ArrayList<>();
+        double bestScore = -1;
+        for (int i = 0; i < n; i++) {
+            String outcome = outcomes[buffer.getInt(position)];
+            double score = buffer.getDouble(position + 4);
+            position += 12;
+
+            if (predictions.isEmpty()) {
+                bestScore = score;
+            }
+            if (score >= bestScore - maxProbDifference) {
+                predictions.add(new Prediction(outcome, score));
+            }
+        }
+        return predictions;
+    }
+
+    /**
+     * @param key the UTF-8 encoded key
+     * @return the absolute position of the entry with the given key or -1 if
+     * there is no such entry
+     */
+    private int find(byte[] key) {
+        int mask = slots - 1;
+        for (int slot = (int) hash(key) & mask;; slot = (slot + 1) & mask) {
+            int entry = buffer.getInt(slotsOffset + 4 * slot);
+            if (entry == 0)
+                return -1;
+            int position = entriesOffset + entry - 1;
+            if (keyEquals(position, key))
+                return position;
+        }
+    }
+
+    private boolean keyEquals(int position, byte[] key) {
+        if (buffer.getInt(position) != key.length)
+            return false;
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(position + 4 + i) != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    public int getNrOfEntries() {
+        return nrOfEntries;
+    }
+
+    public int getPredictionsPerEntry() {
+        return predictionsPerEntry;
+    }
+
+    /**
+     * Builds a realization table. This only needs to be done once for each
+     * REALIZE model; the feature vectors to include are typically obtained by
+     * generating sentences from a corpus while recording all feature vectors,
+     * see {@link RealizeMaxentModel#startRecording()}.
+     * @param model the REALIZE model
+     * @param contextCounts a map from keys of feature vectors (see {@link
+     * RealizationTable#toKey(String[])}) to the number of times they have been
+     * observed
+     * @param minCount the minimum number of observations required for a
+     * feature vector to be included
+     * @param predictionsPerEntry the number of outcomes to store for each
+     * feature vector; this should be at least the maximum value of {@code
+     * takeBestN} used for the REALIZE model
+     * @param filename the file to which the table should be written
+     * @return the number of entries of the table
+     */
+    public static int build(RealizeMaxentModel model,
+        Map<String, Integer> contextCounts, int minCount,
+        int predictionsPerEntry, String filename) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : contextCounts.entrySet()) {
+            if (entry.getValue() >= minCount) {
+                keys.add(entry.getKey());
+            }
+        }
+        // the most frequent feature vectors are stored first so that they are
+        // used for verifying the table when it is loaded
+        keys.sort(Comparator
+                      .comparing((String key) -> -contextCounts.get(key))
+                      .thenComparing(key -> key));
+
+        int slots = Integer.highestOneBit(
+            (int) Math.max(2, Math.ceil(keys.size() / LOAD_FACTOR)) * 2 - 1);
+        int[] slotEntries = new int[slots];
+        Map<String, Integer> outcomeIndices = new LinkedHashMap<>();
+
+        ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+        DataOutputStream entries = new DataOutputStream(entryBytes);
+        for (String key : keys) {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            int slot = (int) hash(keyBytes) & (slots - 1);
+            while (slotEntries[slot] != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            slotEntries[slot] = entries.size() + 1;
+
+            entries.writeInt(keyBytes.length);
+            entries.write(keyBytes);
+            for (Prediction p : model.getNBestSortedFromModel(fromKey(key),
+                     predictionsPerEntry, Double.POSITIVE_INFINITY)) {
+                Integer index = outcomeIndices.get(p.getValue());
+                if (index == null) {
+                    index = outcomeIndices.size();
+                    outcomeIndices.put(p.getValue(), index);
+                }
+                entries.writeInt(index);
+                entries.writeDouble(p.getScore());
+            }
+        }
+        entries.flush();
+
+        ByteArrayOutputStream outcomeBytes = new ByteArrayOutputStream();
+        DataOutputStream outcomeStream = new DataOutputStream(outcomeBytes);
+        for (String outcome : outcomeIndices.keySet()) {
+            writeString(outcomeStream, outcome);
+        }
+        outcomeStream.flush();
+
+        int outcomesOffset = HEADER_SIZE;
+        int slotsOffset = outcomesOffset + outcomeBytes.size();
+        int entriesOffset = slotsOffset + 4 * slots;
+
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(filename)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(predictionsPerEntry);
+            out.writeInt(outcomeIndices.size());
+            out.writeInt(keys.size());
+            out.writeInt(slots);
+            out.writeInt(outcomesOffset);
+            out.writeInt(slotsOffset);
+            out.writeInt(entriesOffset);
+            for (int i = 36; i < HEADER_SIZE; i++) {
+                out.writeByte(0);
+            }
+            outcomeBytes.writeTo(out);
+            for (int entry : slotEntries) {
+                out.writeInt(entry);
+            }
+            entryBytes.writeTo(out);
+        }
+
+        Debugger.println("wrote realization table " + filename + " with "
+            + keys.size() + " of " + contextCounts.size()
+            + " observed feature vectors");
+        return keys.size();
+    }
+
+    /**
+     * Converts a feature vector into the key under which it is stored.
+     * @param context the feature vector
+     * @return the key
+     */
+    public static String toKey(String[] context) {
+        return String.join("\n", context);
+    }
+
+    private static String[] fromKey(String key) {
+        return key.split("\n", -1);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Computes the 64-bit FNV-1a hash of a key.
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash ^ (hash >>> 32);
+    }
+}
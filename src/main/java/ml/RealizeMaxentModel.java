@@ -9,8 +9,7 @@ import gen.GoldTransitions;
 import opennlp.tools.ml.model.Event;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class implements a maximum entropy model for scoring REALIZE
@@ -20,8 +19,13 @@ import java.util.regex.Pattern;
  * thesis.
  */
 public class RealizeMaxentModel extends OpenNlpMaxentModelImplementation {
-    private static final Pattern NO_REALIZE = Pattern.compile("[0-9.,]*");
-    private static final Matcher NO_REALIZE_MATCHER = NO_REALIZE.matcher("");
+    // a precomputed table of n-best outcomes that is consulted before the
+    // model is evaluated or null if no such table is used
+    public RealizationTable realizationTable;
+
+    // the number of times each feature vector has been observed since the last
+    // call to startRecording() or null if feature vectors are not recorded
+    private Map<String, Integer> contextCounts;
 
     @Override
     public List<Event> toEvents(Amr amr, Vertex vertex, boolean forTesting) {
@@ -57,9 +61,11 @@ public class RealizeMaxentModel extends OpenNlpMaxentModelImplementation {
             }
         }
 
-        NO_REALIZE_MATCHER.reset(vertex.getInstance());
+        // no events are derived for quoted instances and for instances
+        // matching [0-9.,]*, which is checked without a shared matcher so
+        // that events can be derived by several threads concurrently
         if (vertex.getInstance().startsWith("\"")
-            || NO_REALIZE_MATCHER.matches())
+            || vertex.getInstance().isEmpty() || vertex.getSymbol().isNumeric())
             return Collections.emptyList();
 
         String result = GoldTransitions.getGoldRealization(amr, instanceEdge);
@@ -149,11 +155,64 @@ public class RealizeMaxentModel extends OpenNlpMaxentModelImplementation {
             inLabel + instance + complexInfo + ","
                 + vertex.annotation.nrOfSwapDowns));
 
-        featureManager.addAllUnaries(features);
-        List<String> context = featureManager.toContext();
+        getFeatureManager().addAllUnaries(features);
+        List<String> context = getFeatureManager().toContext();
 
         Event event =
             new Event(result, context.toArray(new String[context.size()]));
         return Collections.singletonList(event);
     }
+
+    /**
+     * Returns the n-best predictions given a feature vector, see {@link
+     * OpenNlpMaxentModelImplementation#getNBestSorted(String[], int, double)}.
+     * If a {@link RealizationTable} is used and contains the feature vector,
+     * the predictions are taken from this table; otherwise, the model is
+     * evaluated.
+     */
+    @Override
+    public List<Prediction> getNBestSorted(
+        String[] context, int n, double maxProbDifference) {
+        Map<String, Integer> counts = contextCounts;
+        if (counts != null) {
+            counts.merge(RealizationTable.toKey(context), 1, Integer::sum);
+        }
+        if (realizationTable != null) {
+            List<Prediction> predictions =
+                realizationTable.get(context, n, maxProbDifference);
+            if (predictions != null)
+                return predictions;
+        }
+        return getNBestSortedFromModel(context, n, maxProbDifference);
+    }
+
+    /**
+     * Returns the n-best predictions given a feature vector by evaluating the
+     * model, ignoring the {@link RealizationTable}.
+     */
+    List<Prediction> getNBestSortedFromModel(
+        String[] context, int n, double maxProbDifference) {
+        return super.getNBestSorted(context, n, maxProbDifference);
+    }
+
+    /**
+     * Starts counting the feature vectors for which predictions are requested.
+     * These counts are used to build a {@link RealizationTable}.
+     */
+    public void startRecording() {
+        contextCounts = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Stops counting the feature vectors for which predictions are requested.
+     * @return a map from the keys of all observed feature vectors (see {@link
+     * RealizationTable#toKey(String[])}) to the number of times they have been
+     * observed since the last call to {@link
+     * RealizeMaxentModel#startRecording()}
+     */
+    public Map<String, Integer> stopRecording() {
+        Map<String, Integer> counts = contextCounts;
+        contextCounts = null;
+        return counts == null ? Collections.emptyMap() : counts;
+    }
 }
@@ -406,8 +406,8 @@ public class SiblingReorderMaxentModel
             features.addAll(newFeatures);
         }
 
-        featureManager.addAllUnaries(features);
-        List<String> context = featureManager.toContext();
+        getFeatureManager().addAllUnaries(features);
+        List<String> context = getFeatureManager().toContext();
 
         this.usesRVF = true;
 
@@ -8,6 +8,7 @@ import edu.stanford.nlp.ling.Datum;
 import edu.stanford.nlp.stats.Counter;
 import edu.stanford.nlp.stats.Counters;
 import misc.Debugger;
+import misc.ParallelHelper;
 import opennlp.tools.ml.maxent.GISModel;
 import opennlp.tools.ml.model.Event;
 
@@ -52,9 +53,11 @@ public abstract class StanfordMaxentModelImplementation {
     public LinearClassifier<String, String> classifier;
 
     /**
-     * The feature manager used by this model, see {@link FeatureManager}
+     * The feature managers used by this model, one for each thread extracting
+     * feature vectors, see {@link FeatureManager}
      */
-    protected FeatureManager featureManager;
+    private final ThreadLocal<FeatureManager> featureManagers =
+        ThreadLocal.withInitial(FeatureManager::new);
 
     private double bestSigma;
     private double bestScore;
@@ -62,8 +65,14 @@ public abstract class StanfordMaxentModelImplementation {
     /**
      * Creates a new Stanford maximum entropy model.
      */
-    public StanfordMaxentModelImplementation() {
-        featureManager = new FeatureManager();
+    public StanfordMaxentModelImplementation() {}
+
+    /**
+     * @return the feature manager used by this model on the current thread,
+     * see {@link FeatureManager}
+     */
+    protected FeatureManager getFeatureManager() {
+        return featureManagers.get();
     }
 
     /**
@@ -253,15 +262,26 @@ public abstract class StanfordMaxentModelImplementation {
         return factory.getSigma();
     }
 
-    private List<Datum<String, String>> deriveDatumList(List<Amr> amrs) {
-        List<Datum<String, String>> datumList = new ArrayList<>();
-
-        for (Amr amr : amrs) {
-            for (Vertex vertex : amr.dag) {
+    /**
+     * Derives a list of datum objects from a list of AMR graphs using {@link
+     * StanfordMaxentModelImplementation#toDatumList(Amr, Vertex, boolean)}.
+     * The AMR graphs are processed concurrently (see {@link
+     * ParallelHelper#flatMap(List, ParallelHelper.Task)}); as the datum
+     * objects of each AMR graph are derived by a single thread and merged in
+     * the order of the AMR graphs, the result is the same as if all AMR graphs
+     * were processed one after another.
+     * @param amrs the list of AMR graphs
+     * @return the list of datum objects
+     */
+    private List<Datum<String, String>> deriveDatumList(List<Amr> amrs)
+        throws IOException {
+        return ParallelHelper.flatMap(amrs, amr -> {
+            List<Datum<String, String>> datumList = new ArrayList<>();
+            for (Vertex vertex : amr.getCompiledGraph().getVerticesBfs()) {
                 datumList.addAll(toDatumList(amr, vertex, false));
             }
-        }
-        return datumList;
+            return datumList;
+        });
     }
 
     private void saveModelToFile(String filename) {
@@ -315,7 +335,7 @@ public abstract class StanfordMaxentModelImplementation {
         double wrongCount = 0, totalCount = 0;
 
         for (Amr amr : amrs) {
-            for (Vertex v : amr.dag) {
+            for (Vertex v : amr.getCompiledGraph().getVerticesBfs()) {
                 List<Datum<String, String>> datumList =
                     toDatumList(amr, v, modifyAmrs);
 
@@ -349,6 +369,27 @@ public abstract class StanfordMaxentModelImplementation {
         return lossEvaluator;
     }
 
+    /**
+     * Modifies some vertices of an AMR graph using the output of this maximum
+     * entropy model, just as {@link
+     * StanfordMaxentModelImplementation#test(List, boolean)} does for all
+     * vertices. This is used to update an AMR graph
+     * after only a few of its vertices have been changed.
+     * @param amr the AMR graph
+     * @param vertices the vertices to modify
+     */
+    public void annotate(Amr amr, Set<Vertex> vertices) {
+        for (Vertex v : amr.getCompiledGraph().getVerticesBfs()) {
+            if (!vertices.contains(v))
+                continue;
+            for (Datum<String, String> datum : toDatumList(amr, v, true)) {
+                applyModification(amr, v,
+                    getNBestSorted(
+                        datum, params.takeBestN, params.maxProbDecrement));
+            }
+        }
+    }
+
     /**
      * Applies a modification to a vertex of an AMR graph given a list of
      * predictions made by this maximum entropy model.
@@ -164,21 +164,15 @@ public class TenseMaxentModel extends StanfordMaxentModelImplementation {
         List<String> parentInstances = new ArrayList<>();
         if (parentVertex != null) {
             parentInstances.add(parentInstance);
-            for (Vertex v : amr.dag) {
-                if (v.isLink()) {
-                    if (v.annotation.original == vertex) {
-                        if (!v.getIncomingEdges().isEmpty()) {
-                            parentInstances.add(v.getIncomingEdges()
-                                                    .get(0)
-                                                    .getFrom()
-                                                    .getInstance());
-                        }
-                    }
+            for (Vertex v : amr.getCompiledGraph().getLinks(vertex)) {
+                if (!v.getIncomingEdges().isEmpty()) {
+                    parentInstances.add(
+                        v.getIncomingEdges().get(0).getFrom().getInstance());
                 }
             }
         }
 
-        List<Vertex> vertices = amr.dag.getVertices();
+        List<Vertex> vertices = amr.getCompiledGraph().getVerticesBfs();
         Set<Edge> edges = amr.dag.getEdges();
 
         features.add(new ListFeature("wordsWithInLabel",
@@ -259,12 +253,13 @@ public class TenseMaxentModel extends StanfordMaxentModelImplementation {
         features.add(argFeatures);
         features.add(new StringFeature("numberOfArgs",
             outEdges.stream()
-                    .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                    .filter(e -> e.isArgEdge())
                     .count()
                 + ""));
         features.add(new StringFeature("mode", vertex.mode));
 
-        features.add(new StringFeature("depth", vertex.subtreeSize()));
+        int subtreeSize = amr.getCompiledGraph().getSubtreeSize(vertex);
+        features.add(new StringFeature("depth", subtreeSize));
 
         features.add(new StringFeature("hasInverseLabel", hasInverseLabel));
         features.add(new StringFeature(
@@ -278,9 +273,9 @@ public class TenseMaxentModel extends StanfordMaxentModelImplementation {
             i++;
         }
         features.addAll(newFeatures);
-        featureManager.addAllUnaries(features);
+        getFeatureManager().addAllUnaries(features);
 
-        List<String> context = featureManager.toContext();
+        List<String> context = getFeatureManager().toContext();
 
         this.usesRVF = true;
 
@@ -0,0 +1,173 @@
+package ml;
+
+import misc.Debugger;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * This class schedules the training (or loading) of several maximum entropy
+ * models such that models that do not depend on each other are trained
+ * concurrently. Each model is represented by a job, which is started as soon
+ * as all jobs it depends on are finished, a thread is available and the
+ * memory it is estimated to require fits into the memory budget. Jobs are
+ * added in an order that respects their dependencies; with a parallelism of
+ * 1, they are simply run one after another in this order.
+ */
+public class TrainingScheduler {
+    // the maximum number of jobs running at the same time
+    private final int parallelism;
+    // the amount of memory (in MB) that may be reserved by all running jobs
+    // together
+    private final int memoryBudget;
+    // all jobs in the order in which they were added
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+
+    /**
+     * A job training or loading a maximum entropy model.
+     */
+    public interface Task {
+        void run() throws IOException;
+    }
+
+    private static class Job {
+        final String name;
+        final Task task;
+        final int memory;
+        final List<Job> dependencies;
+        CompletableFuture<Void> future;
+
+        Job(String name, Task task, int memory, List<Job> dependencies) {
+            this.name = name;
+            this.task = task;
+            this.memory = memory;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * Creates a new training scheduler.
+     * @param parallelism the maximum number of jobs running at the same time,
+     * must be at least 1
+     * @param memoryBudget the amount of memory (in MB) that may be reserved by
+     * all running jobs together, must be at least 1
+     */
+    public TrainingScheduler(int parallelism, int memoryBudget) {
+        if (parallelism < 1 || memoryBudget < 1) {
+            throw new AssertionError(
+                "the parallelism and the memory budget must be at least 1");
+        }
+        this.parallelism = parallelism;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Adds a job to this scheduler.
+     * @param name the unique name of the job, which is used to refer to it as
+     * a dependency of other jobs
+     * @param memory the amount of memory (in MB) the job is estimated to
+     * require. Jobs requiring more than the entire memory budget are run
+     * while no other job reserves memory.
+     * @param task the task performed by the job
+     * @param dependencies the names of all jobs that must be finished before
+     * this job is started; these jobs must have been added before
+     */
+    public void add(
+        String name, int memory, Task task, String... dependencies) {
+        if (jobs.containsKey(name)) {
+            throw new AssertionError("duplicate job " + name);
+        }
+        List<Job> jobDependencies = new ArrayList<>();
+        for (String dependency : dependencies) {
+            Job job = jobs.get(dependency);
+            if (job == null) {
+                throw new AssertionError("job " + name + " depends on job "
+                    + dependency + ", which has not been added before");
+            }
+            jobDependencies.add(job);
+        }
+        jobs.put(name, new Job(name, task,
+            Math.max(0, Math.min(memory, memoryBudget)), jobDependencies));
+    }
+
+    /**
+     * Runs all jobs added to this scheduler and waits for them to finish. If a
+     * job fails, all jobs depending on it are skipped and the exception
+     * thrown by the first failed job (with respect to the order in which the
+     * jobs were added) is rethrown once all other jobs are finished.
+     */
+    public void run() throws IOException {
+        if (parallelism == 1) {
+            for (Job job : jobs.values()) {
+                job.task.run();
+            }
+            return;
+        }
+
+        Semaphore memory = new Semaphore(memoryBudget, true);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            for (Job job : jobs.values()) {
+                CompletableFuture<?>[] dependencies =
+                    job.dependencies.stream()
+                        .map(dependency -> dependency.future)
+                        .toArray(CompletableFuture<?>[] ::new);
+                job.future = CompletableFuture.allOf(dependencies)
+                                 .thenRunAsync(
+                                     () -> run(job, memory), executor);
+            }
+
+            Throwable failure = null;
+            for (Job job : jobs.values()) {
+                try {
+                    job.future.join();
+                } catch (CompletionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+            if (failure instanceof UncheckedTaskException)
+                throw ((UncheckedTaskException) failure).getCause();
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if (failure instanceof Error)
+                throw (Error) failure;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void run(Job job, Semaphore memory) {
+        memory.acquireUninterruptibly(job.memory);
+        try {
+            Debugger.println("starting job " + job.name);
+            job.task.run();
+            Debugger.println("finished job " + job.name);
+        } catch (IOException e) {
+            throw new UncheckedTaskException(e);
+        } finally {
+            memory.release(job.memory);
+        }
+    }
+
+    /**
+     * Wraps an {@link IOException} thrown by a job so that it can be passed
+     * through a {@link CompletableFuture}.
+     */
+    private static class UncheckedTaskException extends RuntimeException {
+        UncheckedTaskException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -186,17 +186,13 @@ public class VoiceMaxentModel extends StanfordMaxentModelImplementation {
         allPosInLabels.add(inLabel + "," + parentPos);
 
         if (parentVertex != null) {
-            for (Vertex v : amr.dag) {
-                if (v.isLink() && v.annotation.original == vertex) {
-                    if (!v.getIncomingEdges().isEmpty()) {
-                        Vertex newParent =
-                            v.getIncomingEdges().get(0).getFrom();
-                        allParentConcepts.add(newParent.getInstance());
-                        allInLabels.add(v.getIncomingEdges().get(0).getLabel());
-                        allPosInLabels.add(
-                            v.getIncomingEdges().get(0).getLabel() + ","
-                            + newParent.getInstance());
-                    }
+            for (Vertex v : amr.getCompiledGraph().getLinks(vertex)) {
+                if (!v.getIncomingEdges().isEmpty()) {
+                    Vertex newParent = v.getIncomingEdges().get(0).getFrom();
+                    allParentConcepts.add(newParent.getInstance());
+                    allInLabels.add(v.getIncomingEdges().get(0).getLabel());
+                    allPosInLabels.add(v.getIncomingEdges().get(0).getLabel()
+                        + "," + newParent.getInstance());
                 }
             }
         }
@@ -222,8 +218,8 @@ public class VoiceMaxentModel extends StanfordMaxentModelImplementation {
             new StringFeature("distanceToRoot", Math.min(3, distanceToRoot)));
         features.add(new StringFeature(
             "restrictedOutSize", Math.min(3, outStrings.size())));
-        features.add(
-            new StringFeature("depth", Math.min(3, vertex.subtreeSize())));
+        int subtreeSize = amr.getCompiledGraph().getSubtreeSize(vertex);
+        features.add(new StringFeature("depth", Math.min(3, subtreeSize)));
         features.add(new StringFeature("outEmpty", outStrings.isEmpty() + ""));
         features.add(new StringFeature("parentInstance", parentInstance));
         features.add(new StringFeature("parentPos", parentPos));
@@ -250,10 +246,10 @@ public class VoiceMaxentModel extends StanfordMaxentModelImplementation {
             new StringFeature("parentInst-inLabel", parentInstance + inLabel));
         features.add(new StringFeature("inLabel", inLabel));
         features.add(new StringFeature("outSize", outEdges.size()));
-        features.add(new StringFeature("depth", vertex.subtreeSize()));
+        features.add(new StringFeature("depth", subtreeSize));
         features.add(new StringFeature("numberOfArgs",
             outEdges.stream()
-                    .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                    .filter(e -> e.isArgEdge())
                     .count()
                 + ""));
         features.add(new StringFeature(
@@ -261,7 +257,7 @@ public class VoiceMaxentModel extends StanfordMaxentModelImplementation {
         features.add(
             new ListFeature("allPosInLabels-depth", allPosInLabels)
                 .composeWith(
-                    new StringFeature("depth", vertex.subtreeSize()), "*c0"));
+                    new StringFeature("depth", subtreeSize), "*c0"));
         features.add(
             new ListFeature("allInLabels-outSize", allInLabels)
                 .composeWith(
@@ -282,16 +278,16 @@ public class VoiceMaxentModel extends StanfordMaxentModelImplementation {
         features.add(
             new StringFeature("instance-mode", instance + vertex.mode));
         features.add(new StringFeature(
-            "instance-depth", instance + vertex.subtreeSize()));
+            "instance-depth", instance + subtreeSize));
         features.add(
             new StringFeature("inLabel-outSize", inLabel + outEdges.size()));
         features.add(new StringFeature("inLabel-numberOfArgs",
             inLabel
                 + +outEdges.stream()
-                       .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                       .filter(e -> e.isArgEdge())
                        .count()));
         features.add(
-            new StringFeature("inLabel-depth", inLabel + vertex.subtreeSize()));
+            new StringFeature("inLabel-depth", inLabel + subtreeSize));
         features.add(new StringFeature("parentInst-grandparentInst",
             parentInstance + grandparentInstance));
         features.add(
@@ -300,7 +296,7 @@ public class VoiceMaxentModel extends StanfordMaxentModelImplementation {
         features.add(new StringFeature("parentInst-numberOfArgs",
             parentInstance
                 + outEdges.stream()
-                      .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                      .filter(e -> e.isArgEdge())
                       .count()));
         features.add(new StringFeature("parentPos-hasInvArgFeature",
             parentPos + (hasInverseLabel && hasArgLabel)));
@@ -365,14 +361,14 @@ public class VoiceMaxentModel extends StanfordMaxentModelImplementation {
 
         features.add(new StringFeature("numberOfArgs",
             outEdges.stream()
-                    .filter(e -> e.getLabel().matches(":ARG[0-9]"))
+                    .filter(e -> e.isArgEdge())
                     .count()
                 + ""));
         features.add(new StringFeature("mode", vertex.mode));
         features.add(new StringFeature(
             "parentMode", parentVertex == null ? ":ROOT" : parentVertex.mode));
 
-        features.add(new StringFeature("depth", vertex.subtreeSize()));
+        features.add(new StringFeature("depth", subtreeSize));
 
         features.add(new StringFeature("hasInverseLabel", hasInverseLabel));
         features.add(new StringFeature(
@@ -384,9 +380,9 @@ public class VoiceMaxentModel extends StanfordMaxentModelImplementation {
         features.add(new StringFeature("hasNoArgChildren",
             outStrings.stream().anyMatch(s -> !s.startsWith(":ARG"))));
 
-        featureManager.addAllUnaries(features);
+        getFeatureManager().addAllUnaries(features);
 
-        List<String> context = featureManager.toContext();
+        List<String> context = getFeatureManager().toContext();
         return Collections.singletonList(new BasicDatum<>(context, result));
     }
 